@@ -67,29 +67,26 @@ sver() {
 # it will try to get the latest version via metadata.xml
 get_maven() {
     tsh_log get_maven: MV_RANGE = ${MV}, MID = ${PG}:${MA}
-    local MV_RANGE=${MV} FOUND_JAR
+    local MV_RANGE=${MV} FOUND_JAR CANDIDATES
     if [[ -z "${MAVEN_FORCE_VERSION}" ]]; then
-        local nversions=$(xmllint --xpath\
+        # let java-ebuilder match all the versions against the range at once,
+        # matching versions are printed from the newest to the oldest
+        CANDIDATES=$(xmllint --xpath\
                 "/metadata/versioning/versions/version/text()"\
                 "${ARTIFACT_METADATA}"\
-                | wc -l)
+                | java-ebuilder --select-versions "${MV_RANGE}") || return 1
+        if compare-maven-version -h 2>/dev/null 1>/dev/null; then
+            TMP_SLOT=$(compare-maven-version --dep "${MV_RANGE}" \
+                    --maven-version "${CANDIDATES%%$'\n'*}")
+        fi
+        eval $TMP_SLOT
+        [[ ! -z ${TMP_SLOT} ]] \
+                && tsh_log "Setting SLOT of $MA to $TMP_SLOT, because dependency ${MV_RANGE} incicates so..."
     else
-        local nversions=1
+        CANDIDATES=${MV}
     fi
 
-    for line_number in $(seq ${nversions} -1 1); do
-        if [[ -z "${MAVEN_FORCE_VERSION}" ]]; then
-            MV=$(xmllint --xpath "/metadata/versioning/versions/version/text()"\
-                    "${ARTIFACT_METADATA}"\
-                    | awk "NR==${line_number}{print $1}")
-            if compare-maven-version -h 2>/dev/null 1>/dev/null; then
-                TMP_SLOT=$(compare-maven-version --dep "${MV_RANGE}" --maven-version ${MV}) || continue
-            fi
-            eval $TMP_SLOT
-            [[ ! -z ${TMP_SLOT} ]] \
-                    && tsh_log "Setting SLOT of $MA to $TMP_SLOT, because dependency ${MV_RANGE} incicates so..."
-        fi
-
+    for MV in ${CANDIDATES}; do
         MID=${PG}:${MA}:${MV}
         PV=$(sver ${MV})
         M=${MA}-${MV}
@@ -190,7 +187,8 @@ gebd() {
         tsh_log "java-ebuilder: generage ebuild files for ${MID} in ${CUR_STAGE}"
         java-ebuilder -p "${POMDIR}"/${M}.pom -e "${cur_stage_ebd}" -g --workdir "${POMDIR}" \
                       -u ${SRC_URI} --slot ${SLOT:-0} --keywords ~amd64 \
-                      --cache-file "${CACHEDIR}"/${CUR_STAGE}-cache
+                      --cache-file "${CACHEDIR}"/${CUR_STAGE}-cache \
+                      ${PROCESS_SLOTS_DIR:+--process-slots-dir "${PROCESS_SLOTS_DIR}"}
         if [[ "$?" -eq 0 ]]; then
             tsh_log "java-ebuilder Returns $?"
         else
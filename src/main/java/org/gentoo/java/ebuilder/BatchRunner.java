@@ -0,0 +1,334 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.gentoo.java.ebuilder.maven.EbuildTemplate;
+import org.gentoo.java.ebuilder.maven.MavenCache;
+import org.gentoo.java.ebuilder.maven.MavenEbuilder;
+import org.gentoo.java.ebuilder.maven.MavenParser;
+import org.gentoo.java.ebuilder.maven.MavenProject;
+import org.gentoo.java.ebuilder.portage.PortageParser;
+
+/**
+ * Generates ebuilds listed in batch manifest within single application run.
+ * The cache is loaded once and shared by all entries, entries are processed
+ * concurrently by {@link Config#getJobs()} workers. Failure of an entry is
+ * reported and does not abort the rest of the batch.
+ * <p>
+ * Every non-empty line of the manifest that does not start with {@code #}
+ * describes one ebuild by tab separated fields: path to pom.xml relative to
+ * workdir, path to the ebuild, SRC_URI, SLOT, space separated keywords and
+ * optionally URI of binary jar. If binary jar URI is specified, the ebuild
+ * inherits java-pkg-maven.eclass.
+ *
+ * @author fordfrog
+ */
+public class BatchRunner {
+
+    /**
+     * Runs the batch.
+     *
+     * @param config                 application configuration
+     * @param cacheLoader            function returning populated maven cache
+     * @param sharedProcessScheduler scheduler of external processes shared
+     *                               with other requests of long-running
+     *                               java-ebuilder, or null to create
+     *                               scheduler of the batch
+     *
+     * @return true if all entries succeeded, otherwise false
+     */
+    public boolean run(final Config config,
+            final Function<Config, MavenCache> cacheLoader,
+            final ProcessScheduler sharedProcessScheduler) {
+        final List<String[]> entries = readManifest(config);
+        final MavenEbuilder mavenEbuilder
+                = new MavenEbuilder(EbuildTemplate.load(config));
+        final MavenCache mavenCache = cacheLoader.apply(config);
+
+        final ProcessScheduler processScheduler
+                = sharedProcessScheduler == null
+                ? new ProcessScheduler(config) : sharedProcessScheduler;
+        final MavenParser mavenParser = new MavenParser(processScheduler);
+        final ExecutorService executor
+                = Executors.newFixedThreadPool(config.getJobs());
+        final List<Future<String>> results = new ArrayList<>(entries.size());
+
+        try {
+            for (final String[] entry : entries) {
+                final StringWriter output = new StringWriter(1_024);
+
+                results.add(executor.submit(() -> processEntry(config,
+                        entry, output, mavenCache, mavenParser,
+                        mavenEbuilder)));
+            }
+
+            return reportResults(config, entries, results);
+        } finally {
+            executor.shutdownNow();
+            Main.printEbuildSummary(config, mavenEbuilder);
+            Main.writeDiffList(config, mavenEbuilder);
+
+            if (sharedProcessScheduler == null) {
+                processScheduler.printSummary(config.getStdoutWriter());
+            }
+        }
+    }
+
+    /**
+     * Generates ebuild of single batch entry.
+     *
+     * @param config        application configuration
+     * @param entry         manifest entry fields
+     * @param output        writer collecting output of the entry
+     * @param mavenCache    populated maven cache
+     * @param mavenParser   shared maven parser
+     * @param mavenEbuilder shared maven ebuilder
+     *
+     * @return collected output of the entry
+     *
+     * @throws BatchEntryException Thrown if the entry failed.
+     */
+    private static String processEntry(final Config config,
+            final String[] entry, final StringWriter output,
+            final MavenCache mavenCache, final MavenParser mavenParser,
+            final MavenEbuilder mavenEbuilder) {
+        final PrintWriter writer = new PrintWriter(output);
+        final Config entryConfig = config.createBatchEntryConfig(writer,
+                writer);
+
+        try {
+            configureEntry(entryConfig, entry);
+
+            final List<MavenProject> mavenProjects
+                    = mavenParser.parsePomFiles(entryConfig, mavenCache);
+
+            if (entryConfig.isDumpProjects()) {
+                Main.dumpMavenProjects(entryConfig, mavenProjects);
+            }
+
+            mavenEbuilder.generateEbuild(entryConfig, mavenProjects,
+                    mavenCache);
+        } catch (final RuntimeException ex) {
+            writer.flush();
+
+            throw new BatchEntryException(ex.getMessage() == null
+                    ? ex.toString() : ex.getMessage(), output.toString(), ex);
+        }
+
+        writer.flush();
+
+        return output.toString();
+    }
+
+    /**
+     * Sets entry specific settings of configuration from manifest entry
+     * fields and checks them.
+     *
+     * @param entryConfig configuration of the entry
+     * @param entry       manifest entry fields
+     *
+     * @throws IllegalArgumentException Thrown if the entry is not valid.
+     */
+    private static void configureEntry(final Config entryConfig,
+            final String[] entry) {
+        if (entry.length < 5 || entry.length > 6) {
+            throw new IllegalArgumentException("Entry must have 5 or 6 tab "
+                    + "separated fields, found " + entry.length);
+        }
+
+        final Path pomFile = Paths.get(entry[0]);
+
+        if (!entryConfig.getWorkdir().resolve(pomFile).toFile().exists()) {
+            throw new IllegalArgumentException("POM file "
+                    + entryConfig.getWorkdir().resolve(pomFile)
+                    + " does not exist.");
+        }
+
+        entryConfig.addPomFile(pomFile);
+
+        final Path ebuild = entryConfig.resolvePath(entry[1]);
+
+        if (!ebuild.getParent().toFile().exists()) {
+            throw new IllegalArgumentException("Ebuild parent directory "
+                    + ebuild.getParent() + " does not exist.");
+        }
+
+        entryConfig.setEbuild(ebuild);
+        entryConfig.setDownloadUri(parseUri("SRC_URI", entry[2]));
+        entryConfig.setSlot(entry[3].isEmpty() ? "0" : entry[3]);
+
+        if (entry[4].isEmpty()) {
+            throw new IllegalArgumentException("Keywords must be specified.");
+        }
+
+        entryConfig.addKeywords(entry[4]);
+
+        if (entry.length == 6 && !entry[5].isEmpty()) {
+            entryConfig.setBinjarUri(parseUri("Binary jar URI", entry[5]));
+            entryConfig.setFromMavenCentral(true);
+        }
+
+        final Map<String, String> ebuildName = PortageParser.parseEbuildName(
+                ebuild.getFileName().toString());
+        entryConfig.setEbuildName(ebuildName.get("name"));
+        entryConfig.setEbuildVersion(ebuildName.get("version"));
+        entryConfig.setEbuildVersionSuffix(ebuildName.get("suffix"));
+    }
+
+    /**
+     * Parses URI of manifest entry.
+     *
+     * @param name  name of the field used in error message
+     * @param value field value
+     *
+     * @return parsed URI
+     *
+     * @throws IllegalArgumentException Thrown if the URI is not valid.
+     */
+    private static URI parseUri(final String name, final String value) {
+        try {
+            return new URI(value);
+        } catch (final URISyntaxException ex) {
+            throw new IllegalArgumentException(name + " " + value
+                    + " is not valid.", ex);
+        }
+    }
+
+    /**
+     * Reads entries from batch manifest. Exits with error if the manifest
+     * cannot be read.
+     *
+     * @param config application configuration
+     *
+     * @return list of entry fields
+     */
+    private static List<String[]> readManifest(final Config config) {
+        final List<String> lines;
+
+        try {
+            lines = Files.readAllLines(config.getBatchManifest(),
+                    StandardCharsets.UTF_8);
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("ERROR: Failed to read batch "
+                    + "manifest " + config.getBatchManifest() + ": "
+                    + ex.getMessage());
+            config.exit(1);
+
+            return null;
+        }
+
+        final List<String[]> result = new ArrayList<>(lines.size());
+
+        for (final String line : lines) {
+            if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                result.add(line.split("\t", -1));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for results of entries and prints them in manifest order.
+     *
+     * @param config  application configuration
+     * @param entries manifest entries
+     * @param results results of entries
+     *
+     * @return true if all entries succeeded, otherwise false
+     */
+    private static boolean reportResults(final Config config,
+            final List<String[]> entries, final List<Future<String>> results) {
+        int failed = 0;
+
+        for (int i = 0; i < results.size(); i++) {
+            final String label = "[" + (i + 1) + "/" + results.size() + "] "
+                    + (entries.get(i).length > 1
+                    ? entries.get(i)[1] : entries.get(i)[0]);
+
+            try {
+                config.getStdoutWriter().print(results.get(i).get());
+                config.getStdoutWriter().println(label + ": OK");
+            } catch (final ExecutionException ex) {
+                failed++;
+
+                if (ex.getCause() instanceof BatchEntryException) {
+                    final BatchEntryException cause
+                            = (BatchEntryException) ex.getCause();
+                    config.getStdoutWriter().print(cause.getOutput());
+                    config.getStdoutWriter().flush();
+                    config.getErrorWriter().println(label + ": FAILED: "
+                            + cause.getMessage());
+                } else {
+                    config.getErrorWriter().println(label + ": FAILED: "
+                            + ex.getCause());
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException("Batch was interrupted", ex);
+            }
+
+            config.getStdoutWriter().flush();
+            config.getErrorWriter().flush();
+        }
+
+        config.getStdoutWriter().println("Batch: "
+                + (results.size() - failed) + " succeeded, " + failed
+                + " failed");
+
+        return failed == 0;
+    }
+
+    /**
+     * Failure of single batch entry carrying output the entry produced.
+     */
+    private static class BatchEntryException extends RuntimeException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Output produced by the entry before it failed.
+         */
+        private final String output;
+
+        /**
+         * Creates new instance of BatchEntryException.
+         *
+         * @param message error message
+         * @param output  {@link #output}
+         * @param cause   cause of the failure
+         */
+        BatchEntryException(final String message, final String output,
+                final Throwable cause) {
+            super(message, cause);
+            this.output = output;
+        }
+
+        /**
+         * Getter for {@link #output}.
+         *
+         * @return {@link #output}
+         */
+        String getOutput() {
+            return output;
+        }
+    }
+}
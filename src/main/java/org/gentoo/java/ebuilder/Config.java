@@ -6,11 +6,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import org.gentoo.java.ebuilder.maven.JavaVersion;
 import org.gentoo.java.ebuilder.portage.KeywordComparator;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
 
 /**
  * Container for command line configuration.
@@ -19,11 +22,49 @@ import org.gentoo.java.ebuilder.portage.KeywordComparator;
  */
 public class Config {
 
+    /**
+     * Pom scanner that uses StAX.
+     */
+    public static final String POM_SCANNER_STAX = "stax";
+    /**
+     * Pom scanner that scans bytes of the pom directly.
+     */
+    public static final String POM_SCANNER_BYTES = "bytes";
+
+    /**
+     * Path to manifest listing ebuilds that should be generated in batch.
+     */
+    private Path batchManifest;
+    /**
+     * Whether this configuration belongs to single entry of batch, in which
+     * case failures must not terminate the application.
+     */
+    private boolean batchEntry;
     /**
      * Path to portage ebuild cache.
      */
     private Path cacheFile = Paths.get(System.getProperty("user.home"),
             ".java-ebuilder/cache");
+    /**
+     * Path to UNIX domain socket of daemon the arguments should be forwarded
+     * to.
+     */
+    private Path clientSocket;
+    /**
+     * Directory relative paths of command line arguments are resolved
+     * against, empty path stands for current directory of the process.
+     */
+    private Path currentDirectory = Paths.get("");
+    /**
+     * Path to UNIX domain socket the daemon should listen on.
+     */
+    private Path daemonSocket;
+    /**
+     * Whether this configuration belongs to request served by daemon or by
+     * --serve-stdio, in which case failures must not terminate the
+     * application.
+     */
+    private boolean daemonRequest;
     /**
      * URI that goes to pre-compiled Maven Jar.
      */
@@ -32,6 +73,16 @@ public class Config {
      * whether binjarUri is set.
      */
     private boolean binjarUriExists;
+    /**
+     * Whether unified diff of ebuild changes should be printed instead of
+     * writing the ebuilds.
+     */
+    private boolean diff;
+    /**
+     * Path to file the list of changed ebuilds should be written to instead
+     * of writing the ebuilds.
+     */
+    private Path diffList;
     /**
      * URI that goes to SRC_URI.
      */
@@ -65,6 +116,10 @@ public class Config {
      * this one.
      */
     private JavaVersion forceMinJavaVersion;
+    /**
+     * Whether effective pom should always be retrieved using mvn.
+     */
+    private boolean forceMvn;
     /**
      * Whethe the source code is distributed by Maven Central
      */
@@ -73,6 +128,10 @@ public class Config {
      * Whether ebuild should be generated.
      */
     private boolean generateEbuild;
+    /**
+     * Number of pom files that are processed concurrently.
+     */
+    private int jobs = 1;
     /**
      * Arch keywords.
      */
@@ -81,18 +140,65 @@ public class Config {
      * License name.
      */
     private String license;
+    /**
+     * Maximum number of concurrently running mvn processes, 0 means the same
+     * as {@link #jobs}.
+     */
+    private int maxProcesses;
+    /**
+     * Local maven repositories used for resolving parent poms and BOMs.
+     */
+    private final List<Path> mavenRepositories = new ArrayList<>(2);
+    /**
+     * Directory of effective pom cache.
+     */
+    private Path pomCacheDir = Paths.get(System.getProperty("user.home"),
+            ".java-ebuilder/pom-cache");
+    /**
+     * Maximum size of effective pom cache in bytes, 0 disables the cache.
+     */
+    private long pomCacheSize = 256L * 1024 * 1024;
     /**
      * List of paths to pom.xml files.
      */
     private final List<Path> pomFiles = new ArrayList<>(10);
+    /**
+     * Scanner used for parsing poms, either {@link #POM_SCANNER_STAX} or
+     * {@link #POM_SCANNER_BYTES}.
+     */
+    private String pomScanner = POM_SCANNER_STAX;
     /**
      * Path to portage tree.
      */
     private SortedSet<Path> portageTree = new TreeSet<>();
+    /**
+     * Number of process slots in {@link #processSlotsDir}.
+     */
+    private int processSlots = Runtime.getRuntime().availableProcessors();
+    /**
+     * Directory of lock files used to limit number of child processes across
+     * java-ebuilder processes, or null if the number is limited only within
+     * this process.
+     */
+    private Path processSlotsDir;
+    /**
+     * Timeouts of external tools in seconds mapped by tool names.
+     */
+    private final Map<String, Integer> processTimeouts = new HashMap<>(2);
     /**
      * Whether ebuild cache should be refreshed.
      */
     private boolean refreshCache;
+    /**
+     * Version range against which versions read from standard input are
+     * matched.
+     */
+    private MavenVersionRange selectVersions;
+    /**
+     * Whether JSON requests should be read from standard input and responses
+     * written to standard output.
+     */
+    private boolean serveStdio;
     /**
      * Whether java-ebuilder will explictly unset hasTests of the Maven project.
      */
@@ -105,6 +211,10 @@ public class Config {
      * Writer for standard output.
      */
     private final PrintWriter stdoutWriter;
+    /**
+     * Path to custom ebuild template.
+     */
+    private Path templateFile;
     /**
      * URI that goes to *-test-sources.jar distributed by maven central
      */
@@ -130,6 +240,46 @@ public class Config {
         this.errorWriter = errorWriter;
     }
 
+    /**
+     * Creates configuration of single batch entry. Settings that are common
+     * to all entries are copied from this configuration, the entry specific
+     * settings (pom files, ebuild, URIs, SLOT and keywords) are left for the
+     * caller to set. The pom files of the entry are processed sequentially
+     * because the entries themselves are processed concurrently.
+     *
+     * @param entryStdoutWriter writer for standard output of the entry
+     * @param entryErrorWriter  writer for errors of the entry
+     *
+     * @return configuration of batch entry
+     */
+    public Config createBatchEntryConfig(final PrintWriter entryStdoutWriter,
+            final PrintWriter entryErrorWriter) {
+        final Config result = new Config(entryStdoutWriter, entryErrorWriter);
+        result.batchEntry = true;
+        result.cacheFile = cacheFile;
+        result.currentDirectory = currentDirectory;
+        result.daemonRequest = daemonRequest;
+        result.diff = diff;
+        result.diffList = diffList;
+        result.dumpProjects = dumpProjects;
+        result.forceMinJavaVersion = forceMinJavaVersion;
+        result.forceMvn = forceMvn;
+        result.generateEbuild = true;
+        result.license = license;
+        result.maxProcesses = maxProcesses;
+        result.mavenRepositories.addAll(mavenRepositories);
+        result.pomCacheDir = pomCacheDir;
+        result.pomCacheSize = pomCacheSize;
+        result.pomScanner = pomScanner;
+        result.processSlots = processSlots;
+        result.processSlotsDir = processSlotsDir;
+        result.processTimeouts.putAll(processTimeouts);
+        result.skipTests = skipTests;
+        result.workdir = workdir;
+
+        return result;
+    }
+
     /**
      * Adds pom file to {@link #pomFiles}.
      *
@@ -139,6 +289,33 @@ public class Config {
         pomFiles.add(pomFile);
     }
 
+    /**
+     * Getter for {@link #batchManifest}.
+     *
+     * @return {@link #batchManifest}
+     */
+    public Path getBatchManifest() {
+        return batchManifest;
+    }
+
+    /**
+     * Setter for {@link #batchManifest}.
+     *
+     * @param batchManifest {@link #batchManifest}
+     */
+    public void setBatchManifest(final Path batchManifest) {
+        this.batchManifest = batchManifest;
+    }
+
+    /**
+     * Getter for {@link #batchEntry}.
+     *
+     * @return {@link #batchEntry}
+     */
+    public boolean isBatchEntry() {
+        return batchEntry;
+    }
+
     /**
      * Getter for {@link #cacheFile}.
      *
@@ -157,6 +334,105 @@ public class Config {
         this.cacheFile = cacheFile;
     }
 
+    /**
+     * Getter for {@link #clientSocket}.
+     *
+     * @return {@link #clientSocket}
+     */
+    public Path getClientSocket() {
+        return clientSocket;
+    }
+
+    /**
+     * Setter for {@link #clientSocket}.
+     *
+     * @param clientSocket {@link #clientSocket}
+     */
+    public void setClientSocket(final Path clientSocket) {
+        this.clientSocket = clientSocket;
+    }
+
+    /**
+     * Getter for {@link #currentDirectory}.
+     *
+     * @return {@link #currentDirectory}
+     */
+    public Path getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    /**
+     * Setter for {@link #currentDirectory}.
+     *
+     * @param currentDirectory {@link #currentDirectory}
+     */
+    public void setCurrentDirectory(final Path currentDirectory) {
+        this.currentDirectory = currentDirectory;
+    }
+
+    /**
+     * Getter for {@link #daemonSocket}.
+     *
+     * @return {@link #daemonSocket}
+     */
+    public Path getDaemonSocket() {
+        return daemonSocket;
+    }
+
+    /**
+     * Setter for {@link #daemonSocket}.
+     *
+     * @param daemonSocket {@link #daemonSocket}
+     */
+    public void setDaemonSocket(final Path daemonSocket) {
+        this.daemonSocket = daemonSocket;
+    }
+
+    /**
+     * Getter for {@link #daemonRequest}.
+     *
+     * @return {@link #daemonRequest}
+     */
+    public boolean isDaemonRequest() {
+        return daemonRequest;
+    }
+
+    /**
+     * Setter for {@link #daemonRequest}.
+     *
+     * @param daemonRequest {@link #daemonRequest}
+     */
+    public void setDaemonRequest(final boolean daemonRequest) {
+        this.daemonRequest = daemonRequest;
+    }
+
+    /**
+     * Terminates the application with the exit status. If this configuration
+     * belongs to batch entry or daemon request, only the entry or request is
+     * terminated by throwing {@link ExitException}.
+     *
+     * @param status exit status
+     */
+    public void exit(final int status) {
+        if (batchEntry || daemonRequest) {
+            throw new ExitException(status);
+        }
+
+        Runtime.getRuntime().exit(status);
+    }
+
+    /**
+     * Resolves path specified on command line against
+     * {@link #currentDirectory}.
+     *
+     * @param path path
+     *
+     * @return absolute normalized path
+     */
+    public Path resolvePath(final String path) {
+        return currentDirectory.resolve(path).toAbsolutePath().normalize();
+    }
+
     /**
      * Getter for {@link #binjarUri}.
      *
@@ -185,6 +461,53 @@ public class Config {
         this.binjarUriExists = true;
     }
 
+    /**
+     * Getter for {@link #diff}.
+     *
+     * @return {@link #diff}
+     */
+    public boolean isDiff() {
+        return diff;
+    }
+
+    /**
+     * Setter for {@link #diff}.
+     *
+     * @param diff {@link #diff}
+     */
+    public void setDiff(final boolean diff) {
+        this.diff = diff;
+    }
+
+    /**
+     * Getter for {@link #diffList}.
+     *
+     * @return {@link #diffList}
+     */
+    public Path getDiffList() {
+        return diffList;
+    }
+
+    /**
+     * Setter for {@link #diffList}.
+     *
+     * @param diffList {@link #diffList}
+     */
+    public void setDiffList(final Path diffList) {
+        this.diffList = diffList;
+    }
+
+    /**
+     * Checks whether ebuilds are only compared with existing files and not
+     * written, which is the case if {@link #diff} or {@link #diffList} is
+     * set.
+     *
+     * @return true if ebuilds are not written, otherwise false
+     */
+    public boolean isDryRun() {
+        return diff || diffList != null;
+    }
+
     /**
      * Getter for {@link #downloadUri}.
      *
@@ -302,6 +625,24 @@ public class Config {
         this.forceMinJavaVersion = forceMinJavaVersion;
     }
 
+    /**
+     * Getter for {@link #jobs}.
+     *
+     * @return {@link #jobs}
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Setter for {@link #jobs}.
+     *
+     * @param jobs {@link #jobs}
+     */
+    public void setJobs(final int jobs) {
+        this.jobs = jobs;
+    }
+
     /**
      * Getter for {@link #keywords}.
      *
@@ -355,6 +696,151 @@ public class Config {
         this.license = license;
     }
 
+    /**
+     * Getter for {@link #maxProcesses}.
+     *
+     * @return {@link #maxProcesses}
+     */
+    public int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    /**
+     * Setter for {@link #maxProcesses}.
+     *
+     * @param maxProcesses {@link #maxProcesses}
+     */
+    public void setMaxProcesses(final int maxProcesses) {
+        this.maxProcesses = maxProcesses;
+    }
+
+    /**
+     * Getter for {@link #mavenRepositories}.
+     *
+     * @return {@link #mavenRepositories}
+     */
+    public List<Path> getMavenRepositories() {
+        return Collections.unmodifiableList(mavenRepositories);
+    }
+
+    /**
+     * Adds path to {@link #mavenRepositories}.
+     *
+     * @param mavenRepository {@link #mavenRepositories}
+     */
+    public void addMavenRepository(final Path mavenRepository) {
+        mavenRepositories.add(mavenRepository);
+    }
+
+    /**
+     * Getter for {@link #pomCacheDir}.
+     *
+     * @return {@link #pomCacheDir}
+     */
+    public Path getPomCacheDir() {
+        return pomCacheDir;
+    }
+
+    /**
+     * Setter for {@link #pomCacheDir}.
+     *
+     * @param pomCacheDir {@link #pomCacheDir}
+     */
+    public void setPomCacheDir(final Path pomCacheDir) {
+        this.pomCacheDir = pomCacheDir;
+    }
+
+    /**
+     * Getter for {@link #pomCacheSize}.
+     *
+     * @return {@link #pomCacheSize}
+     */
+    public long getPomCacheSize() {
+        return pomCacheSize;
+    }
+
+    /**
+     * Setter for {@link #pomCacheSize}.
+     *
+     * @param pomCacheSize {@link #pomCacheSize}
+     */
+    public void setPomCacheSize(final long pomCacheSize) {
+        this.pomCacheSize = pomCacheSize;
+    }
+
+    /**
+     * Getter for {@link #processSlots}.
+     *
+     * @return {@link #processSlots}
+     */
+    public int getProcessSlots() {
+        return processSlots;
+    }
+
+    /**
+     * Setter for {@link #processSlots}.
+     *
+     * @param processSlots {@link #processSlots}
+     */
+    public void setProcessSlots(final int processSlots) {
+        this.processSlots = processSlots;
+    }
+
+    /**
+     * Getter for {@link #processSlotsDir}.
+     *
+     * @return {@link #processSlotsDir}
+     */
+    public Path getProcessSlotsDir() {
+        return processSlotsDir;
+    }
+
+    /**
+     * Setter for {@link #processSlotsDir}.
+     *
+     * @param processSlotsDir {@link #processSlotsDir}
+     */
+    public void setProcessSlotsDir(final Path processSlotsDir) {
+        this.processSlotsDir = processSlotsDir;
+    }
+
+    /**
+     * Getter for {@link #processTimeouts}.
+     *
+     * @return {@link #processTimeouts}
+     */
+    public Map<String, Integer> getProcessTimeouts() {
+        return processTimeouts;
+    }
+
+    /**
+     * Sets timeout of external tool.
+     *
+     * @param tool    tool name
+     * @param timeout timeout in seconds
+     */
+    public void setProcessTimeout(final String tool, final int timeout) {
+        processTimeouts.put(tool, timeout);
+    }
+
+    /**
+     * Getter for {@link #pomScanner}.
+     *
+     * @return {@link #pomScanner}
+     */
+    public String getPomScanner() {
+        return pomScanner;
+    }
+
+    /**
+     * Setter for {@link #pomScanner}.
+     *
+     * @param pomScanner {@link #pomScanner}
+     */
+    public void setPomScanner(final String pomScanner) {
+        this.pomScanner = pomScanner;
+    }
+
     /**
      * Getter for {@link #pomFiles}.
      *
@@ -382,6 +868,42 @@ public class Config {
         this.portageTree.add(portageTree);
     }
 
+    /**
+     * Getter for {@link #selectVersions}.
+     *
+     * @return {@link #selectVersions}
+     */
+    public MavenVersionRange getSelectVersions() {
+        return selectVersions;
+    }
+
+    /**
+     * Setter for {@link #selectVersions}.
+     *
+     * @param selectVersions {@link #selectVersions}
+     */
+    public void setSelectVersions(final MavenVersionRange selectVersions) {
+        this.selectVersions = selectVersions;
+    }
+
+    /**
+     * Getter for {@link #serveStdio}.
+     *
+     * @return {@link #serveStdio}
+     */
+    public boolean isServeStdio() {
+        return serveStdio;
+    }
+
+    /**
+     * Setter for {@link #serveStdio}.
+     *
+     * @param serveStdio {@link #serveStdio}
+     */
+    public void setServeStdio(final boolean serveStdio) {
+        this.serveStdio = serveStdio;
+    }
+
     /**
      * Getter for {@link #slot}.
      *
@@ -409,6 +931,24 @@ public class Config {
         return stdoutWriter;
     }
 
+    /**
+     * Getter for {@link #templateFile}.
+     *
+     * @return {@link #templateFile}
+     */
+    public Path getTemplateFile() {
+        return templateFile;
+    }
+
+    /**
+     * Setter for {@link #templateFile}.
+     *
+     * @param templateFile {@link #templateFile}
+     */
+    public void setTemplateFile(final Path templateFile) {
+        this.templateFile = templateFile;
+    }
+
     /**
      * Getter for {@link #testSrcUri}.
      *
@@ -474,6 +1014,24 @@ public class Config {
         this.dumpProjects = dumpProjects;
     }
 
+    /**
+     * Getter for {@link #forceMvn}.
+     *
+     * @return {@link #forceMvn}
+     */
+    public boolean isForceMvn() {
+        return forceMvn;
+    }
+
+    /**
+     * Setter for {@link #forceMvn}.
+     *
+     * @param forceMvn {@link #forceMvn}
+     */
+    public void setForceMvn(final boolean forceMvn) {
+        this.forceMvn = forceMvn;
+    }
+
     /**
      * Getter for {@link #fromMavenCentral}.
      *
@@ -0,0 +1,249 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves command lines forwarded by {@link DaemonClient} over UNIX domain
+ * socket, so that JVM startup and loading of the cache is paid only once.
+ * Loaded caches are kept in memory and reloaded when the cache file changes.
+ * Requests are served concurrently by {@link Config#getJobs()} workers, every
+ * request has its own configuration and failure of a request does not
+ * terminate the daemon. External processes of all requests are run through
+ * single {@link ProcessScheduler} created from the configuration of the
+ * daemon, so their number is limited the same way as within single run.
+ * <p>
+ * Request consists of current directory of the client, against which relative
+ * paths are resolved, number of arguments and the arguments, all strings are
+ * written using {@link DataOutputStream#writeUTF(java.lang.String)}. Response
+ * is sequence of frames, every frame starts with stream byte.
+ * {@link #STREAM_STDOUT} and {@link #STREAM_STDERR} frames continue with
+ * length of data and the data, the final {@link #STREAM_EXIT} frame continues
+ * with exit status.
+ *
+ * @author fordfrog
+ */
+public class Daemon {
+
+    /**
+     * Stream byte of frame carrying exit status.
+     */
+    static final int STREAM_EXIT = 0;
+    /**
+     * Stream byte of frame carrying standard output.
+     */
+    static final int STREAM_STDOUT = 1;
+    /**
+     * Stream byte of frame carrying error output.
+     */
+    static final int STREAM_STDERR = 2;
+    /**
+     * Loaded caches, created when the server is started.
+     */
+    private LoadedCaches loadedCaches;
+    /**
+     * Scheduler of external processes shared by all requests, created when
+     * the server is started.
+     */
+    private ProcessScheduler processScheduler;
+
+    /**
+     * Listens on {@link Config#getDaemonSocket()} and serves requests till
+     * the application is terminated. Exits with error if the socket cannot be
+     * opened.
+     *
+     * @param config application configuration
+     */
+    public void run(final Config config) {
+        final Path socket = config.getDaemonSocket();
+        final ServerSocketChannel server;
+
+        try {
+            final SocketAddress address = UnixDomainSockets.getAddress(socket);
+
+            if (Files.exists(socket)) {
+                if (isListening(address)) {
+                    config.getErrorWriter().println("ERROR: Another daemon is "
+                            + "listening on " + socket + ".");
+                    config.exit(1);
+                }
+
+                Files.delete(socket);
+            }
+
+            server = UnixDomainSockets.openServerSocketChannel();
+            server.bind(address);
+        } catch (final IOException | RuntimeException ex) {
+            config.getErrorWriter().println("ERROR: Failed to listen on "
+                    + socket + ": " + ex.getMessage());
+            config.exit(1);
+
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (final IOException ex) {
+                // nothing to clean up
+            }
+        }));
+
+        loadedCaches = new LoadedCaches(config.getErrorWriter());
+        loadedCaches.get(config);
+        processScheduler = new ProcessScheduler(config);
+
+        final ExecutorService executor
+                = Executors.newFixedThreadPool(config.getJobs());
+        config.getStdoutWriter().println("Listening on " + socket);
+
+        while (true) {
+            final SocketChannel channel;
+
+            try {
+                channel = server.accept();
+            } catch (final IOException ex) {
+                config.getErrorWriter().println("ERROR: Failed to accept "
+                        + "request: " + ex.getMessage());
+                config.exit(1);
+
+                return;
+            }
+
+            executor.submit(() -> serve(config, channel));
+        }
+    }
+
+    /**
+     * Reads request from the channel, runs it and writes response to the
+     * channel.
+     *
+     * @param config  application configuration of the daemon
+     * @param channel channel of the request
+     */
+    private void serve(final Config config, final SocketChannel channel) {
+        try (final SocketChannel socketChannel = channel;
+                final DataInputStream input = new DataInputStream(
+                        new BufferedInputStream(
+                                Channels.newInputStream(socketChannel)));
+                final DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(
+                                Channels.newOutputStream(socketChannel)))) {
+            final Path currentDirectory = Paths.get(input.readUTF());
+            final String[] args = new String[input.readInt()];
+
+            for (int i = 0; i < args.length; i++) {
+                args[i] = input.readUTF();
+            }
+
+            final PrintWriter stdoutWriter = new PrintWriter(
+                    new OutputStreamWriter(new FrameOutputStream(output,
+                            STREAM_STDOUT), Charset.defaultCharset()), true);
+            final PrintWriter errorWriter = new PrintWriter(
+                    new OutputStreamWriter(new FrameOutputStream(output,
+                            STREAM_STDERR), Charset.defaultCharset()), true);
+            final Config requestConfig
+                    = new Config(stdoutWriter, errorWriter);
+            requestConfig.setCurrentDirectory(currentDirectory);
+            final int status = Main.runRequest(requestConfig, args,
+                    loadedCaches::get, processScheduler);
+            stdoutWriter.flush();
+            errorWriter.flush();
+
+            synchronized (output) {
+                output.writeByte(STREAM_EXIT);
+                output.writeInt(status);
+                output.flush();
+            }
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to serve "
+                    + "request: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether some process listens on the address.
+     *
+     * @param address socket address
+     *
+     * @return true if connection to the address succeeded, otherwise false
+     */
+    private static boolean isListening(final SocketAddress address) {
+        try (final SocketChannel channel
+                = UnixDomainSockets.openSocketChannel()) {
+            channel.connect(address);
+
+            return true;
+        } catch (final IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Output stream writing data as frames of the stream.
+     */
+    private static class FrameOutputStream extends OutputStream {
+
+        /**
+         * Output of the request, shared by all streams of the request.
+         */
+        private final DataOutputStream output;
+        /**
+         * Stream byte of the frames.
+         */
+        private final int stream;
+
+        /**
+         * Creates new instance of FrameOutputStream.
+         *
+         * @param output {@link #output}
+         * @param stream {@link #stream}
+         */
+        FrameOutputStream(final DataOutputStream output, final int stream) {
+            this.output = output;
+            this.stream = stream;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            synchronized (output) {
+                output.writeByte(stream);
+                output.writeInt(len);
+                output.write(b, off, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forwards command line arguments to {@link Daemon} and copies its output to
+ * standard output and standard error output of this process.
+ *
+ * @author fordfrog
+ */
+public class DaemonClient {
+
+    /**
+     * Forwards the arguments except of {@code --client} switch to the daemon
+     * listening on {@link Config#getClientSocket()} and waits till the
+     * request is finished.
+     *
+     * @param config application configuration
+     * @param args   command line arguments
+     *
+     * @return exit status of the request
+     */
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    public int run(final Config config, final String[] args) {
+        final List<String> forwardedArgs = new ArrayList<>(args.length);
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--client".equals(args[i])) {
+                i++;
+            } else {
+                forwardedArgs.add(args[i]);
+            }
+        }
+
+        try (final SocketChannel channel
+                = UnixDomainSockets.openSocketChannel()) {
+            channel.connect(UnixDomainSockets.getAddress(
+                    config.getClientSocket()));
+
+            final DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(channel)));
+            output.writeUTF(Paths.get("").toAbsolutePath().toString());
+            output.writeInt(forwardedArgs.size());
+
+            for (final String arg : forwardedArgs) {
+                output.writeUTF(arg);
+            }
+
+            output.flush();
+
+            return copyResponse(new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel))), System.out,
+                    System.err);
+        } catch (final EOFException ex) {
+            config.getErrorWriter().println("ERROR: Daemon closed connection "
+                    + "before the request was finished.");
+
+            return 1;
+        } catch (final IOException | RuntimeException ex) {
+            config.getErrorWriter().println("ERROR: Failed to forward request "
+                    + "to daemon at " + config.getClientSocket() + ": "
+                    + ex.getMessage());
+
+            return 1;
+        }
+    }
+
+    /**
+     * Copies response frames to the streams till exit status is received.
+     *
+     * @param input  response input
+     * @param stdout standard output
+     * @param stderr standard error output
+     *
+     * @return exit status
+     *
+     * @throws IOException Thrown if the response could not be read.
+     */
+    private static int copyResponse(final DataInputStream input,
+            final PrintStream stdout, final PrintStream stderr)
+            throws IOException {
+        byte[] buffer = new byte[8_192];
+
+        while (true) {
+            final int stream = input.readUnsignedByte();
+
+            if (stream == Daemon.STREAM_EXIT) {
+                stdout.flush();
+                stderr.flush();
+
+                return input.readInt();
+            }
+
+            final int length = input.readInt();
+
+            if (length > buffer.length) {
+                buffer = new byte[length];
+            }
+
+            input.readFully(buffer, 0, length);
+
+            if (stream == Daemon.STREAM_STDERR) {
+                stdout.flush();
+                stderr.write(buffer, 0, length);
+                stderr.flush();
+            } else {
+                stdout.write(buffer, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.gentoo.java.ebuilder;
+
+/**
+ * Thrown instead of terminating the application when part of work that must
+ * not terminate the application (batch entry or daemon request) exits. The
+ * error is reported before the exception is thrown.
+ *
+ * @author fordfrog
+ */
+public class ExitException extends RuntimeException {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+    /**
+     * Exit status.
+     */
+    private final int status;
+
+    /**
+     * Creates new instance of ExitException.
+     *
+     * @param status {@link #status}
+     */
+    public ExitException(final int status) {
+        super("Exited with status " + status);
+        this.status = status;
+    }
+
+    /**
+     * Getter for {@link #status}.
+     *
+     * @return {@link #status}
+     */
+    public int getStatus() {
+        return status;
+    }
+}
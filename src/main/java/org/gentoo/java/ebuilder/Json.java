@@ -0,0 +1,528 @@
+package org.gentoo.java.ebuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the requests and responses of
+ * {@link StdioServer}. Objects are represented by {@link Map}, arrays by
+ * {@link List}, numbers by {@link Long} or {@link Double}, and the rest by
+ * {@link String}, {@link Boolean} and null. Nesting of arrays and objects is
+ * limited to {@link #MAX_DEPTH} levels, so that malicious request cannot
+ * exhaust stack of the worker.
+ *
+ * @author fordfrog
+ */
+final class Json {
+
+    /**
+     * Maximum nesting depth of arrays and objects.
+     */
+    static final int MAX_DEPTH = 64;
+    /**
+     * Current nesting depth of arrays and objects.
+     */
+    private int depth;
+    /**
+     * Parsed text.
+     */
+    private final String text;
+    /**
+     * Position of the next character to parse.
+     */
+    private int position;
+
+    /**
+     * Creates new instance of Json.
+     *
+     * @param text {@link #text}
+     */
+    private Json(final String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses JSON value.
+     *
+     * @param text JSON text
+     *
+     * @return parsed value
+     *
+     * @throws IllegalArgumentException Thrown if the text is not valid JSON.
+     */
+    static Object parse(final String text) {
+        final Json json = new Json(text);
+        final Object result = json.parseValue();
+        json.skipWhitespace();
+
+        if (json.position != text.length()) {
+            throw json.error("unexpected data after JSON value");
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends value as JSON. Characters outside of ASCII are escaped, so the
+     * output does not depend on charset.
+     *
+     * @param sb    string builder
+     * @param value value, see class description for supported types
+     *
+     * @throws IllegalArgumentException Thrown if the value type is not
+     *                                  supported.
+     */
+    static void write(final StringBuilder sb, final Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            writeString(sb, (String) value);
+        } else if (value instanceof Boolean || value instanceof Long
+                || value instanceof Integer) {
+            sb.append(value);
+        } else if (value instanceof Double) {
+            final double number = (Double) value;
+
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                sb.append("null");
+            } else {
+                sb.append(number);
+            }
+        } else if (value instanceof Map) {
+            sb.append('{');
+
+            boolean first = true;
+
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+
+                first = false;
+                writeString(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                write(sb, entry.getValue());
+            }
+
+            sb.append('}');
+        } else if (value instanceof List) {
+            sb.append('[');
+
+            boolean first = true;
+
+            for (final Object item : (List<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+
+                first = false;
+                write(sb, item);
+            }
+
+            sb.append(']');
+        } else {
+            throw new IllegalArgumentException("Unsupported JSON value type "
+                    + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Appends string as JSON string.
+     *
+     * @param sb    string builder
+     * @param value string
+     */
+    private static void writeString(final StringBuilder sb,
+            final String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Creates exception describing syntax error at current position.
+     *
+     * @param message error message
+     *
+     * @return exception
+     */
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException("Invalid JSON at position "
+                + position + ": " + message);
+    }
+
+    /**
+     * Enters nested array or object.
+     *
+     * @throws IllegalArgumentException Thrown if the nesting is deeper than
+     *                                  {@link #MAX_DEPTH}.
+     */
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            position--;
+
+            throw error("nesting deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    /**
+     * Consumes expected character.
+     *
+     * @param c expected character
+     *
+     * @throws IllegalArgumentException Thrown if the next character is
+     *                                  different.
+     */
+    private void expect(final char c) {
+        if (position >= text.length() || text.charAt(position) != c) {
+            throw error("expected '" + c + "'");
+        }
+
+        position++;
+    }
+
+    /**
+     * Consumes expected literal.
+     *
+     * @param literal expected literal
+     * @param value   value of the literal
+     *
+     * @return value of the literal
+     *
+     * @throws IllegalArgumentException Thrown if the literal does not follow.
+     */
+    private Object parseLiteral(final String literal, final Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("unexpected character");
+        }
+
+        position += literal.length();
+
+        return value;
+    }
+
+    /**
+     * Parses array.
+     *
+     * @return list of array values
+     */
+    private List<Object> parseArray() {
+        final List<Object> result = new ArrayList<>(8);
+        expect('[');
+        enter();
+        skipWhitespace();
+
+        if (position < text.length() && text.charAt(position) == ']') {
+            position++;
+            depth--;
+
+            return result;
+        }
+
+        while (true) {
+            result.add(parseValue());
+            skipWhitespace();
+
+            if (position < text.length() && text.charAt(position) == ',') {
+                position++;
+            } else {
+                expect(']');
+                depth--;
+
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Parses number. The number must follow JSON grammar, leading zeros,
+     * plus sign and missing digits around decimal point and in exponent are
+     * rejected.
+     *
+     * @return {@link Long} for integral numbers in long range, otherwise
+     *         {@link Double}
+     *
+     * @throws IllegalArgumentException Thrown if the number is not valid.
+     */
+    private Object parseNumber() {
+        final int start = position;
+        boolean integral = true;
+
+        if (position < text.length() && text.charAt(position) == '-') {
+            position++;
+        }
+
+        if (position < text.length() && text.charAt(position) == '0') {
+            position++;
+        } else if (skipDigits() == 0) {
+            throw error("invalid number");
+        }
+
+        if (position < text.length() && text.charAt(position) == '.') {
+            integral = false;
+            position++;
+
+            if (skipDigits() == 0) {
+                throw error("invalid number");
+            }
+        }
+
+        if (position < text.length() && (text.charAt(position) == 'e'
+                || text.charAt(position) == 'E')) {
+            integral = false;
+            position++;
+
+            if (position < text.length() && (text.charAt(position) == '+'
+                    || text.charAt(position) == '-')) {
+                position++;
+            }
+
+            if (skipDigits() == 0) {
+                throw error("invalid number");
+            }
+        }
+
+        final String number = text.substring(start, position);
+
+        if (integral) {
+            try {
+                return Long.valueOf(number);
+            } catch (final NumberFormatException ex) {
+                // out of long range, parsed as double below
+            }
+        }
+
+        return Double.valueOf(number);
+    }
+
+    /**
+     * Parses object.
+     *
+     * @return map of object members in order of their appearance
+     */
+    private Map<String, Object> parseObject() {
+        final Map<String, Object> result = new LinkedHashMap<>(8);
+        expect('{');
+        enter();
+        skipWhitespace();
+
+        if (position < text.length() && text.charAt(position) == '}') {
+            position++;
+            depth--;
+
+            return result;
+        }
+
+        while (true) {
+            skipWhitespace();
+            final String name = parseString();
+            skipWhitespace();
+            expect(':');
+            result.put(name, parseValue());
+            skipWhitespace();
+
+            if (position < text.length() && text.charAt(position) == ',') {
+                position++;
+            } else {
+                expect('}');
+                depth--;
+
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Parses string.
+     *
+     * @return string
+     */
+    private String parseString() {
+        expect('"');
+
+        final StringBuilder sb = new StringBuilder(32);
+
+        while (true) {
+            if (position >= text.length()) {
+                throw error("unterminated string");
+            }
+
+            final char c = text.charAt(position++);
+
+            if (c == '"') {
+                return sb.toString();
+            } else if (c < 0x20) {
+                throw error("control character in string");
+            } else if (c != '\\') {
+                sb.append(c);
+
+                continue;
+            }
+
+            if (position >= text.length()) {
+                throw error("unterminated string");
+            }
+
+            final char escaped = text.charAt(position++);
+
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(escaped);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append(parseUnicodeEscape());
+                    break;
+                default:
+                    position--;
+
+                    throw error("invalid escape sequence");
+            }
+        }
+    }
+
+    /**
+     * Parses four hexadecimal digits of unicode escape. Surrogate pairs are
+     * escaped as two escapes, so every escape is single char.
+     *
+     * @return escaped character
+     *
+     * @throws IllegalArgumentException Thrown if the escape is not valid.
+     */
+    private char parseUnicodeEscape() {
+        if (position + 4 > text.length()) {
+            throw error("invalid unicode escape");
+        }
+
+        int result = 0;
+
+        for (int i = 0; i < 4; i++) {
+            final char c = text.charAt(position + i);
+            // Character.digit() accepts also non-ASCII digits
+            final int digit = c < 0x80 ? Character.digit(c, 16) : -1;
+
+            if (digit == -1) {
+                throw error("invalid unicode escape");
+            }
+
+            result = result * 16 + digit;
+        }
+
+        position += 4;
+
+        return (char) result;
+    }
+
+    /**
+     * Parses any value.
+     *
+     * @return parsed value
+     */
+    private Object parseValue() {
+        skipWhitespace();
+
+        if (position >= text.length()) {
+            throw error("unexpected end of input");
+        }
+
+        final char c = text.charAt(position);
+
+        switch (c) {
+            case '{':
+                return parseObject();
+            case '[':
+                return parseArray();
+            case '"':
+                return parseString();
+            case 't':
+                return parseLiteral("true", Boolean.TRUE);
+            case 'f':
+                return parseLiteral("false", Boolean.FALSE);
+            case 'n':
+                return parseLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return parseNumber();
+                }
+
+                throw error("unexpected character");
+        }
+    }
+
+    /**
+     * Skips decimal digits.
+     *
+     * @return number of skipped digits
+     */
+    private int skipDigits() {
+        final int start = position;
+
+        while (position < text.length() && text.charAt(position) >= '0'
+                && text.charAt(position) <= '9') {
+            position++;
+        }
+
+        return position - start;
+    }
+
+    /**
+     * Skips whitespace characters.
+     */
+    private void skipWhitespace() {
+        while (position < text.length()) {
+            final char c = text.charAt(position);
+
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+
+            position++;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.gentoo.java.ebuilder.maven.MavenCache;
+
+/**
+ * Keeps loaded caches of long-running java-ebuilder in memory and reloads a
+ * cache in the background when its file changes. Until the reload finishes,
+ * requests are served from the previously loaded content.
+ *
+ * @author fordfrog
+ */
+public class LoadedCaches {
+
+    /**
+     * Loaded caches mapped by cache files.
+     */
+    private final Map<Path, LoadedCache> caches = new HashMap<>(2);
+    /**
+     * Writer for progress and failures of background reloads.
+     */
+    private final PrintWriter logWriter;
+
+    /**
+     * Creates new instance of LoadedCaches.
+     *
+     * @param logWriter {@link #logWriter}
+     */
+    public LoadedCaches(final PrintWriter logWriter) {
+        this.logWriter = logWriter;
+    }
+
+    /**
+     * Returns cache of {@link Config#getCacheFile()}. The cache is loaded if
+     * it was not loaded yet. If the cache file changed since it was loaded,
+     * reload is started in the background and the returned cache serves the
+     * previous content till the reload finishes. If the cache file disappears
+     * after it was loaded, the loaded content is still served.
+     *
+     * @param config application configuration
+     *
+     * @return populated maven cache
+     */
+    public MavenCache get(final Config config) {
+        final Path cacheFile = config.getCacheFile();
+        final LoadedCache loadedCache;
+
+        synchronized (caches) {
+            loadedCache = caches.computeIfAbsent(cacheFile,
+                    (key) -> new LoadedCache());
+        }
+
+        FileTime lastModified;
+
+        try {
+            lastModified = Files.getLastModifiedTime(cacheFile);
+        } catch (final IOException ex) {
+            lastModified = null;
+        }
+
+        synchronized (loadedCache) {
+            if (!loadedCache.loaded) {
+                if (lastModified == null) {
+                    config.getErrorWriter().println("ERROR: Cache file "
+                            + cacheFile + " does not exist. First you must "
+                            + "generate it using --refresh-cache.");
+                    config.exit(1);
+                }
+
+                // nothing to serve yet, so the first load blocks requests
+                // of this cache
+                loadedCache.mavenCache.loadCache(config);
+                loadedCache.lastModified = lastModified;
+                loadedCache.loaded = true;
+            } else if (lastModified != null
+                    && !lastModified.equals(loadedCache.lastModified)
+                    && (loadedCache.reload == null
+                    || loadedCache.reload.isDone())) {
+                loadedCache.lastModified = lastModified;
+                loadedCache.reload = reload(loadedCache.mavenCache, cacheFile);
+            }
+
+            return loadedCache.mavenCache;
+        }
+    }
+
+    /**
+     * Starts background reload of the cache. Failure of the reload is logged
+     * and the previous content is kept, the reload is not retried till the
+     * cache file changes again.
+     *
+     * @param mavenCache maven cache
+     * @param cacheFile  cache file
+     *
+     * @return future of the reload
+     */
+    private CompletableFuture<?> reload(final MavenCache mavenCache,
+            final Path cacheFile) {
+        final Config reloadConfig = new Config(logWriter, logWriter);
+        reloadConfig.setDaemonRequest(true);
+        reloadConfig.setCacheFile(cacheFile);
+
+        return mavenCache.reloadCache(reloadConfig).whenComplete(
+                (snapshot, ex) -> {
+                    if (ex != null) {
+                        final Throwable cause
+                                = ex instanceof CompletionException
+                                && ex.getCause() != null ? ex.getCause() : ex;
+                        // terminate progress line of the reload
+                        logWriter.println();
+                        logWriter.println("WARNING: Failed to reload cache "
+                                + cacheFile + ", keeping previous content: "
+                                + cause.getMessage());
+                    }
+
+                    logWriter.flush();
+                });
+    }
+
+    /**
+     * Cache together with state of its file, guarded by the instance.
+     */
+    private static class LoadedCache {
+
+        /**
+         * Modification time of the cache file the last load was started for.
+         */
+        private FileTime lastModified;
+        /**
+         * Whether the cache was loaded.
+         */
+        private boolean loaded;
+        /**
+         * Loaded cache.
+         */
+        private final MavenCache mavenCache = new MavenCache();
+        /**
+         * Last background reload, null if there was none.
+         */
+        private CompletableFuture<?> reload;
+    }
+}
@@ -7,16 +7,24 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import org.gentoo.java.ebuilder.maven.EbuildTemplate;
 import org.gentoo.java.ebuilder.maven.JavaVersion;
 import org.gentoo.java.ebuilder.maven.MavenCache;
 import org.gentoo.java.ebuilder.maven.MavenEbuilder;
 import org.gentoo.java.ebuilder.maven.MavenParser;
 import org.gentoo.java.ebuilder.maven.MavenProject;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
 import org.gentoo.java.ebuilder.portage.PortageParser;
 
 /**
@@ -38,23 +46,79 @@ public class Main {
 
         if (args == null || args.length == 0) {
             printUsage(config);
-            Runtime.getRuntime().exit(1);
+            config.exit(1);
         }
 
         parseArgs(config, args);
+
+        if (config.getClientSocket() != null) {
+            config.exit(new DaemonClient().run(config, args));
+        }
+
         checkArgs(config);
 
+        if (config.getDaemonSocket() != null) {
+            new Daemon().run(config);
+
+            return;
+        } else if (config.isServeStdio()) {
+            new StdioServer().run(config);
+
+            return;
+        }
+
+        final int status = run(config, Main::loadCache, null);
+
+        if (status != 0) {
+            config.exit(status);
+        }
+    }
+
+    /**
+     * Performs the actions selected by parsed and checked configuration.
+     *
+     * @param config           application configuration
+     * @param cacheLoader      function returning populated maven cache
+     * @param processScheduler scheduler of external processes shared with
+     *                         other requests of long-running java-ebuilder,
+     *                         or null to create scheduler from the
+     *                         configuration
+     *
+     * @return exit status
+     */
+    static int run(final Config config,
+            final Function<Config, MavenCache> cacheLoader,
+            final ProcessScheduler processScheduler) {
+        if (config.getSelectVersions() != null) {
+            selectVersions(config);
+
+            config.getStdoutWriter().flush();
+            config.getErrorWriter().flush();
+
+            return 0;
+        }
+
         if (config.isRefreshCache()) {
             refreshCache(config);
         }
 
-        if (config.isGenerateEbuild()) {
-            generateEbuild(config);
+        if (config.getBatchManifest() != null) {
+            if (!new BatchRunner().run(config, cacheLoader,
+                    processScheduler)) {
+                config.getStdoutWriter().flush();
+                config.getErrorWriter().flush();
+
+                return 1;
+            }
+        } else if (config.isGenerateEbuild()) {
+            generateEbuild(config, cacheLoader, processScheduler);
         }
 
         config.getStdoutWriter().println("Finished!");
         config.getStdoutWriter().flush();
         config.getErrorWriter().flush();
+
+        return 0;
     }
 
     /**
@@ -62,7 +126,51 @@ public class Main {
      *
      * @param config application configuration
      */
-    private static void checkArgs(final Config config) {
+    static void checkArgs(final Config config) {
+        if (config.getDaemonSocket() != null) {
+            if (config.isGenerateEbuild() || config.getBatchManifest() != null
+                    || config.isRefreshCache()
+                    || config.getSelectVersions() != null) {
+                config.getErrorWriter().println("ERROR: --daemon cannot be "
+                        + "combined with --generate-ebuild, --batch, "
+                        + "--refresh-cache or --select-versions.");
+                config.exit(1);
+            } else if (!config.getDaemonSocket().getParent().toFile().
+                    exists()) {
+                config.getErrorWriter().println("ERROR: Socket parent "
+                        + "directory " + config.getDaemonSocket().getParent()
+                        + " does not exist.");
+                config.exit(1);
+            }
+        }
+
+        if (config.isServeStdio()) {
+            if (config.isGenerateEbuild() || config.getBatchManifest() != null
+                    || config.isRefreshCache()
+                    || config.getSelectVersions() != null
+                    || config.getDaemonSocket() != null) {
+                config.getErrorWriter().println("ERROR: --serve-stdio cannot "
+                        + "be combined with --generate-ebuild, --batch, "
+                        + "--refresh-cache, --select-versions or --daemon.");
+                config.exit(1);
+            }
+
+            // the cache is loaded by the first request that needs it, so
+            // that it can be created by refresh request
+            return;
+        }
+
+        if (config.getSelectVersions() != null) {
+            if (config.isRefreshCache() || config.isGenerateEbuild()) {
+                config.getErrorWriter().println("ERROR: --select-versions "
+                        + "cannot be combined with --refresh-cache or "
+                        + "--generate-ebuild.");
+                config.exit(1);
+            }
+
+            return;
+        }
+
         if (config.isRefreshCache()) {
             if (config.getPortageTree().isEmpty()) {
                 config.addPortageTree(Paths.get("/usr/portage"));
@@ -72,7 +180,7 @@ public class Main {
                 if (!portageTree.toFile().exists()) {
                     config.getErrorWriter().println("ERROR: Portage tree "
                             + portageTree + " does not exist.");
-                    Runtime.getRuntime().exit(1);
+                    config.exit(1);
                 }
             }
         } else if (!config.getPortageTree().isEmpty()) {
@@ -80,37 +188,65 @@ public class Main {
                     + "only when refreshing cache.");
         }
 
-        if (config.isGenerateEbuild()) {
+        if (config.getBatchManifest() != null) {
+            if (config.isGenerateEbuild() || config.getDownloadUri() != null
+                    || config.getBinjarUri() != null
+                    || config.getEbuild() != null
+                    || config.isFromMavenCentral()
+                    || !config.getKeywords().isEmpty()
+                    || !config.getPomFiles().isEmpty()
+                    || config.getSlot() != null
+                    || config.getTestSrcUri() != null) {
+                config.getErrorWriter().println("ERROR: --batch cannot be "
+                        + "combined with --generate-ebuild, --download-uri, "
+                        + "--binjar-uri, --ebuild, --from-maven-central, "
+                        + "--keywords, --pom, --slot or --test-src-uri.");
+                config.exit(1);
+            } else if (!config.getBatchManifest().toFile().exists()) {
+                config.getErrorWriter().println("ERROR: Batch manifest "
+                        + config.getBatchManifest() + " does not exist.");
+                config.exit(1);
+            } else if (config.getWorkdir() == null) {
+                config.getErrorWriter().println(
+                        "ERROR: --workdir must be specified.");
+                config.exit(1);
+            } else if (!config.getWorkdir().toFile().exists()) {
+                config.getErrorWriter().println("ERROR: Workdir "
+                        + config.getWorkdir().toFile().getPath()
+                        + " does not exist.");
+                config.exit(1);
+            }
+        } else if (config.isGenerateEbuild()) {
             if (config.getDownloadUri() == null) {
                 config.getErrorWriter().println(
                         "ERROR: --download-uri must be specified.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (config.getEbuild() == null) {
                 config.getErrorWriter().println(
                         "ERROR: --ebuild must be specified.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (!config.getEbuild().getParent().toFile().exists()) {
                 config.getErrorWriter().println("ERROR: Ebuild parent "
                         + "directory " + config.getEbuild().getParent()
                         + " does not exist.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (config.getKeywords() == null) {
                 config.getErrorWriter().println(
                         "ERROR: --keywords must be specified.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (config.getWorkdir() == null) {
                 config.getErrorWriter().println(
                         "ERROR: --workdir must be specified.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (!config.getWorkdir().toFile().exists()) {
                 config.getErrorWriter().println("ERROR: Workdir "
                         + config.getWorkdir().toFile().getPath()
                         + " does not exist.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             } else if (config.getPomFiles().isEmpty()) {
                 config.getErrorWriter().println(
                         "ERROR: --pom must be specified at least once.");
-                Runtime.getRuntime().exit(1);
+                config.exit(1);
             }
 
             config.getPomFiles().stream().forEach((pomFile) -> {
@@ -120,7 +256,7 @@ public class Main {
                 if (!fullPath.exists()) {
                     config.getErrorWriter().println("ERROR: POM file "
                             + fullPath + " does not exist.");
-                    Runtime.getRuntime().exit(1);
+                    config.exit(1);
                 }
             });
 
@@ -130,6 +266,9 @@ public class Main {
         } else if (config.getDownloadUri() != null) {
             config.getErrorWriter().println("WARNING: Download URI is used "
                     + "only when generating ebuild.");
+        } else if (config.isDryRun()) {
+            config.getErrorWriter().println("WARNING: --diff and --diff-list "
+                    + "are used only when generating ebuild.");
         } else if (config.isDumpProjects()) {
             config.getErrorWriter().println("WARNING: Dumping of projects can "
                     + "be used only when generating ebuild.");
@@ -139,12 +278,18 @@ public class Main {
         } else if (config.getForceMinJavaVersion() != null) {
             config.getErrorWriter().println("WARNING: Forcing minimum JDK/JRE "
                     + "version applies only when generating ebuild.");
-        } else if (config.getKeywords() != null) {
+        } else if (!config.getKeywords().isEmpty()) {
             config.getErrorWriter().println("WARNING: Keywords are used only "
                     + "when generating ebuild.");
         } else if (config.getLicense() != null) {
             config.getErrorWriter().println("WARNING: License is used only "
                     + "when generating ebuild.");
+        } else if (config.isForceMvn()) {
+            config.getErrorWriter().println("WARNING: Forcing mvn applies "
+                    + "only when generating ebuild.");
+        } else if (!config.getMavenRepositories().isEmpty()) {
+            config.getErrorWriter().println("WARNING: Maven repositories are "
+                    + "used only when generating ebuild.");
         } else if (!config.getPomFiles().isEmpty()) {
             config.getErrorWriter().println("WARNING: pom.xml is used only "
                     + "when generating ebuild.");
@@ -160,11 +305,17 @@ public class Main {
                 && !config.getCacheFile().toFile().exists()) {
             config.getErrorWriter().println("ERROR: Cache file does not exist. "
                     + "First you must generate it using --refresh-cache.");
-            Runtime.getRuntime().exit(1);
+            config.exit(1);
         }
     }
 
-    private static void dumpMavenProjects(final Config config,
+    /**
+     * Prints dump of parsed maven projects.
+     *
+     * @param config        application configuration
+     * @param mavenProjects maven projects
+     */
+    static void dumpMavenProjects(final Config config,
             final List<MavenProject> mavenProjects) {
         int i = 0;
 
@@ -184,15 +335,20 @@ public class Main {
     /**
      * Processed generation of ebuild.
      *
-     * @param config application configuration
+     * @param config           application configuration
+     * @param cacheLoader      function returning populated maven cache
+     * @param processScheduler shared scheduler of external processes or null
      */
-    private static void generateEbuild(final Config config) {
+    private static void generateEbuild(final Config config,
+            final Function<Config, MavenCache> cacheLoader,
+            final ProcessScheduler processScheduler) {
         parseEbuildName(config);
 
-        final MavenCache mavenCache = new MavenCache();
-        mavenCache.loadCache(config);
+        final MavenEbuilder mavenEbuilder
+                = new MavenEbuilder(EbuildTemplate.load(config));
+        final MavenCache mavenCache = cacheLoader.apply(config);
 
-        final MavenParser mavenParser = new MavenParser();
+        final MavenParser mavenParser = new MavenParser(processScheduler);
         final List<MavenProject> mavenProjects
                 = mavenParser.parsePomFiles(config, mavenCache);
 
@@ -200,8 +356,80 @@ public class Main {
             dumpMavenProjects(config, mavenProjects);
         }
 
-        final MavenEbuilder mavenEbuilder = new MavenEbuilder();
         mavenEbuilder.generateEbuild(config, mavenProjects, mavenCache);
+        printEbuildSummary(config, mavenEbuilder);
+        writeDiffList(config, mavenEbuilder);
+    }
+
+    /**
+     * Runs command line received by long-running java-ebuilder. The request
+     * must not terminate the application, so
+     * {@link Config#setDaemonRequest(boolean)} is set on the configuration
+     * and exceptions are reported to error writer of the configuration.
+     *
+     * @param config           fresh application configuration of the request
+     *                         with writers and current directory set
+     * @param args             command line arguments
+     * @param cacheLoader      function returning populated maven cache
+     * @param processScheduler scheduler of external processes shared by all
+     *                         requests, so that the number of concurrently
+     *                         running processes is limited by the
+     *                         configuration of the server
+     *
+     * @return exit status
+     */
+    static int runRequest(final Config config, final String[] args,
+            final Function<Config, MavenCache> cacheLoader,
+            final ProcessScheduler processScheduler) {
+        config.setDaemonRequest(true);
+
+        try {
+            if (args.length == 0) {
+                printUsage(config);
+
+                return 1;
+            }
+
+            parseArgs(config, args);
+
+            if (config.getDaemonSocket() != null
+                    || config.getClientSocket() != null
+                    || config.isServeStdio()
+                    || config.getSelectVersions() != null) {
+                config.getErrorWriter().println("ERROR: --daemon, --client, "
+                        + "--serve-stdio and --select-versions cannot be "
+                        + "used in requests.");
+
+                return 1;
+            }
+
+            checkArgs(config);
+
+            return run(config, cacheLoader, processScheduler);
+        } catch (final ExitException ex) {
+            return ex.getStatus();
+        } catch (final RuntimeException ex) {
+            ex.printStackTrace(config.getErrorWriter());
+
+            return 1;
+        } finally {
+            config.getStdoutWriter().flush();
+            config.getErrorWriter().flush();
+        }
+    }
+
+    /**
+     * Loads maven cache from {@link Config#getCacheFile()}.
+     *
+     * @param config application configuration
+     *
+     * @return populated maven cache
+     */
+    private static MavenCache loadCache(final Config config) {
+        final MavenCache mavenCache = new MavenCache();
+        mavenCache.loadCache(config);
+
+        return mavenCache;
     }
 
     /**
@@ -211,11 +439,15 @@ public class Main {
      * @param args   command line arguments
      */
     @SuppressWarnings("AssignmentToForLoopParameter")
-    private static void parseArgs(final Config config, final String[] args) {
+    static void parseArgs(final Config config, final String[] args) {
         for (int i = 0; i < args.length; i++) {
             final String arg = args[i];
 
             switch (arg) {
+                case "--batch":
+                    i++;
+                    config.setBatchManifest(config.resolvePath(args[i]));
+                    break;
                 case "--binjar-uri":
                     i++;
 
@@ -228,6 +460,21 @@ public class Main {
                                 + " is not valid.");
                     }
 
+                    break;
+                case "--client":
+                    i++;
+                    config.setClientSocket(config.resolvePath(args[i]));
+                    break;
+                case "--daemon":
+                    i++;
+                    config.setDaemonSocket(config.resolvePath(args[i]));
+                    break;
+                case "--diff":
+                    config.setDiff(true);
+                    break;
+                case "--diff-list":
+                    i++;
+                    config.setDiffList(config.resolvePath(args[i]));
                     break;
                 case "--download-uri":
                 case "-u":
@@ -248,13 +495,15 @@ public class Main {
                 case "--ebuild":
                 case "-e":
                     i++;
-                    config.setEbuild(Paths.get(args[i]).toAbsolutePath().
-                            normalize());
+                    config.setEbuild(config.resolvePath(args[i]));
                     break;
                 case "--force-min-java-version":
                     i++;
                     config.setForceMinJavaVersion(new JavaVersion(args[i]));
                     break;
+                case "--force-mvn":
+                    config.setForceMvn(true);
+                    break;
                 case "--from-maven-central":
                     config.setFromMavenCentral(true);
                     break;
@@ -262,6 +511,11 @@ public class Main {
                 case "-g":
                     config.setGenerateEbuild(true);
                     break;
+                case "--jobs":
+                case "-j":
+                    i++;
+                    config.setJobs(parsePositiveInt(config, "--jobs", args[i]));
+                    break;
                 case "--keywords":
                 case "-k":
                     i++;
@@ -272,26 +526,99 @@ public class Main {
                     i++;
                     config.setLicense(args[i]);
                     break;
+                case "--maven-repository":
+                    i++;
+                    config.addMavenRepository(config.resolvePath(args[i]));
+                    break;
+                case "--max-processes":
+                    i++;
+                    config.setMaxProcesses(parsePositiveInt(config,
+                            "--max-processes", args[i]));
+                    break;
                 case "--pom":
                 case "-p":
                     i++;
                     config.addPomFile(Paths.get(args[i]));
                     break;
+                case "--pom-cache-dir":
+                    i++;
+                    config.setPomCacheDir(config.resolvePath(args[i]));
+                    break;
+                case "--pom-cache-size":
+                    i++;
+
+                    try {
+                        final long size = Long.parseLong(args[i]);
+
+                        if (size < 0) {
+                            throw new NumberFormatException();
+                        }
+
+                        config.setPomCacheSize(size * 1024 * 1024);
+                    } catch (final NumberFormatException ex) {
+                        config.getErrorWriter().println("ERROR: "
+                                + "--pom-cache-size must be a non-negative "
+                                + "number.");
+                        config.exit(1);
+                    }
+
+                    break;
+                case "--pom-scanner":
+                    i++;
+
+                    if (!Config.POM_SCANNER_STAX.equals(args[i])
+                            && !Config.POM_SCANNER_BYTES.equals(args[i])) {
+                        config.getErrorWriter().println("ERROR: "
+                                + "--pom-scanner must be either "
+                                + Config.POM_SCANNER_STAX + " or "
+                                + Config.POM_SCANNER_BYTES + ".");
+                        config.exit(1);
+                    }
+
+                    config.setPomScanner(args[i]);
+                    break;
+                case "--process-slots":
+                    i++;
+                    config.setProcessSlots(parsePositiveInt(config,
+                            "--process-slots", args[i]));
+                    break;
+                case "--process-slots-dir":
+                    i++;
+                    config.setProcessSlotsDir(config.resolvePath(args[i]));
+                    break;
+                case "--process-timeout":
+                    i++;
+                    parseProcessTimeout(config, args[i]);
+                    break;
                 case "--portage-tree":
                 case "-t":
                     i++;
-                    config.addPortageTree(Paths.get(args[i]).toAbsolutePath().
-                            normalize());
+                    config.addPortageTree(config.resolvePath(args[i]));
                     break;
                 case "--cache-file":
                     i++;
-                    config.setCacheFile(Paths.get(args[i]).toAbsolutePath().
-                            normalize());
+                    config.setCacheFile(config.resolvePath(args[i]));
                     break;
                 case "--refresh-cache":
                 case "-c":
                     config.setRefreshCache(true);
                     break;
+                case "--select-versions":
+                    i++;
+
+                    try {
+                        config.setSelectVersions(
+                                MavenVersionRange.parse(args[i]));
+                    } catch (final IllegalArgumentException ex) {
+                        config.getErrorWriter().println(
+                                "ERROR: " + ex.getMessage());
+                        config.exit(1);
+                    }
+
+                    break;
+                case "--serve-stdio":
+                    config.setServeStdio(true);
+                    break;
                 case "--skip-tests":
                     config.setSkipTests(true);
                     break;
@@ -300,6 +627,10 @@ public class Main {
                     i++;
                     config.setSlot(args[i]);
                     break;
+                case "--template":
+                    i++;
+                    config.setTemplateFile(config.resolvePath(args[i]));
+                    break;
                 case "--test-src-uri":
                     i++;
 
@@ -316,13 +647,12 @@ public class Main {
                 case "--workdir":
                 case "-w":
                     i++;
-                    config.setWorkdir(Paths.get(args[i]).toAbsolutePath().
-                            normalize());
+                    config.setWorkdir(config.resolvePath(args[i]));
                     break;
                 default:
                     config.getErrorWriter().println("ERROR: Switch '" + args[i]
                             + "' is not supported.");
-                    Runtime.getRuntime().exit(1);
+                    config.exit(1);
             }
         }
     }
@@ -351,14 +681,79 @@ public class Main {
         } catch (final IllegalArgumentException ex) {
             config.getErrorWriter().println("Cannot parse ebuild file name");
 
-            Runtime.getRuntime().exit(1);
+            config.exit(1);
+        }
+    }
+
+    /**
+     * Parses positive integer value of command line switch. Exits if the
+     * value is not a positive integer.
+     *
+     * @param config app configuration
+     * @param name   name of the switch
+     * @param value  value of the switch
+     *
+     * @return parsed value
+     */
+    private static int parsePositiveInt(final Config config,
+            final String name, final String value) {
+        try {
+            final int result = Integer.parseInt(value);
+
+            if (result > 0) {
+                return result;
+            }
+        } catch (final NumberFormatException ex) {
+            // reported below
+        }
+
+        config.getErrorWriter().println("ERROR: " + name
+                + " must be a positive number.");
+        config.exit(1);
+
+        return 0;
+    }
+
+    /**
+     * Parses timeout of external tool in format tool=seconds and stores it in
+     * configuration. Exits with error if the value is not valid.
+     *
+     * @param config application configuration
+     * @param value  switch value
+     */
+    private static void parseProcessTimeout(final Config config,
+            final String value) {
+        final int separator = value.indexOf('=');
+
+        if (separator < 1) {
+            config.getErrorWriter().println("ERROR: --process-timeout must "
+                    + "be in format <tool>=<seconds>.");
+            config.exit(1);
         }
+
+        config.setProcessTimeout(value.substring(0, separator),
+                parsePositiveInt(config, "--process-timeout",
+                        value.substring(separator + 1)));
+    }
+
+    /**
+     * Prints number of written and unchanged ebuilds.
+     *
+     * @param config        application configuration
+     * @param mavenEbuilder maven ebuilder that generated the ebuilds
+     */
+    static void printEbuildSummary(final Config config,
+            final MavenEbuilder mavenEbuilder) {
+        config.getStdoutWriter().println("Ebuilds: "
+                + mavenEbuilder.getWritten()
+                + (config.isDryRun() ? " changed, " : " written, ")
+                + mavenEbuilder.getUnchanged() + " unchanged");
     }
 
     /**
      * Prints application usage information.
      */
-    private static void printUsage(final Config config) {
+    static void printUsage(final Config config) {
         try (final BufferedReader reader = new BufferedReader(
                 new InputStreamReader(Main.class.getResourceAsStream(
                         "/usage.txt")))) {
@@ -370,6 +765,76 @@ public class Main {
         }
     }
 
+    /**
+     * Reads maven versions from standard input, one per line, and prints
+     * those that satisfy the version range from the newest to the oldest.
+     * Exits with non-zero code if no version satisfies the range.
+     *
+     * @param config application configuration
+     */
+    private static void selectVersions(final Config config) {
+        final List<MavenVersion> versions;
+
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            versions = selectVersions(config, reader);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read versions", ex);
+        }
+
+        if (versions.isEmpty()) {
+            config.getErrorWriter().flush();
+            config.exit(1);
+        }
+
+        versions.stream().forEach((version) -> {
+            config.getStdoutWriter().println(version.getVersion());
+        });
+    }
+
+    /**
+     * Reads maven versions, one per line, and returns those that satisfy
+     * {@link Config#getSelectVersions()}. Lines that are not valid maven
+     * versions are reported as warning and skipped, so that single broken
+     * entry of maven metadata does not prevent selection from the others.
+     *
+     * @param config application configuration
+     * @param reader reader of versions
+     *
+     * @return selected versions from the newest to the oldest
+     *
+     * @throws IOException Thrown if the versions could not be read.
+     */
+    static List<MavenVersion> selectVersions(final Config config,
+            final BufferedReader reader) throws IOException {
+        final MavenVersionRange range = config.getSelectVersions();
+        final List<MavenVersion> versions = new ArrayList<>(100);
+        String line = reader.readLine();
+
+        while (line != null) {
+            final String version = line.trim();
+
+            if (!version.isEmpty()) {
+                try {
+                    final MavenVersion mavenVersion = MavenVersion.of(version);
+
+                    if (range.contains(mavenVersion)) {
+                        versions.add(mavenVersion);
+                    }
+                } catch (final IllegalArgumentException ex) {
+                    config.getErrorWriter().println("WARNING: "
+                            + ex.getMessage() + " It is skipped.");
+                }
+            }
+
+            line = reader.readLine();
+        }
+
+        versions.sort(Collections.reverseOrder());
+
+        return versions;
+    }
+
     /**
      * Processes cache refresh.
      *
@@ -379,4 +844,29 @@ public class Main {
         final PortageParser portageParser = new PortageParser();
         portageParser.parseTree(config);
     }
+
+    /**
+     * Writes list of changed ebuilds to {@link Config#getDiffList()} if it is
+     * set, one ebuild per line prefixed with {@code A} (new ebuild) or
+     * {@code M} (modified ebuild) and tab. Exits with error if the file
+     * cannot be written.
+     *
+     * @param config        application configuration
+     * @param mavenEbuilder maven ebuilder that compared the ebuilds
+     */
+    static void writeDiffList(final Config config,
+            final MavenEbuilder mavenEbuilder) {
+        if (config.getDiffList() == null) {
+            return;
+        }
+
+        try {
+            Files.write(config.getDiffList(),
+                    mavenEbuilder.getChangedEbuilds(), StandardCharsets.UTF_8);
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("ERROR: Failed to write diff list "
+                    + config.getDiffList() + ": " + ex.getMessage());
+            config.exit(1);
+        }
+    }
 }
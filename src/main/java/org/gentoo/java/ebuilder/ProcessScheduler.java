@@ -0,0 +1,458 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs external tools with bounded concurrency. The number of child processes
+ * running concurrently within this java-ebuilder process is limited by
+ * {@link Config#getMaxProcesses()}. If {@link Config#getProcessSlotsDir()} is
+ * set, every child process additionally holds a lock on one of
+ * {@link Config#getProcessSlots()} slot files in that directory, so all
+ * java-ebuilder processes that use the same directory share one budget. Locks
+ * are released by the operating system if java-ebuilder dies, so the slots
+ * cannot leak.
+ * <p>
+ * Every tool has a timeout. Processes that do not finish in time are
+ * terminated, and killed if they do not exit within a grace period. Run count
+ * and wall time of each tool are recorded and can be printed using
+ * {@link #printSummary(PrintWriter)}.
+ *
+ * @author fordfrog
+ */
+public class ProcessScheduler {
+
+    /**
+     * Timeout in seconds of tools without configured timeout.
+     */
+    public static final int DEFAULT_TIMEOUT = 600;
+    /**
+     * Time in seconds that terminated process gets to exit before it is
+     * killed.
+     */
+    private static final int KILL_GRACE_PERIOD = 10;
+    /**
+     * Interval in milliseconds of polling for free slot.
+     */
+    private static final long SLOT_POLL_INTERVAL = 200;
+    /**
+     * Time in seconds that output streams get to be read till their end after
+     * the process exited. A process that was left running by the tool can
+     * keep the streams open, the output read so far is used then.
+     */
+    private static final int STREAM_DRAIN_PERIOD = 10;
+    /**
+     * Application configuration.
+     */
+    private final Config config;
+    /**
+     * Semaphore limiting number of child processes of this java-ebuilder
+     * process.
+     */
+    private final Semaphore processes;
+    /**
+     * Statistics mapped by tool names.
+     */
+    private final Map<String, ToolStatistics> statistics = new TreeMap<>();
+
+    /**
+     * Creates new instance of ProcessScheduler.
+     *
+     * @param config application configuration
+     */
+    public ProcessScheduler(final Config config) {
+        this.config = config;
+        processes = new Semaphore(config.getMaxProcesses() == 0
+                ? config.getJobs() : config.getMaxProcesses(), true);
+    }
+
+    /**
+     * Returns timeout of the tool.
+     *
+     * @param tool tool name
+     *
+     * @return timeout in seconds
+     */
+    public int getTimeout(final String tool) {
+        final Integer timeout = config.getProcessTimeouts().get(tool);
+
+        return timeout == null ? DEFAULT_TIMEOUT : timeout;
+    }
+
+    /**
+     * Prints run count, wall time and time spent waiting for free slot of
+     * each tool that was run.
+     *
+     * @param writer writer
+     */
+    public void printSummary(final PrintWriter writer) {
+        synchronized (statistics) {
+            statistics.forEach((tool, toolStatistics) -> {
+                writer.println(String.format(Locale.ROOT, "Process %s: %d "
+                        + "run(s), %.1f s wall time, %.1f s waiting, %d "
+                        + "timeout(s)", tool, toolStatistics.runs,
+                        toolStatistics.wallTime / 1e9,
+                        toolStatistics.waitTime / 1e9,
+                        toolStatistics.timeouts));
+            });
+        }
+    }
+
+    /**
+     * Runs the process once a slot is available and waits for it to finish.
+     * Standard input of the process is closed, standard output and standard
+     * error output are collected. If the current thread is interrupted, the
+     * process is terminated.
+     *
+     * @param tool           tool name, used for looking up timeout and for
+     *                       statistics
+     * @param processBuilder process builder
+     *
+     * @return result of the process
+     *
+     * @throws IOException          Thrown if the process could not be
+     *                              started or slot could not be acquired.
+     * @throws InterruptedException Thrown if the thread was interrupted.
+     */
+    public Result run(final String tool, final ProcessBuilder processBuilder)
+            throws IOException, InterruptedException {
+        final long waitStart = System.nanoTime();
+        processes.acquire();
+
+        try {
+            final FileLock slot = acquireSlot();
+
+            try {
+                return run(tool, processBuilder, System.nanoTime() - waitStart);
+            } finally {
+                if (slot != null) {
+                    slot.channel().close();
+                }
+            }
+        } finally {
+            processes.release();
+        }
+    }
+
+    /**
+     * Acquires slot shared with other java-ebuilder processes, waiting till
+     * some slot is free.
+     *
+     * @return lock of the slot or null if slots are not used
+     *
+     * @throws IOException          Thrown if slot file could not be opened.
+     * @throws InterruptedException Thrown if the thread was interrupted.
+     */
+    private FileLock acquireSlot() throws IOException, InterruptedException {
+        final Path directory = config.getProcessSlotsDir();
+
+        if (directory == null) {
+            return null;
+        }
+
+        Files.createDirectories(directory);
+
+        while (true) {
+            for (int i = 0; i < config.getProcessSlots(); i++) {
+                final FileChannel channel = FileChannel.open(
+                        directory.resolve("slot-" + i + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+                FileLock lock = null;
+
+                try {
+                    lock = channel.tryLock();
+                } catch (final OverlappingFileLockException ex) {
+                    // the slot is held by another thread of this process
+                } finally {
+                    if (lock == null) {
+                        channel.close();
+                    }
+                }
+
+                if (lock != null) {
+                    return lock;
+                }
+            }
+
+            Thread.sleep(SLOT_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Runs the process and waits for it to finish.
+     *
+     * @param tool           tool name
+     * @param processBuilder process builder
+     * @param waitTime       time in nanoseconds spent waiting for slot
+     *
+     * @return result of the process
+     *
+     * @throws IOException          Thrown if the process could not be
+     *                              started.
+     * @throws InterruptedException Thrown if the thread was interrupted.
+     */
+    private Result run(final String tool, final ProcessBuilder processBuilder,
+            final long waitTime) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        final Process process = processBuilder.start();
+        final StreamCollector stdout
+                = new StreamCollector(process.getInputStream());
+        final StreamCollector stderr
+                = new StreamCollector(process.getErrorStream());
+        stdout.start();
+        stderr.start();
+
+        boolean finished = false;
+
+        try {
+            process.getOutputStream().close();
+            finished = process.waitFor(getTimeout(tool), TimeUnit.SECONDS);
+        } finally {
+            if (!finished) {
+                terminate(process);
+            }
+
+            record(tool, System.nanoTime() - start, waitTime, !finished);
+        }
+
+        final long drainDeadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(STREAM_DRAIN_PERIOD);
+
+        return new Result(process.exitValue(),
+                stdout.getContent(drainDeadline),
+                stderr.getContent(drainDeadline), !finished);
+    }
+
+    /**
+     * Records statistics of single run.
+     *
+     * @param tool     tool name
+     * @param wallTime wall time in nanoseconds
+     * @param waitTime time in nanoseconds spent waiting for slot
+     * @param timedOut whether the process timed out
+     */
+    private void record(final String tool, final long wallTime,
+            final long waitTime, final boolean timedOut) {
+        synchronized (statistics) {
+            final ToolStatistics toolStatistics = statistics.computeIfAbsent(
+                    tool, (key) -> new ToolStatistics());
+            toolStatistics.runs++;
+            toolStatistics.wallTime += wallTime;
+            toolStatistics.waitTime += waitTime;
+
+            if (timedOut) {
+                toolStatistics.timeouts++;
+            }
+        }
+    }
+
+    /**
+     * Terminates the process, kills it if it does not exit within
+     * {@link #KILL_GRACE_PERIOD} and waits for it to exit.
+     *
+     * @param process process
+     */
+    private static void terminate(final Process process) {
+        process.destroy();
+
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    if (!process.waitFor(KILL_GRACE_PERIOD,
+                            TimeUnit.SECONDS)) {
+                        process.destroyForcibly().waitFor();
+                    }
+
+                    break;
+                } catch (final InterruptedException ex) {
+                    interrupted = true;
+                    process.destroyForcibly();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Result of process run.
+     */
+    public static class Result {
+
+        /**
+         * Collected standard error output.
+         */
+        private final byte[] errorOutput;
+        /**
+         * Exit value of the process.
+         */
+        private final int exitValue;
+        /**
+         * Collected standard output.
+         */
+        private final byte[] output;
+        /**
+         * Whether the process was terminated because it timed out.
+         */
+        private final boolean timedOut;
+
+        /**
+         * Creates new instance of Result.
+         *
+         * @param exitValue   {@link #exitValue}
+         * @param output      {@link #output}
+         * @param errorOutput {@link #errorOutput}
+         * @param timedOut    {@link #timedOut}
+         */
+        Result(final int exitValue, final byte[] output,
+                final byte[] errorOutput, final boolean timedOut) {
+            this.exitValue = exitValue;
+            this.output = output;
+            this.errorOutput = errorOutput;
+            this.timedOut = timedOut;
+        }
+
+        /**
+         * Getter for {@link #errorOutput}.
+         *
+         * @return {@link #errorOutput}
+         */
+        public byte[] getErrorOutput() {
+            return errorOutput;
+        }
+
+        /**
+         * Getter for {@link #exitValue}.
+         *
+         * @return {@link #exitValue}
+         */
+        public int getExitValue() {
+            return exitValue;
+        }
+
+        /**
+         * Getter for {@link #output}.
+         *
+         * @return {@link #output}
+         */
+        public byte[] getOutput() {
+            return output;
+        }
+
+        /**
+         * Getter for {@link #timedOut}.
+         *
+         * @return {@link #timedOut}
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
+    /**
+     * Thread collecting content of input stream into memory.
+     */
+    private static class StreamCollector extends Thread {
+
+        /**
+         * Collected content.
+         */
+        private final ByteArrayOutputStream content
+                = new ByteArrayOutputStream(16_384);
+        /**
+         * Input stream that is collected.
+         */
+        private final InputStream inputStream;
+
+        /**
+         * Creates new instance of StreamCollector.
+         *
+         * @param inputStream {@link #inputStream}
+         */
+        StreamCollector(final InputStream inputStream) {
+            this.inputStream = inputStream;
+            setDaemon(true);
+        }
+
+        /**
+         * Waits till the stream is read or till the deadline and returns its
+         * content. If the stream is not read till its end by the deadline,
+         * content collected so far is returned and the collector is left
+         * running.
+         *
+         * @param deadline value of {@link System#nanoTime()} till which the
+         *                 collector is waited for
+         *
+         * @return collected content
+         *
+         * @throws InterruptedException Thrown if the thread was interrupted.
+         */
+        byte[] getContent(final long deadline) throws InterruptedException {
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(
+                    deadline - System.nanoTime());
+
+            if (remaining > 0) {
+                join(remaining);
+            }
+
+            return content.toByteArray();
+        }
+
+        @Override
+        public void run() {
+            final byte[] buffer = new byte[8_192];
+
+            try (final InputStream stream = inputStream) {
+                int read = stream.read(buffer);
+
+                while (read != -1) {
+                    content.write(buffer, 0, read);
+                    read = stream.read(buffer);
+                }
+            } catch (final IOException ex) {
+                // the process was terminated, use what was read so far
+            }
+        }
+    }
+
+    /**
+     * Statistics of single tool.
+     */
+    private static class ToolStatistics {
+
+        /**
+         * Number of runs.
+         */
+        private int runs;
+        /**
+         * Number of runs that timed out.
+         */
+        private int timeouts;
+        /**
+         * Time in nanoseconds spent waiting for slots.
+         */
+        private long waitTime;
+        /**
+         * Total wall time in nanoseconds.
+         */
+        private long wallTime;
+    }
+}
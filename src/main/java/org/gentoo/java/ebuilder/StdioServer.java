@@ -0,0 +1,348 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.gentoo.java.ebuilder.maven.MavenCacheSnapshot;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+
+/**
+ * Serves JSON requests read from standard input, one request per line, and
+ * writes one JSON response per line to standard output, so that tools can
+ * drive java-ebuilder without paying JVM startup and cache loading for every
+ * invocation. Loaded caches are kept in memory and reloaded when the cache
+ * file changes. Requests are processed by {@link Config#getJobs()} workers,
+ * so responses may be written in different order than the requests were
+ * read, the {@code id} member of the request is copied to its response to
+ * pair them. External processes of all requests are run through single
+ * {@link ProcessScheduler} created from the configuration of the server.
+ * <p>
+ * Every request is an object with {@code action} member and optional
+ * {@code id}, {@code cwd} (directory relative paths are resolved against)
+ * and {@code cacheFile} members. Supported actions are:
+ * <ul>
+ * <li>{@code generate} runs command line {@code args} (array of strings) the
+ * same way as if it was passed to java-ebuilder,</li>
+ * <li>{@code resolve} resolves {@code groupId}, {@code artifactId} and
+ * {@code version} to dependency atom,</li>
+ * <li>{@code query} lists cache items of {@code groupId} and
+ * {@code artifactId},</li>
+ * <li>{@code refresh} refreshes the cache from {@code portageTrees} (array of
+ * paths, optional).</li>
+ * </ul>
+ * Every response contains {@code status} (0 on success),
+ * {@code queuedMillis} (time the request waited for worker) and
+ * {@code elapsedMillis} (time spent processing the request), failed requests
+ * contain {@code error} message.
+ *
+ * @author fordfrog
+ */
+public class StdioServer {
+
+    /**
+     * Loaded caches, created when the server is started.
+     */
+    private LoadedCaches loadedCaches;
+    /**
+     * Scheduler of external processes shared by all requests, created when
+     * the server is started.
+     */
+    private ProcessScheduler processScheduler;
+
+    /**
+     * Reads requests from standard input till its end and writes responses
+     * to standard output of the configuration. Returns after all read
+     * requests are processed.
+     *
+     * @param config application configuration
+     */
+    public void run(final Config config) {
+        loadedCaches = new LoadedCaches(config.getErrorWriter());
+        processScheduler = new ProcessScheduler(config);
+
+        final ExecutorService executor
+                = Executors.newFixedThreadPool(config.getJobs());
+
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+
+            while (line != null) {
+                if (!line.trim().isEmpty()) {
+                    final String request = line;
+                    final long received = System.nanoTime();
+                    executor.submit(() -> respond(config, request, received));
+                }
+
+                line = reader.readLine();
+            }
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("ERROR: Failed to read requests: "
+                    + ex.getMessage());
+        } finally {
+            executor.shutdown();
+
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Processes single request and writes its response.
+     *
+     * @param config   application configuration of the server
+     * @param line     request line
+     * @param received value of {@link System#nanoTime()} when the request was
+     *                 read
+     */
+    private void respond(final Config config, final String line,
+            final long received) {
+        final long started = System.nanoTime();
+        final Map<String, Object> response = new LinkedHashMap<>(16);
+        final StringWriter output = new StringWriter(1_024);
+        final StringWriter errors = new StringWriter(256);
+
+        try {
+            final Object parsed = Json.parse(line);
+
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException(
+                        "Request must be JSON object.");
+            }
+
+            final Map<?, ?> request = (Map<?, ?>) parsed;
+
+            if (request.containsKey("id")) {
+                response.put("id", request.get("id"));
+            }
+
+            final String action = getString(request, "action", true);
+            response.put("action", action);
+
+            final Config requestConfig = new Config(new PrintWriter(output),
+                    new PrintWriter(errors));
+            requestConfig.setDaemonRequest(true);
+
+            final String cwd = getString(request, "cwd", false);
+            requestConfig.setCurrentDirectory(cwd == null
+                    ? config.getCurrentDirectory() : config.resolvePath(cwd));
+
+            final String cacheFile = getString(request, "cacheFile", false);
+            requestConfig.setCacheFile(cacheFile == null
+                    ? config.getCacheFile()
+                    : requestConfig.resolvePath(cacheFile));
+
+            final int status;
+
+            switch (action) {
+                case "generate":
+                    status = Main.runRequest(requestConfig,
+                            getStrings(request, "args").toArray(new String[0]),
+                            loadedCaches::get, processScheduler);
+                    response.put("output", output.toString());
+                    break;
+                case "query":
+                    status = query(requestConfig, request, response);
+                    break;
+                case "refresh":
+                    status = refresh(requestConfig, request);
+                    response.put("output", output.toString());
+                    break;
+                case "resolve":
+                    status = resolve(requestConfig, request, response);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported action "
+                            + action + ".");
+            }
+
+            response.put("status", status);
+
+            if (errors.getBuffer().length() > 0) {
+                response.put("errors", errors.toString());
+            }
+        } catch (final ExitException ex) {
+            response.put("status", ex.getStatus());
+            response.put("error", errors.toString().trim());
+        } catch (final Throwable ex) {
+            // errors, such as running out of memory, are reported too, so
+            // that the client is not left waiting for the response
+            final String message = ex.getMessage() != null
+                    ? ex.getMessage() : ex.toString();
+            response.put("status", 1);
+            response.put("error", ex.getCause() == null ? message
+                    : message + ": " + ex.getCause().getMessage());
+        }
+
+        response.put("queuedMillis", (started - received) / 1_000_000.0);
+        response.put("elapsedMillis",
+                (System.nanoTime() - started) / 1_000_000.0);
+
+        final StringBuilder sb = new StringBuilder(1_024);
+        Json.write(sb, response);
+
+        synchronized (config.getStdoutWriter()) {
+            config.getStdoutWriter().println(sb);
+            config.getStdoutWriter().flush();
+        }
+    }
+
+    /**
+     * Lists cache items of maven artifact.
+     *
+     * @param config   application configuration of the request
+     * @param request  request
+     * @param response response to put the result to
+     *
+     * @return exit status
+     */
+    private int query(final Config config, final Map<?, ?> request,
+            final Map<String, Object> response) {
+        final String groupId = getString(request, "groupId", true);
+        final String artifactId = getString(request, "artifactId", true);
+        final MavenCacheSnapshot snapshot
+                = loadedCaches.get(config).getSnapshot();
+        final List<CacheItem> cacheItems
+                = snapshot.getVersions(groupId, artifactId);
+        final List<Object> items = new ArrayList<>(cacheItems.size());
+
+        for (final CacheItem cacheItem : cacheItems) {
+            final Map<String, Object> item = new LinkedHashMap<>(8);
+            item.put("category", cacheItem.getCategory());
+            item.put("package", cacheItem.getPkg());
+            item.put("version", cacheItem.getVersion());
+            item.put("slot", cacheItem.getSlot());
+            item.put("mavenVersion", cacheItem.getMavenVersion());
+            item.put("useFlag", cacheItem.getUseFlag());
+            items.add(item);
+        }
+
+        response.put("items", items);
+
+        return 0;
+    }
+
+    /**
+     * Refreshes the cache.
+     *
+     * @param config  application configuration of the request
+     * @param request request
+     *
+     * @return exit status
+     */
+    private int refresh(final Config config, final Map<?, ?> request) {
+        final List<String> args = new ArrayList<>(8);
+        args.add("--refresh-cache");
+
+        if (request.get("portageTrees") != null) {
+            for (final String portageTree
+                    : getStrings(request, "portageTrees")) {
+                args.add("--portage-tree");
+                args.add(portageTree);
+            }
+        }
+
+        return Main.runRequest(config, args.toArray(new String[0]),
+                loadedCaches::get, processScheduler);
+    }
+
+    /**
+     * Resolves maven artifact to dependency atom.
+     *
+     * @param config   application configuration of the request
+     * @param request  request
+     * @param response response to put the result to
+     *
+     * @return exit status
+     */
+    private int resolve(final Config config, final Map<?, ?> request,
+            final Map<String, Object> response) {
+        final String dependency = loadedCaches.get(config).getSnapshot().
+                getDependency(getString(request, "groupId", true),
+                        getString(request, "artifactId", true),
+                        getString(request, "version", true));
+        final boolean found = !dependency.startsWith("!!!");
+
+        response.put("found", found);
+        response.put("dependency", found ? dependency : null);
+
+        if (!found) {
+            response.put("reason", dependency.replace("!!!", ""));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns string member of the request.
+     *
+     * @param request  request
+     * @param name     member name
+     * @param required whether the member must be present
+     *
+     * @return member value or null
+     *
+     * @throws IllegalArgumentException Thrown if the member is not string or
+     *                                  required member is missing.
+     */
+    private static String getString(final Map<?, ?> request,
+            final String name, final boolean required) {
+        final Object value = request.get(name);
+
+        if (value == null && !required) {
+            return null;
+        } else if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Member " + name
+                    + " must be string.");
+        }
+
+        return (String) value;
+    }
+
+    /**
+     * Returns array of strings member of the request.
+     *
+     * @param request request
+     * @param name    member name
+     *
+     * @return list of strings
+     *
+     * @throws IllegalArgumentException Thrown if the member is not array of
+     *                                  strings.
+     */
+    private static List<String> getStrings(final Map<?, ?> request,
+            final String name) {
+        final Object value = request.get(name);
+
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Member " + name
+                    + " must be array of strings.");
+        }
+
+        final List<String> result = new ArrayList<>(((List<?>) value).size());
+
+        for (final Object item : (List<?>) value) {
+            if (!(item instanceof String)) {
+                throw new IllegalArgumentException("Member " + name
+                        + " must be array of strings.");
+            }
+
+            result.add((String) item);
+        }
+
+        return result;
+    }
+}
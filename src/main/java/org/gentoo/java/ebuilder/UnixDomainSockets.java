@@ -0,0 +1,133 @@
+package org.gentoo.java.ebuilder;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Opens UNIX domain socket channels. The sources are compatible with Java 8
+ * while UNIX domain socket channels are available since Java 16, so the
+ * channels are accessed using reflection.
+ *
+ * @author fordfrog
+ */
+final class UnixDomainSockets {
+
+    /**
+     * Message of exception thrown if UNIX domain sockets are not supported.
+     */
+    private static final String NOT_SUPPORTED = "UNIX domain sockets require "
+            + "Java 16 or newer";
+
+    /**
+     * Creates new instance of UnixDomainSockets.
+     */
+    private UnixDomainSockets() {
+    }
+
+    /**
+     * Creates socket address of the path.
+     *
+     * @param path path to socket file
+     *
+     * @return socket address
+     *
+     * @throws UnsupportedOperationException Thrown if UNIX domain sockets are
+     *                                       not supported.
+     */
+    static SocketAddress getAddress(final Path path) {
+        try {
+            return (SocketAddress) Class.forName(
+                    "java.net.UnixDomainSocketAddress").getMethod("of",
+                            Path.class).invoke(null, path);
+        } catch (final InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IllegalArgumentException("Invalid socket path " + path,
+                    ex.getCause());
+        } catch (final ReflectiveOperationException ex) {
+            throw new UnsupportedOperationException(NOT_SUPPORTED, ex);
+        }
+    }
+
+    /**
+     * Opens server socket channel.
+     *
+     * @return server socket channel
+     *
+     * @throws IOException                   Thrown if the channel could not
+     *                                       be opened.
+     * @throws UnsupportedOperationException Thrown if UNIX domain sockets are
+     *                                       not supported.
+     */
+    static ServerSocketChannel openServerSocketChannel() throws IOException {
+        return (ServerSocketChannel) open(ServerSocketChannel.class);
+    }
+
+    /**
+     * Opens socket channel.
+     *
+     * @return socket channel
+     *
+     * @throws IOException                   Thrown if the channel could not
+     *                                       be opened.
+     * @throws UnsupportedOperationException Thrown if UNIX domain sockets are
+     *                                       not supported.
+     */
+    static SocketChannel openSocketChannel() throws IOException {
+        return (SocketChannel) open(SocketChannel.class);
+    }
+
+    /**
+     * Opens channel of the class using its {@code open(ProtocolFamily)}
+     * method.
+     *
+     * @param channelClass channel class
+     *
+     * @return opened channel
+     *
+     * @throws IOException Thrown if the channel could not be opened.
+     */
+    private static Object open(final Class<?> channelClass)
+            throws IOException {
+        try {
+            return channelClass.getMethod("open", ProtocolFamily.class).
+                    invoke(null, getProtocolFamily());
+        } catch (final InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IOException("Failed to open channel", ex.getCause());
+        } catch (final ReflectiveOperationException ex) {
+            throw new UnsupportedOperationException(NOT_SUPPORTED, ex);
+        }
+    }
+
+    /**
+     * Returns UNIX protocol family.
+     *
+     * @return protocol family
+     *
+     * @throws UnsupportedOperationException Thrown if UNIX domain sockets are
+     *                                       not supported.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ProtocolFamily getProtocolFamily() {
+        try {
+            return (ProtocolFamily) Enum.valueOf(
+                    (Class) StandardProtocolFamily.class, "UNIX");
+        } catch (final IllegalArgumentException ex) {
+            throw new UnsupportedOperationException(NOT_SUPPORTED, ex);
+        }
+    }
+}
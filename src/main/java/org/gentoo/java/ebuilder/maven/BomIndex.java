@@ -0,0 +1,323 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of dependencies managed by imported BOMs, keyed by BOM coordinates.
+ * Each BOM is resolved only once per run and the result can be persisted in a
+ * directory so that following runs do not need to read the BOM chain at all.
+ * Persisted entries are addressed by SHA-256 hash of the BOM coordinates and
+ * content of the BOM pom and its parent poms. Instances are not thread safe.
+ *
+ * @author fordfrog
+ */
+public class BomIndex {
+
+    /**
+     * Header of persisted entries, must be changed whenever the format
+     * changes.
+     */
+    private static final String HEADER = "bom-index 1";
+    /**
+     * Managed dependencies mapped by BOM coordinates.
+     */
+    private final Map<String, List<ManagedDependency>> boms
+            = new HashMap<>(20);
+    /**
+     * Directory where the index is persisted or null if it is not persisted.
+     */
+    private final Path directory;
+
+    /**
+     * Creates new instance of BomIndex.
+     *
+     * @param directory {@link #directory}
+     */
+    public BomIndex(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns dependencies managed by the BOM.
+     *
+     * @param coordinates BOM coordinates in form groupId:artifactId:version
+     * @param lineage     BOM pom file and its parent poms
+     *
+     * @return read-only list of managed dependencies in the order of the BOM
+     *         or null if the BOM is not indexed yet
+     *
+     * @throws IOException Thrown if persisted entry could not be read.
+     */
+    public List<ManagedDependency> get(final String coordinates,
+            final List<Path> lineage) throws IOException {
+        List<ManagedDependency> result = boms.get(coordinates);
+
+        if (result != null || directory == null) {
+            return result;
+        }
+
+        final List<String> lines;
+
+        try {
+            lines = Files.readAllLines(getEntryPath(coordinates, lineage),
+                    StandardCharsets.UTF_8);
+        } catch (final NoSuchFileException ex) {
+            return null;
+        }
+
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            return null;
+        }
+
+        result = new ArrayList<>(lines.size() - 1);
+
+        for (final String line : lines.subList(1, lines.size())) {
+            final String[] parts = line.split("\t", -1);
+
+            if (parts.length != 6) {
+                return null;
+            }
+
+            result.add(new ManagedDependency(parts[0], parts[1],
+                    emptyToNull(parts[2]), emptyToNull(parts[3]),
+                    emptyToNull(parts[4]), emptyToNull(parts[5])));
+        }
+
+        result = Collections.unmodifiableList(result);
+        boms.put(coordinates, result);
+
+        return result;
+    }
+
+    /**
+     * Adds BOM to the index and persists it if the index is persisted.
+     *
+     * @param coordinates  BOM coordinates in form groupId:artifactId:version
+     * @param lineage      BOM pom file and its parent poms
+     * @param dependencies dependencies managed by the BOM
+     *
+     * @throws IOException Thrown if the entry could not be persisted.
+     */
+    public void put(final String coordinates, final List<Path> lineage,
+            final List<ManagedDependency> dependencies) throws IOException {
+        boms.put(coordinates, Collections.unmodifiableList(
+                new ArrayList<>(dependencies)));
+
+        if (directory == null) {
+            return;
+        }
+
+        final StringBuilder sbContent = new StringBuilder(
+                dependencies.size() * 60 + HEADER.length() + 1);
+        sbContent.append(HEADER);
+        sbContent.append('\n');
+
+        for (final ManagedDependency dependency : dependencies) {
+            sbContent.append(dependency.getGroupId());
+            sbContent.append('\t');
+            sbContent.append(dependency.getArtifactId());
+            sbContent.append('\t');
+            sbContent.append(nullToEmpty(dependency.getType()));
+            sbContent.append('\t');
+            sbContent.append(nullToEmpty(dependency.getClassifier()));
+            sbContent.append('\t');
+            sbContent.append(nullToEmpty(dependency.getVersion()));
+            sbContent.append('\t');
+            sbContent.append(nullToEmpty(dependency.getScope()));
+            sbContent.append('\n');
+        }
+
+        final Path entry = getEntryPath(coordinates, lineage);
+        Files.createDirectories(directory);
+
+        final Path tempFile = Files.createTempFile(directory,
+                entry.getFileName().toString(), ".tmp");
+
+        try {
+            Files.write(tempFile,
+                    sbContent.toString().getBytes(StandardCharsets.UTF_8));
+
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, entry,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Converts empty string to null.
+     *
+     * @param value value
+     *
+     * @return value or null if the value is empty
+     */
+    private static String emptyToNull(final String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Converts null to empty string.
+     *
+     * @param value value
+     *
+     * @return value or empty string if the value is null
+     */
+    private static String nullToEmpty(final String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Returns path of persisted entry.
+     *
+     * @param coordinates BOM coordinates
+     * @param lineage     BOM pom file and its parent poms
+     *
+     * @return path of the entry
+     *
+     * @throws IOException Thrown if some of the pom files could not be read.
+     */
+    private Path getEntryPath(final String coordinates,
+            final List<Path> lineage) throws IOException {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("SHA-256 is not supported", ex);
+        }
+
+        EffectivePomCache.updateDigest(digest, HEADER);
+        EffectivePomCache.updateDigest(digest, coordinates);
+
+        for (final Path pomFile : lineage) {
+            EffectivePomCache.updateDigest(digest, Files.readAllBytes(pomFile));
+        }
+
+        return directory.resolve(
+                EffectivePomCache.toHex(digest.digest()) + ".bom");
+    }
+
+    /**
+     * Dependency managed by BOM.
+     */
+    public static class ManagedDependency {
+
+        /**
+         * Artifact id.
+         */
+        private final String artifactId;
+        /**
+         * Classifier or null.
+         */
+        private final String classifier;
+        /**
+         * Group id.
+         */
+        private final String groupId;
+        /**
+         * Managed scope or null.
+         */
+        private final String scope;
+        /**
+         * Type or null.
+         */
+        private final String type;
+        /**
+         * Managed version or null.
+         */
+        private final String version;
+
+        /**
+         * Creates new instance of ManagedDependency.
+         *
+         * @param groupId    {@link #groupId}
+         * @param artifactId {@link #artifactId}
+         * @param type       {@link #type}
+         * @param classifier {@link #classifier}
+         * @param version    {@link #version}
+         * @param scope      {@link #scope}
+         */
+        public ManagedDependency(final String groupId,
+                final String artifactId, final String type,
+                final String classifier, final String version,
+                final String scope) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.type = type;
+            this.classifier = classifier;
+            this.version = version;
+            this.scope = scope;
+        }
+
+        /**
+         * Getter for {@link #artifactId}.
+         *
+         * @return {@link #artifactId}
+         */
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        /**
+         * Getter for {@link #classifier}.
+         *
+         * @return {@link #classifier}
+         */
+        public String getClassifier() {
+            return classifier;
+        }
+
+        /**
+         * Getter for {@link #groupId}.
+         *
+         * @return {@link #groupId}
+         */
+        public String getGroupId() {
+            return groupId;
+        }
+
+        /**
+         * Getter for {@link #scope}.
+         *
+         * @return {@link #scope}
+         */
+        public String getScope() {
+            return scope;
+        }
+
+        /**
+         * Getter for {@link #type}.
+         *
+         * @return {@link #type}
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Getter for {@link #version}.
+         *
+         * @return {@link #version}
+         */
+        public String getVersion() {
+            return version;
+        }
+    }
+}
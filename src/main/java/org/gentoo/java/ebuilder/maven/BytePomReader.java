@@ -0,0 +1,626 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Pom reader that scans UTF-8 encoded pom directly in byte array. Element
+ * names are kept as offsets into the array and are converted to strings only
+ * when {@link #getLocalName()} is called, so skipping of elements the parser
+ * is not interested in (which is most of a large effective pom) only matches
+ * start and end tags and does not create any objects.
+ * <p>
+ * The reader checks only what it needs to find the elements: it does not
+ * validate that end tags match their start tags, does not process DTDs and
+ * supports only predefined and character entities. Use
+ * {@link #isSupported(byte[])} to check whether the pom can be read with
+ * this reader.
+ *
+ * @author fordfrog
+ */
+class BytePomReader implements PomReader {
+
+    /**
+     * Current event is end of document.
+     */
+    private static final int END_DOCUMENT = 0;
+    /**
+     * Current event is end element.
+     */
+    private static final int END_ELEMENT = 1;
+    /**
+     * Current event is start element.
+     */
+    private static final int START_ELEMENT = 2;
+    /**
+     * Current event is start of document.
+     */
+    private static final int START_DOCUMENT = 3;
+    /**
+     * Pom content.
+     */
+    private final byte[] content;
+    /**
+     * Whether current start element is empty element tag.
+     */
+    private boolean emptyElement;
+    /**
+     * Current event.
+     */
+    private int event = START_DOCUMENT;
+    /**
+     * End offset of local name of current element.
+     */
+    private int nameEnd;
+    /**
+     * Start offset of local name of current element.
+     */
+    private int nameStart;
+    /**
+     * Current offset in {@link #content}.
+     */
+    private int pos;
+
+    /**
+     * Creates new instance of BytePomReader.
+     *
+     * @param content {@link #content}
+     */
+    BytePomReader(final byte[] content) {
+        this.content = content;
+
+        if (content.length >= 3 && content[0] == (byte) 0xef
+                && content[1] == (byte) 0xbb && content[2] == (byte) 0xbf) {
+            pos = 3;
+        }
+    }
+
+    /**
+     * Checks whether the pom can be read using this reader, that is whether
+     * it is encoded in UTF-8 or ASCII and does not contain document type
+     * declaration, which could define entities this reader cannot resolve.
+     *
+     * @param content pom content
+     *
+     * @return true if the pom is supported, otherwise false
+     */
+    static boolean isSupported(final byte[] content) {
+        if (content.length >= 2 && (content[0] == 0 || content[1] == 0
+                || (content[0] & 0xff) == 0xfe
+                || (content[0] & 0xff) == 0xff)) {
+            return false;
+        }
+
+        final int start = content.length >= 3 && content[0] == (byte) 0xef
+                ? 3 : 0;
+
+        if (hasDoctype(content, start)) {
+            return false;
+        }
+
+        if (!startsWith(content, start, "<?xml")) {
+            return true;
+        }
+
+        final int end = indexOf(content, "?>", start);
+
+        if (end == -1) {
+            return false;
+        }
+
+        final String declaration = new String(content, start, end - start,
+                StandardCharsets.US_ASCII);
+        final int encodingPos = declaration.indexOf("encoding");
+
+        if (encodingPos == -1) {
+            return true;
+        }
+
+        final String encoding = declaration.substring(encodingPos + 8).
+                replaceAll("^\\s*=\\s*[\"']([^\"']*)[\"'].*$", "$1");
+
+        return "UTF-8".equalsIgnoreCase(encoding)
+                || "UTF8".equalsIgnoreCase(encoding)
+                || "US-ASCII".equalsIgnoreCase(encoding)
+                || "ASCII".equalsIgnoreCase(encoding);
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if (event != START_ELEMENT) {
+            throw new XMLStreamException("Not at start element");
+        }
+
+        if (emptyElement) {
+            emptyElement = false;
+            event = END_ELEMENT;
+
+            return "";
+        }
+
+        StringBuilder sbText = null;
+        String text = null;
+
+        while (true) {
+            final int tagStart = indexOf(content, '<', pos);
+
+            if (tagStart == -1) {
+                throw new XMLStreamException("Unexpected end of document");
+            }
+
+            if (tagStart > pos) {
+                final String segment = decodeText(pos, tagStart);
+
+                if (sbText != null) {
+                    sbText.append(segment);
+                } else if (text == null) {
+                    text = segment;
+                } else {
+                    sbText = new StringBuilder(text);
+                    sbText.append(segment);
+                }
+            }
+
+            pos = tagStart;
+
+            final byte type = byteAt(tagStart + 1);
+
+            if (type == '/') {
+                readEndTag();
+
+                if (sbText != null) {
+                    return sbText.toString();
+                }
+
+                return text == null ? "" : text;
+            } else if (startsWith(content, tagStart, "<![CDATA[")) {
+                final int end = skipTo(tagStart + 9, "]]>");
+                final String segment = new String(content, tagStart + 9,
+                        end - 3 - tagStart - 9, StandardCharsets.UTF_8);
+
+                if (sbText == null) {
+                    sbText = new StringBuilder(text == null ? "" : text);
+                }
+
+                sbText.append(segment);
+                pos = end;
+            } else if (type == '!' || type == '?') {
+                skipMarkup(tagStart);
+            } else {
+                throw new XMLStreamException("Element text content may not "
+                        + "contain start element at offset " + tagStart);
+            }
+        }
+    }
+
+    @Override
+    public String getLocalName() {
+        return new String(content, nameStart, nameEnd - nameStart,
+                StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return event != END_DOCUMENT;
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return event == END_ELEMENT;
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return event == START_ELEMENT;
+    }
+
+    @Override
+    public void next() throws XMLStreamException {
+        if (emptyElement) {
+            emptyElement = false;
+            event = END_ELEMENT;
+
+            return;
+        }
+
+        while (true) {
+            final int tagStart = indexOf(content, '<', pos);
+
+            if (tagStart == -1) {
+                pos = content.length;
+                event = END_DOCUMENT;
+
+                return;
+            }
+
+            pos = tagStart;
+
+            final byte type = byteAt(tagStart + 1);
+
+            if (type == '/') {
+                readEndTag();
+
+                return;
+            } else if (type == '!' || type == '?') {
+                skipMarkup(tagStart);
+            } else {
+                readStartTag();
+
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void skipElement() throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            next();
+
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            } else {
+                throw new XMLStreamException("Unexpected end of document");
+            }
+        }
+    }
+
+    /**
+     * Checks whether prolog of the document contains document type
+     * declaration. Only the prolog is scanned, so the check stops at the
+     * first element.
+     *
+     * @param bytes array
+     * @param from  offset to start at
+     *
+     * @return true if the document type declaration is found, otherwise
+     *         false
+     */
+    private static boolean hasDoctype(final byte[] bytes, final int from) {
+        int offset = from;
+
+        while (offset < bytes.length) {
+            if (isWhitespace(bytes[offset])) {
+                offset++;
+            } else if (startsWith(bytes, offset, "<!DOCTYPE")) {
+                return true;
+            } else if (startsWith(bytes, offset, "<!--")) {
+                final int end = indexOf(bytes, "-->", offset + 4);
+
+                if (end == -1) {
+                    return false;
+                }
+
+                offset = end + 3;
+            } else if (startsWith(bytes, offset, "<?")) {
+                final int end = indexOf(bytes, "?>", offset + 2);
+
+                if (end == -1) {
+                    return false;
+                }
+
+                offset = end + 2;
+            } else {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns index of the byte in the array.
+     *
+     * @param bytes array
+     * @param value byte to search for
+     * @param from  offset to start at
+     *
+     * @return index of the byte or -1 if it is not found
+     */
+    private static int indexOf(final byte[] bytes, final char value,
+            final int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns index of ASCII string in the array.
+     *
+     * @param bytes array
+     * @param value string to search for
+     * @param from  offset to start at
+     *
+     * @return index of the string or -1 if it is not found
+     */
+    private static int indexOf(final byte[] bytes, final String value,
+            final int from) {
+        final int last = bytes.length - value.length();
+
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < value.length(); j++) {
+                if (bytes[i + j] != value.charAt(j)) {
+                    continue outer;
+                }
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks whether the byte is XML whitespace.
+     *
+     * @param value byte
+     *
+     * @return true if the byte is whitespace, otherwise false
+     */
+    private static boolean isWhitespace(final byte value) {
+        return value == ' ' || value == '\t' || value == '\n' || value == '\r';
+    }
+
+    /**
+     * Checks whether the array contains ASCII string at specified offset.
+     *
+     * @param bytes  array
+     * @param offset offset
+     * @param value  string
+     *
+     * @return true if the array contains the string, otherwise false
+     */
+    private static boolean startsWith(final byte[] bytes, final int offset,
+            final String value) {
+        if (offset + value.length() > bytes.length) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (bytes[offset + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns byte at specified offset.
+     *
+     * @param offset offset
+     *
+     * @return byte or 0 if the offset is past end of content
+     */
+    private byte byteAt(final int offset) {
+        return offset < content.length ? content[offset] : 0;
+    }
+
+    /**
+     * Decodes character data, resolving entity references and normalizing
+     * line ends.
+     *
+     * @param start start offset
+     * @param end   end offset
+     *
+     * @return decoded text
+     *
+     * @throws XMLStreamException Thrown if the text contains unsupported
+     *                            entity reference.
+     */
+    private String decodeText(final int start, final int end)
+            throws XMLStreamException {
+        String text = new String(content, start, end - start,
+                StandardCharsets.UTF_8);
+
+        if (text.indexOf('\r') != -1) {
+            text = text.replace("\r\n", "\n").replace('\r', '\n');
+        }
+
+        int ampersand = text.indexOf('&');
+
+        if (ampersand == -1) {
+            return text;
+        }
+
+        final StringBuilder sbText = new StringBuilder(text.length());
+        int textPos = 0;
+
+        while (ampersand != -1) {
+            final int semicolon = text.indexOf(';', ampersand);
+
+            if (semicolon == -1) {
+                throw new XMLStreamException("Unterminated entity reference "
+                        + "at offset " + start);
+            }
+
+            sbText.append(text, textPos, ampersand);
+
+            final String entity = text.substring(ampersand + 1, semicolon);
+
+            switch (entity) {
+                case "amp":
+                    sbText.append('&');
+                    break;
+                case "apos":
+                    sbText.append('\'');
+                    break;
+                case "gt":
+                    sbText.append('>');
+                    break;
+                case "lt":
+                    sbText.append('<');
+                    break;
+                case "quot":
+                    sbText.append('"');
+                    break;
+                default:
+                    if (entity.startsWith("#")) {
+                        try {
+                            sbText.appendCodePoint(entity.startsWith("#x")
+                                    ? Integer.parseInt(entity.substring(2), 16)
+                                    : Integer.parseInt(entity.substring(1)));
+                        } catch (final IllegalArgumentException ex) {
+                            throw new XMLStreamException("Invalid character "
+                                    + "reference &" + entity + ";", ex);
+                        }
+                    } else {
+                        throw new XMLStreamException("Unsupported entity "
+                                + "reference &" + entity + ";");
+                    }
+            }
+
+            textPos = semicolon + 1;
+            ampersand = text.indexOf('&', textPos);
+        }
+
+        sbText.append(text, textPos, text.length());
+
+        return sbText.toString();
+    }
+
+    /**
+     * Reads element name starting at current position and stores offsets of
+     * its local name.
+     *
+     * @throws XMLStreamException Thrown if the name is empty.
+     */
+    private void readName() throws XMLStreamException {
+        nameStart = pos;
+
+        while (pos < content.length) {
+            final byte value = content[pos];
+
+            if (isWhitespace(value) || value == '>' || value == '/') {
+                break;
+            } else if (value == ':') {
+                nameStart = pos + 1;
+            }
+
+            pos++;
+        }
+
+        nameEnd = pos;
+
+        if (nameEnd == nameStart) {
+            throw new XMLStreamException("Missing element name at offset "
+                    + pos);
+        }
+    }
+
+    /**
+     * Reads end tag at current position.
+     *
+     * @throws XMLStreamException Thrown if the tag is not terminated.
+     */
+    private void readEndTag() throws XMLStreamException {
+        pos += 2;
+        readName();
+
+        final int end = indexOf(content, '>', pos);
+
+        if (end == -1) {
+            throw new XMLStreamException("Unterminated end tag at offset "
+                    + pos);
+        }
+
+        pos = end + 1;
+        event = END_ELEMENT;
+    }
+
+    /**
+     * Reads start tag at current position, skipping its attributes.
+     *
+     * @throws XMLStreamException Thrown if the tag is not terminated.
+     */
+    private void readStartTag() throws XMLStreamException {
+        pos++;
+        readName();
+
+        byte quote = 0;
+
+        while (pos < content.length) {
+            final byte value = content[pos++];
+
+            if (quote != 0) {
+                if (value == quote) {
+                    quote = 0;
+                }
+            } else if (value == '"' || value == '\'') {
+                quote = value;
+            } else if (value == '>') {
+                emptyElement = content[pos - 2] == '/';
+                event = START_ELEMENT;
+
+                return;
+            }
+        }
+
+        throw new XMLStreamException("Unterminated start tag");
+    }
+
+    /**
+     * Skips comment, CDATA section, processing instruction or declaration
+     * starting at specified offset.
+     *
+     * @param start offset of '&lt;'
+     *
+     * @throws XMLStreamException Thrown if the markup is not terminated.
+     */
+    private void skipMarkup(final int start) throws XMLStreamException {
+        if (startsWith(content, start, "<!--")) {
+            pos = skipTo(start + 4, "-->");
+        } else if (startsWith(content, start, "<![CDATA[")) {
+            pos = skipTo(start + 9, "]]>");
+        } else if (byteAt(start + 1) == '?') {
+            pos = skipTo(start + 2, "?>");
+        } else {
+            int depth = 0;
+
+            for (int i = start + 2; i < content.length; i++) {
+                if (content[i] == '[') {
+                    depth++;
+                } else if (content[i] == ']') {
+                    depth--;
+                } else if (content[i] == '>' && depth <= 0) {
+                    pos = i + 1;
+
+                    return;
+                }
+            }
+
+            throw new XMLStreamException("Unterminated declaration at offset "
+                    + start);
+        }
+    }
+
+    /**
+     * Returns offset just behind the terminator.
+     *
+     * @param from       offset to start at
+     * @param terminator terminator
+     *
+     * @return offset after the terminator
+     *
+     * @throws XMLStreamException Thrown if the terminator is not found.
+     */
+    private int skipTo(final int from, final String terminator)
+            throws XMLStreamException {
+        final int end = indexOf(content, terminator, from);
+
+        if (end == -1) {
+            throw new XMLStreamException("Missing " + terminator
+                    + " after offset " + from);
+        }
+
+        return end + terminator.length();
+    }
+}
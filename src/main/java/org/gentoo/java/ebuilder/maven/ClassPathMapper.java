@@ -0,0 +1,173 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps dependency atoms to java-pkg-simple classpath entries, for example
+ * {@code >=dev-java/foo-1.2-r1:2[bar]} to {@code foo-2}. The atom is parsed
+ * by scanning it once without regular expressions and the results are
+ * memoized for the whole application run, as the same atoms repeat across
+ * classpath variables, projects and ebuilds. The memo is cleared when it
+ * reaches {@link #MAX_ENTRIES} entries, so that it does not grow without
+ * limit in long-running server as caches are reloaded.
+ *
+ * @author fordfrog
+ */
+final class ClassPathMapper {
+
+    /**
+     * Maximum number of memoized classpath entries.
+     */
+    private static final int MAX_ENTRIES = 4_096;
+    /**
+     * Classpath entries mapped by atoms.
+     */
+    private static final Map<String, String> ENTRIES
+            = new ConcurrentHashMap<>(256);
+
+    /**
+     * Creates new instance of ClassPathMapper.
+     */
+    private ClassPathMapper() {
+    }
+
+    /**
+     * Returns classpath entry of the atom. The entry is package name without
+     * category, version operator, version, revision and USE dependencies,
+     * followed by {@code -SLOT} unless the slot is 0.
+     *
+     * @param atom dependency atom
+     *
+     * @return classpath entry
+     */
+    static String getEntry(final String atom) {
+        final String result = ENTRIES.get(atom);
+
+        if (result != null) {
+            return result;
+        } else if (ENTRIES.size() >= MAX_ENTRIES) {
+            ENTRIES.clear();
+        }
+
+        return ENTRIES.computeIfAbsent(atom, ClassPathMapper::parse);
+    }
+
+    /**
+     * Parses the atom into classpath entry.
+     *
+     * @param atom dependency atom
+     *
+     * @return classpath entry
+     */
+    private static String parse(final String atom) {
+        // category ends at the last slash, USE dependencies are enclosed in
+        // brackets
+        final int start = atom.lastIndexOf('/') + 1;
+        final int useStart = atom.indexOf('[', start);
+        final int useEnd = useStart == -1 ? -1 : atom.lastIndexOf(']');
+        final String rest;
+
+        if (useStart != -1 && useEnd > useStart) {
+            rest = atom.substring(start, useStart)
+                    + atom.substring(useEnd + 1);
+        } else {
+            rest = atom.substring(start);
+        }
+
+        final int slotStart = rest.indexOf(':');
+        final int slotEnd = slotStart == -1
+                ? -1 : rest.indexOf(':', slotStart + 1);
+        String pn = stripRevision(slotStart == -1
+                ? rest : rest.substring(0, slotStart));
+
+        if (slotStart == -1) {
+            return pn;
+        }
+
+        final String slot = rest.substring(slotStart + 1,
+                slotEnd == -1 ? rest.length() : slotEnd);
+
+        // atoms with empty slot or more than one slot part are used as they
+        // are
+        if (slot.isEmpty() || (slotEnd != -1 && !isEmptyTail(rest, slotEnd))) {
+            return pn;
+        }
+
+        if (isVersioned(atom)) {
+            final int versionStart = pn.lastIndexOf('-');
+
+            if (versionStart != -1) {
+                pn = pn.substring(0, versionStart);
+            }
+        }
+
+        return "0".equals(slot) ? pn : pn + '-' + slot;
+    }
+
+    /**
+     * Checks whether the rest of the string from the position consists only
+     * of colons, which {@link String#split(java.lang.String)} drops as
+     * trailing empty parts.
+     *
+     * @param string string
+     * @param pos    start position
+     *
+     * @return true if the rest consists only of colons, otherwise false
+     */
+    private static boolean isEmptyTail(final String string, final int pos) {
+        for (int i = pos; i < string.length(); i++) {
+            if (string.charAt(i) != ':') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the atom starts with version operator.
+     *
+     * @param atom dependency atom
+     *
+     * @return true if the atom is versioned, otherwise false
+     */
+    private static boolean isVersioned(final String atom) {
+        if (atom.isEmpty()) {
+            return false;
+        }
+
+        switch (atom.charAt(0)) {
+            case '~':
+            case '=':
+            case '<':
+            case '>':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Removes revision suffix ({@code -rN}) from package name and version.
+     *
+     * @param pv package name and version
+     *
+     * @return package name and version without revision
+     */
+    private static String stripRevision(final String pv) {
+        int pos = pv.length();
+
+        while (pos > 0 && pv.charAt(pos - 1) >= '0'
+                && pv.charAt(pos - 1) <= '9') {
+            pos--;
+        }
+
+        if (pos < pv.length() && pos >= 2 && pv.charAt(pos - 1) == 'r'
+                && pv.charAt(pos - 2) == '-') {
+            return pv.substring(0, pos - 2);
+        }
+
+        return pv;
+    }
+}
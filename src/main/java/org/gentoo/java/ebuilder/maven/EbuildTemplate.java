@@ -0,0 +1,291 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gentoo.java.ebuilder.Config;
+
+/**
+ * Ebuild template compiled into sequence of literal and slot segments.
+ * Slots are written as {@code @NAME@} where NAME is one of {@link Slot}
+ * values, {@code @@} stands for literal {@code @}. A slot that is the only
+ * content of its line replaces the whole line including the line break, such
+ * slots render either nothing or complete lines. Templates are compiled once
+ * and can be rendered concurrently.
+ *
+ * @author fordfrog
+ */
+public class EbuildTemplate {
+
+    /**
+     * Default template, compiled when first requested.
+     */
+    private static EbuildTemplate defaultTemplate;
+    /**
+     * Compiled segments, either literal {@link String} or {@link Slot}.
+     */
+    private final Object[] segments;
+    /**
+     * Sum of lengths of literal segments, used for sizing of render buffer.
+     */
+    private final int literalLength;
+
+    /**
+     * Creates new instance of EbuildTemplate.
+     *
+     * @param segments {@link #segments}
+     */
+    private EbuildTemplate(final List<Object> segments) {
+        this.segments = segments.toArray();
+
+        int length = 0;
+
+        for (final Object segment : this.segments) {
+            if (segment instanceof String) {
+                length += ((String) segment).length();
+            }
+        }
+
+        literalLength = length;
+    }
+
+    /**
+     * Compiles template text.
+     *
+     * @param text template text
+     *
+     * @return compiled template
+     *
+     * @throws IllegalArgumentException Thrown if the template contains
+     *                                  unknown or unterminated slot.
+     */
+    public static EbuildTemplate compile(final String text) {
+        final List<Object> segments = new ArrayList<>(64);
+        final StringBuilder sbLiteral = new StringBuilder(text.length());
+        int pos = 0;
+
+        while (pos < text.length()) {
+            final int start = text.indexOf('@', pos);
+
+            if (start == -1) {
+                sbLiteral.append(text, pos, text.length());
+
+                break;
+            }
+
+            sbLiteral.append(text, pos, start);
+
+            if (start + 1 < text.length() && text.charAt(start + 1) == '@') {
+                sbLiteral.append('@');
+                pos = start + 2;
+
+                continue;
+            }
+
+            final int end = text.indexOf('@', start + 1);
+
+            if (end == -1) {
+                throw new IllegalArgumentException("Unterminated slot at "
+                        + "position " + start);
+            }
+
+            final Slot slot = Slot.of(text.substring(start + 1, end));
+            pos = end + 1;
+
+            final boolean standalone = (start == 0
+                    || text.charAt(start - 1) == '\n')
+                    && (pos == text.length() || text.charAt(pos) == '\n');
+
+            if (sbLiteral.length() > 0) {
+                segments.add(sbLiteral.toString());
+                sbLiteral.setLength(0);
+            }
+
+            segments.add(slot);
+
+            if (standalone && pos < text.length()) {
+                pos++;
+            }
+        }
+
+        if (sbLiteral.length() > 0) {
+            segments.add(sbLiteral.toString());
+        }
+
+        return new EbuildTemplate(segments);
+    }
+
+    /**
+     * Returns the built-in template.
+     *
+     * @return default template
+     */
+    public static synchronized EbuildTemplate getDefault() {
+        if (defaultTemplate == null) {
+            try (final InputStream inputStream = EbuildTemplate.class.
+                    getResourceAsStream("/ebuild.template");
+                    final BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(inputStream,
+                                    StandardCharsets.UTF_8))) {
+                defaultTemplate = compile(reader.lines().collect(
+                        Collectors.joining("\n", "", "\n")));
+            } catch (final IOException ex) {
+                throw new RuntimeException(
+                        "Failed to read ebuild template from resource", ex);
+            }
+        }
+
+        return defaultTemplate;
+    }
+
+    /**
+     * Loads template configured in {@link Config#getTemplateFile()}, or the
+     * default template if no template file is configured. Exits with error if
+     * the template cannot be read or compiled.
+     *
+     * @param config application configuration
+     *
+     * @return compiled template
+     */
+    public static EbuildTemplate load(final Config config) {
+        if (config.getTemplateFile() == null) {
+            return getDefault();
+        }
+
+        try {
+            return compile(new String(Files.readAllBytes(
+                    config.getTemplateFile()), StandardCharsets.UTF_8));
+        } catch (final IOException | IllegalArgumentException ex) {
+            config.getErrorWriter().println("ERROR: Failed to load ebuild "
+                    + "template " + config.getTemplateFile() + ": "
+                    + ex.getMessage());
+            config.exit(1);
+
+            return null;
+        }
+    }
+
+    /**
+     * Renders the template into the builder.
+     *
+     * @param sb       string builder
+     * @param renderer renderer of slots
+     */
+    public void render(final StringBuilder sb, final SlotRenderer renderer) {
+        sb.ensureCapacity(sb.length() + literalLength * 2);
+
+        for (final Object segment : segments) {
+            if (segment instanceof String) {
+                sb.append((String) segment);
+            } else {
+                renderer.render((Slot) segment, sb);
+            }
+        }
+    }
+
+    /**
+     * Slots that can be used in templates.
+     */
+    public enum Slot {
+
+        /**
+         * Skeleton command line comment.
+         */
+        COMMAND,
+        /**
+         * Dependency comments and variables, every block is preceded by
+         * empty line.
+         */
+        DEPENDENCIES,
+        /**
+         * Package description.
+         */
+        DESCRIPTION,
+        /**
+         * EAPI version.
+         */
+        EAPI,
+        /**
+         * Inherited eclasses.
+         */
+        ECLASSES,
+        /**
+         * Package homepage.
+         */
+        HOMEPAGE,
+        /**
+         * Value of JAVA_PKG_IUSE.
+         */
+        IUSE,
+        /**
+         * Package keywords.
+         */
+        KEYWORDS,
+        /**
+         * Package license.
+         */
+        LICENSE,
+        /**
+         * Maven id of the package.
+         */
+        MAVEN_ID,
+        /**
+         * Variables of java-pkg-simple.eclass.
+         */
+        SCRIPT,
+        /**
+         * Package slot.
+         */
+        SLOT,
+        /**
+         * Package SRC_URI.
+         */
+        SRC_URI,
+        /**
+         * JAVA_TESTING_FRAMEWORKS line if some framework is detected.
+         */
+        TESTING_FRAMEWORKS,
+        /**
+         * Current year.
+         */
+        YEAR;
+
+        /**
+         * Returns slot of the name.
+         *
+         * @param name slot name
+         *
+         * @return slot
+         *
+         * @throws IllegalArgumentException Thrown if the slot is not known.
+         */
+        static Slot of(final String name) {
+            try {
+                return valueOf(name);
+            } catch (final IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unknown slot @" + name
+                        + "@", ex);
+            }
+        }
+    }
+
+    /**
+     * Renders slot values.
+     */
+    public interface SlotRenderer {
+
+        /**
+         * Appends value of the slot to the builder.
+         *
+         * @param slot slot
+         * @param sb   string builder
+         */
+        void render(Slot slot, StringBuilder sb);
+    }
+}
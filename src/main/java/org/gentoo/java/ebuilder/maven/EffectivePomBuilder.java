@@ -0,0 +1,1721 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.gentoo.java.ebuilder.Config;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds effective pom without running maven. The parent chain is resolved
+ * from relative paths, from the work directory (files named
+ * artifactId-version.pom) and from local maven repositories. Active profiles
+ * are injected, the model is inherited from parents, interpolated, BOMs are
+ * imported and dependency and plugin management is applied. The result
+ * contains only the parts of the model that {@link MavenParser} reads.
+ * <p>
+ * If the pom contains construct that is not supported,
+ * {@link UnsupportedPomException} is thrown and the caller should fall back
+ * to maven. Instances cache parsed poms and imported BOMs. Public methods
+ * are synchronized so that single instance can be shared by concurrently
+ * processed pom files.
+ *
+ * @author fordfrog
+ */
+public class EffectivePomBuilder {
+
+    /**
+     * Default group id of maven plugins.
+     */
+    private static final String DEFAULT_PLUGIN_GROUP_ID
+            = "org.apache.maven.plugins";
+    /**
+     * Index of dependencies managed by imported BOMs.
+     */
+    private final BomIndex bomIndex;
+    /**
+     * Application configuration.
+     */
+    private final Config config;
+    /**
+     * Factory for parsing poms.
+     */
+    private final DocumentBuilderFactory documentBuilderFactory;
+    /**
+     * Parsed poms mapped by their paths.
+     */
+    private final Map<Path, Document> rawPoms = new HashMap<>(10);
+    /**
+     * Local maven repositories.
+     */
+    private final List<Path> repositories;
+    /**
+     * Factory for serializing effective poms.
+     */
+    private final TransformerFactory transformerFactory
+            = TransformerFactory.newInstance();
+
+    /**
+     * Creates new instance of EffectivePomBuilder with index of BOMs that is
+     * not persisted.
+     *
+     * @param config application configuration
+     */
+    public EffectivePomBuilder(final Config config) {
+        this(config, new BomIndex(null));
+    }
+
+    /**
+     * Creates new instance of EffectivePomBuilder.
+     *
+     * @param config   application configuration
+     * @param bomIndex {@link #bomIndex}
+     */
+    public EffectivePomBuilder(final Config config, final BomIndex bomIndex) {
+        this.config = config;
+        this.bomIndex = bomIndex;
+
+        if (config.getMavenRepositories().isEmpty()) {
+            repositories = new ArrayList<>(1);
+            repositories.add(Paths.get(System.getProperty("user.home"), ".m2",
+                    "repository"));
+        } else {
+            repositories = new ArrayList<>(config.getMavenRepositories());
+        }
+
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(false);
+        documentBuilderFactory.setIgnoringComments(true);
+        documentBuilderFactory.setValidating(false);
+
+        try {
+            documentBuilderFactory.setFeature("http://apache.org/xml/features/"
+                    + "nonvalidating/load-external-dtd", false);
+        } catch (final ParserConfigurationException ex) {
+            // the parser does not load DTDs anyway
+        }
+    }
+
+    /**
+     * Builds effective pom of specified pom file.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return effective pom serialized as XML
+     *
+     * @throws UnsupportedPomException Thrown if the pom cannot be processed
+     *                                 without running maven.
+     */
+    public synchronized byte[] build(final Path pomFile)
+            throws UnsupportedPomException {
+        final Element project = buildModel(
+                pomFile.toAbsolutePath().normalize(), true, new HashSet<>(2));
+
+        return serialize(createOutput(project));
+    }
+
+    /**
+     * Returns group id and artifact id of the project as declared in the pom
+     * file, group id being inherited from parent element if needed.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return coordinates in form groupId:artifactId or null if they cannot
+     *         be determined without building effective pom
+     */
+    public synchronized String getCoordinates(final Path pomFile) {
+        final Element project;
+
+        try {
+            project = getRawPom(pomFile.toAbsolutePath().normalize()).
+                    getDocumentElement();
+        } catch (final UnsupportedPomException ex) {
+            return null;
+        }
+
+        final String groupId = valueOrDefault(getChildText(project, "groupId"),
+                getChildText(getChild(project, "parent"), "groupId"));
+        final String artifactId = getChildText(project, "artifactId");
+
+        if (groupId == null || artifactId == null
+                || (groupId + artifactId).contains("${")) {
+            return null;
+        }
+
+        return groupId + ':' + artifactId;
+    }
+
+    /**
+     * Splits effective pom of multiple projects, as written by maven for
+     * reactor builds, into separate effective poms.
+     *
+     * @param effectivePoms effective pom with projects root element
+     *
+     * @return map of coordinates in form groupId:artifactId and corresponding
+     *         effective poms
+     *
+     * @throws UnsupportedPomException Thrown if the effective pom cannot be
+     *                                 parsed.
+     */
+    public synchronized Map<String, byte[]> splitEffectivePoms(
+            final byte[] effectivePoms) throws UnsupportedPomException {
+        final Document document;
+
+        try {
+            document = newDocumentBuilder().parse(
+                    new ByteArrayInputStream(effectivePoms));
+        } catch (final IOException | SAXException ex) {
+            throw new UnsupportedPomException("failed to parse effective pom: "
+                    + ex.getMessage());
+        }
+
+        final List<Element> projects
+                = "project".equals(document.getDocumentElement().getNodeName())
+                ? Collections.singletonList(document.getDocumentElement())
+                : getChildren(document.getDocumentElement(), "project");
+        final Map<String, byte[]> result = new HashMap<>(projects.size() * 2);
+
+        for (final Element project : projects) {
+            final Document projectDocument = newDocumentBuilder().newDocument();
+            projectDocument.appendChild(
+                    projectDocument.importNode(project, true));
+            result.put(getChildText(project, "groupId") + ':'
+                    + getChildText(project, "artifactId"),
+                    serialize(projectDocument));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns pom file and its parent poms that can be found locally. The
+     * chain ends at the first parent that cannot be found or parsed.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return list of pom files, starting with the specified pom file
+     */
+    public synchronized List<Path> getLineage(final Path pomFile) {
+        final List<Path> result = new ArrayList<>(4);
+        Path currentFile = pomFile.toAbsolutePath().normalize();
+
+        while (currentFile != null && !result.contains(currentFile)) {
+            result.add(currentFile);
+
+            try {
+                final Element parent = getChild(getRawPom(currentFile).
+                        getDocumentElement(), "parent");
+                currentFile = parent == null ? null
+                        : findParent(currentFile, parent);
+            } catch (final UnsupportedPomException ex) {
+                currentFile = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends text element to specified element.
+     *
+     * @param parent parent element
+     * @param name   name of the new element
+     * @param value  text of the new element
+     */
+    private static void appendText(final Element parent, final String name,
+            final String value) {
+        final Element element = parent.getOwnerDocument().createElement(name);
+        element.setTextContent(value);
+        parent.appendChild(element);
+    }
+
+    /**
+     * Appends path to inherited URL. If the URL ends with slash, the result
+     * ends with slash too.
+     *
+     * @param url  parent URL
+     * @param path path to append
+     *
+     * @return URL with appended path
+     */
+    private static String appendUrlPath(final String url, final String path) {
+        if (url.isEmpty() || path == null || path.isEmpty()) {
+            return url;
+        }
+
+        final boolean urlEndsWithSlash = url.charAt(url.length() - 1) == '/';
+        final StringBuilder sbUrl = new StringBuilder(url);
+
+        if (path.charAt(0) == '/') {
+            if (urlEndsWithSlash) {
+                sbUrl.setLength(sbUrl.length() - 1);
+            }
+        } else if (!urlEndsWithSlash) {
+            sbUrl.append('/');
+        }
+
+        sbUrl.append(path);
+
+        if (urlEndsWithSlash && !path.endsWith("/")) {
+            sbUrl.append('/');
+        }
+
+        return sbUrl.toString();
+    }
+
+    /**
+     * Creates copy of the element that belongs to document of the target
+     * element.
+     *
+     * @param target  element the copy will be added to
+     * @param element element to copy
+     *
+     * @return copy of the element
+     */
+    private static Element copy(final Element target, final Element element) {
+        return (Element) target.getOwnerDocument().importNode(element, true);
+    }
+
+    /**
+     * Copies child element from source to target if target does not have it.
+     *
+     * @param target target element
+     * @param source source element
+     * @param name   name of the child element
+     */
+    private static void copyIfAbsent(final Element target,
+            final Element source, final String name) {
+        final Element sourceChild = getChild(source, name);
+
+        if (sourceChild != null && getChild(target, name) == null) {
+            target.appendChild(copy(target, sourceChild));
+        }
+    }
+
+    /**
+     * Returns dependency management key of the dependency.
+     *
+     * @param dependency dependency element
+     *
+     * @return management key
+     */
+    private static String dependencyKey(final Element dependency) {
+        final String type = getChildText(dependency, "type");
+        final String classifier = getChildText(dependency, "classifier");
+
+        return getChildText(dependency, "groupId") + ':'
+                + getChildText(dependency, "artifactId") + ':'
+                + (type == null ? "jar" : type) + ':'
+                + (classifier == null ? "" : classifier);
+    }
+
+    /**
+     * Returns first child element with specified name.
+     *
+     * @param parent parent element, can be null
+     * @param name   name of the child element
+     *
+     * @return child element or null
+     */
+    private static Element getChild(final Element parent, final String name) {
+        if (parent == null) {
+            return null;
+        }
+
+        for (Node node = parent.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns trimmed text of child element.
+     *
+     * @param parent parent element, can be null
+     * @param name   name of the child element
+     *
+     * @return text of the child element or null if there is no such element
+     */
+    private static String getChildText(final Element parent,
+            final String name) {
+        final Element child = getChild(parent, name);
+
+        return child == null ? null : child.getTextContent().trim();
+    }
+
+    /**
+     * Returns child elements with specified name.
+     *
+     * @param parent parent element, can be null
+     * @param name   name of the child elements or null for all child
+     *               elements
+     *
+     * @return list of child elements
+     */
+    private static List<Element> getChildren(final Element parent,
+            final String name) {
+        final List<Element> result = new ArrayList<>(10);
+
+        if (parent == null) {
+            return result;
+        }
+
+        for (Node node = parent.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && (name == null || name.equals(node.getNodeName()))) {
+                result.add((Element) node);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns raw model value for specified path.
+     *
+     * @param project project element
+     * @param path    model path without "project." prefix
+     *
+     * @return raw value or null
+     */
+    private static String getModelValue(final Element project,
+            final String path) {
+        final Element build = getChild(project, "build");
+
+        switch (path) {
+            case "groupId":
+            case "artifactId":
+            case "version":
+            case "name":
+            case "description":
+            case "url":
+            case "inceptionYear":
+            case "modelVersion":
+                return getChildText(project, path);
+            case "packaging":
+                return valueOrDefault(getChildText(project, path), "jar");
+            case "parent.groupId":
+            case "parent.artifactId":
+            case "parent.version":
+            case "parent.relativePath":
+                return getChildText(getChild(project, "parent"),
+                        path.substring("parent.".length()));
+            case "build.directory":
+                return valueOrDefault(getChildText(build, "directory"),
+                        "target");
+            case "build.outputDirectory":
+                return valueOrDefault(getChildText(build, "outputDirectory"),
+                        "${project.build.directory}/classes");
+            case "build.testOutputDirectory":
+                return valueOrDefault(getChildText(build,
+                        "testOutputDirectory"),
+                        "${project.build.directory}/test-classes");
+            case "build.sourceDirectory":
+                return valueOrDefault(getChildText(build, "sourceDirectory"),
+                        "src/main/java");
+            case "build.testSourceDirectory":
+                return valueOrDefault(getChildText(build,
+                        "testSourceDirectory"), "src/test/java");
+            case "build.finalName":
+                return valueOrDefault(getChildText(build, "finalName"),
+                        "${project.artifactId}-${project.version}");
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns child element with specified name, creating it if it does not
+     * exist.
+     *
+     * @param parent parent element
+     * @param name   name of the child element
+     *
+     * @return child element
+     */
+    private static Element getOrCreateChild(final Element parent,
+            final String name) {
+        Element child = getChild(parent, name);
+
+        if (child == null) {
+            child = parent.getOwnerDocument().createElement(name);
+            parent.appendChild(child);
+        }
+
+        return child;
+    }
+
+    /**
+     * Interpolates all text nodes under specified node.
+     *
+     * @param node         node
+     * @param interpolator property interpolator of the project
+     *
+     * @throws UnsupportedPomException Thrown if expressions reference each
+     *                                 other in cycle.
+     */
+    private static void interpolate(final Node node,
+            final PropertyInterpolator interpolator)
+            throws UnsupportedPomException {
+        for (Node child = node.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                interpolate(child, interpolator);
+            } else if ((child.getNodeType() == Node.TEXT_NODE
+                    || child.getNodeType() == Node.CDATA_SECTION_NODE)
+                    && child.getNodeValue().contains("${")) {
+                child.setNodeValue(
+                        interpolator.interpolate(child.getNodeValue()));
+            }
+        }
+    }
+
+    /**
+     * Merges dependencies from source into target. Dependencies with the
+     * same management key are either replaced by source ones or kept,
+     * depending on whether source is dominant. Other source dependencies are
+     * appended.
+     *
+     * @param target         target dependencies element
+     * @param source         source dependencies element, can be null
+     * @param sourceDominant whether source dependencies override target ones
+     */
+    private static void mergeDependencies(final Element target,
+            final Element source, final boolean sourceDominant) {
+        final Map<String, Element> targetDependencies = new HashMap<>(20);
+
+        for (final Element dependency : getChildren(target, "dependency")) {
+            targetDependencies.put(dependencyKey(dependency), dependency);
+        }
+
+        for (final Element dependency : getChildren(source, "dependency")) {
+            final Element existing
+                    = targetDependencies.get(dependencyKey(dependency));
+
+            if (existing == null) {
+                target.appendChild(copy(target, dependency));
+            } else if (sourceDominant) {
+                target.replaceChild(copy(target, dependency), existing);
+            }
+        }
+    }
+
+    /**
+     * Merges recessive plugin configuration into dominant one the way maven
+     * merges plugin configurations.
+     *
+     * @param dominant  dominant configuration element
+     * @param recessive recessive configuration element
+     */
+    private static void mergeConfiguration(final Element dominant,
+            final Element recessive) {
+        if ("override".equals(dominant.getAttribute("combine.self"))) {
+            return;
+        }
+
+        final List<Element> dominantChildren = getChildren(dominant, null);
+
+        if (dominantChildren.isEmpty()
+                && dominant.getTextContent().trim().isEmpty()) {
+            for (Node node = recessive.getFirstChild(); node != null;
+                    node = node.getNextSibling()) {
+                if (node.getNodeType() != Node.ELEMENT_NODE) {
+                    dominant.appendChild(dominant.getOwnerDocument().
+                            importNode(node, true));
+                }
+            }
+        }
+
+        if ("append".equals(dominant.getAttribute("combine.children"))) {
+            final Node first = dominant.getFirstChild();
+
+            for (final Element child : getChildren(recessive, null)) {
+                dominant.insertBefore(copy(dominant, child), first);
+            }
+
+            return;
+        }
+
+        final Map<String, Iterator<Element>> commonChildren
+                = new HashMap<>(dominantChildren.size() * 2);
+
+        for (final Element child : getChildren(recessive, null)) {
+            final String name = child.getNodeName();
+
+            if (!commonChildren.containsKey(name)) {
+                final List<Element> sameName = getChildren(dominant, name);
+
+                commonChildren.put(name,
+                        sameName.isEmpty() ? null : sameName.iterator());
+            }
+
+            final Iterator<Element> iterator = commonChildren.get(name);
+
+            if (iterator == null) {
+                dominant.appendChild(copy(dominant, child));
+            } else if (iterator.hasNext()) {
+                mergeConfiguration(iterator.next(), child);
+            }
+        }
+    }
+
+    /**
+     * Merges recessive plugin into dominant plugin.
+     *
+     * @param dominant  dominant plugin element
+     * @param recessive recessive plugin element
+     */
+    private static void mergePlugin(final Element dominant,
+            final Element recessive) {
+        copyIfAbsent(dominant, recessive, "version");
+
+        final Element recessiveConfiguration
+                = getChild(recessive, "configuration");
+
+        if (recessiveConfiguration != null) {
+            final Element dominantConfiguration
+                    = getChild(dominant, "configuration");
+
+            if (dominantConfiguration == null) {
+                dominant.appendChild(copy(dominant, recessiveConfiguration));
+            } else {
+                mergeConfiguration(dominantConfiguration,
+                        recessiveConfiguration);
+            }
+        }
+    }
+
+    /**
+     * Merges plugins from source into target.
+     *
+     * @param target         target plugins element
+     * @param source         source plugins element, can be null
+     * @param sourceDominant whether source plugins override target ones
+     * @param inheritance    whether the merge is inheritance from parent, in
+     *                       which case plugins that are not inherited are
+     *                       skipped
+     */
+    private static void mergePlugins(final Element target,
+            final Element source, final boolean sourceDominant,
+            final boolean inheritance) {
+        final Map<String, Element> targetPlugins = new HashMap<>(20);
+
+        for (final Element plugin : getChildren(target, "plugin")) {
+            targetPlugins.put(pluginKey(plugin), plugin);
+        }
+
+        for (final Element plugin : getChildren(source, "plugin")) {
+            if (inheritance
+                    && "false".equals(getChildText(plugin, "inherited"))) {
+                continue;
+            }
+
+            final Element existing = targetPlugins.get(pluginKey(plugin));
+
+            if (existing == null) {
+                target.appendChild(copy(target, plugin));
+            } else if (sourceDominant) {
+                final Element merged = copy(target, plugin);
+                mergePlugin(merged, existing);
+                target.replaceChild(merged, existing);
+            } else {
+                mergePlugin(existing, plugin);
+            }
+        }
+    }
+
+    /**
+     * Returns key identifying the plugin.
+     *
+     * @param plugin plugin element
+     *
+     * @return plugin key
+     */
+    private static String pluginKey(final Element plugin) {
+        final String groupId = getChildText(plugin, "groupId");
+
+        return (groupId == null ? DEFAULT_PLUGIN_GROUP_ID : groupId) + ':'
+                + getChildText(plugin, "artifactId");
+    }
+
+    /**
+     * Sets child element text, creating the element if needed.
+     *
+     * @param parent parent element
+     * @param name   name of the child element
+     * @param value  text
+     */
+    private static void setChildText(final Element parent, final String name,
+            final String value) {
+        getOrCreateChild(parent, name).setTextContent(value);
+    }
+
+    /**
+     * Converts build directories to absolute paths and applies defaults for
+     * the directories that are not set.
+     *
+     * @param project project element
+     * @param basedir project base directory
+     */
+    private void alignPaths(final Element project, final Path basedir) {
+        final Element build = getOrCreateChild(project, "build");
+
+        setChildText(build, "sourceDirectory", basedir.resolve(
+                valueOrDefault(getChildText(build, "sourceDirectory"),
+                        "src/main/java")).toString());
+        setChildText(build, "testSourceDirectory", basedir.resolve(
+                valueOrDefault(getChildText(build, "testSourceDirectory"),
+                        "src/test/java")).toString());
+        alignResources(getOrCreateChild(build, "resources"), "resource",
+                basedir, "src/main/resources");
+        alignResources(getOrCreateChild(build, "testResources"),
+                "testResource", basedir, "src/test/resources");
+    }
+
+    /**
+     * Converts resource directories to absolute paths and adds default
+     * resource if there is none.
+     *
+     * @param resources        resources element
+     * @param name             name of resource elements
+     * @param basedir          project base directory
+     * @param defaultDirectory default resource directory
+     */
+    private void alignResources(final Element resources, final String name,
+            final Path basedir, final String defaultDirectory) {
+        final List<Element> resourceList = getChildren(resources, name);
+
+        if (resourceList.isEmpty()) {
+            final Element resource
+                    = resources.getOwnerDocument().createElement(name);
+            appendText(resource, "directory", defaultDirectory);
+            resources.appendChild(resource);
+            resourceList.add(resource);
+        }
+
+        for (final Element resource : resourceList) {
+            final String directory = getChildText(resource, "directory");
+
+            if (directory != null) {
+                setChildText(resource, "directory",
+                        basedir.resolve(directory).toString());
+            }
+        }
+    }
+
+    /**
+     * Builds effective model of specified pom.
+     *
+     * @param pomFile absolute path to pom file
+     * @param target  whether the pom is the one the ebuild is generated for,
+     *                otherwise it is imported BOM
+     * @param imports coordinates of BOMs that are being imported, used to
+     *                detect import cycles
+     *
+     * @return effective project element
+     *
+     * @throws UnsupportedPomException Thrown if the pom cannot be processed
+     *                                 without running maven.
+     */
+    private Element buildModel(final Path pomFile, final boolean target,
+            final Set<String> imports) throws UnsupportedPomException {
+        final Document work = newDocumentBuilder().newDocument();
+        final List<Element> lineage = new ArrayList<>(4);
+        final Set<Path> visited = new HashSet<>(4);
+        Path currentFile = pomFile;
+
+        while (currentFile != null) {
+            if (!visited.add(currentFile)) {
+                throw new UnsupportedPomException("parent cycle at "
+                        + currentFile);
+            }
+
+            final Element project = (Element) work.importNode(
+                    getRawPom(currentFile).getDocumentElement(), true);
+
+            if (lineage.isEmpty() && target && !getChildren(
+                    getChild(project, "modules"), "module").isEmpty()) {
+                throw new UnsupportedPomException("project has modules");
+            }
+
+            injectProfiles(project, pomFile.getParent());
+
+            final Element parent = getChild(project, "parent");
+
+            if (parent != null) {
+                copyIfAbsent(project, parent, "groupId");
+                copyIfAbsent(project, parent, "version");
+            }
+
+            lineage.add(project);
+            currentFile = parent == null ? null
+                    : findParent(currentFile, parent);
+        }
+
+        for (int i = lineage.size() - 2; i >= 0; i--) {
+            inherit(lineage.get(i), lineage.get(i + 1));
+        }
+
+        final Element project = lineage.get(0);
+        final Path basedir = pomFile.getParent();
+
+        final List<Element> propertyList
+                = getChildren(getChild(project, "properties"), null);
+        final Map<String, String> properties
+                = new LinkedHashMap<>(propertyList.size() * 2);
+
+        for (final Element property : propertyList) {
+            properties.put(property.getNodeName(),
+                    property.getTextContent().trim());
+        }
+
+        interpolate(project, new PropertyInterpolator(basedir,
+                (path) -> getModelValue(project, path), properties));
+        alignPaths(project, basedir);
+        importDependencyManagement(project, imports);
+        injectDependencyManagement(project);
+        injectDefaultScope(project);
+        injectPluginManagement(project);
+
+        if (target) {
+            validate(project);
+        }
+
+        return project;
+    }
+
+    /**
+     * Creates effective pom document containing the elements that are read by
+     * {@link MavenParser}, in the order maven writes them.
+     *
+     * @param project effective project element
+     *
+     * @return effective pom document
+     */
+    private Document createOutput(final Element project) {
+        final Document document = newDocumentBuilder().newDocument();
+        final Element root = document.createElement("project");
+        document.appendChild(root);
+
+        for (final String name : new String[]{"modelVersion", "groupId",
+            "artifactId", "version", "packaging", "name", "description", "url",
+            "licenses", "properties", "dependencyManagement", "dependencies"}) {
+            final Element child = getChild(project, name);
+
+            if (child != null) {
+                root.appendChild(copy(root, child));
+            }
+        }
+
+        final Element projectBuild = getChild(project, "build");
+        final Element build = document.createElement("build");
+        root.appendChild(build);
+
+        for (final String name : new String[]{"sourceDirectory",
+            "testSourceDirectory", "resources", "testResources", "plugins"}) {
+            final Element child = getChild(projectBuild, name);
+
+            if (child != null) {
+                build.appendChild(copy(build, child));
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * Searches for parent pom. First relative path is checked and then work
+     * directory and local repositories.
+     *
+     * @param pomFile path to the child pom
+     * @param parent  parent element of the child pom
+     *
+     * @return path to parent pom
+     *
+     * @throws UnsupportedPomException Thrown if parent pom cannot be found.
+     */
+    private Path findParent(final Path pomFile, final Element parent)
+            throws UnsupportedPomException {
+        final String groupId = getChildText(parent, "groupId");
+        final String artifactId = getChildText(parent, "artifactId");
+        final String version = getChildText(parent, "version");
+
+        if (groupId == null || artifactId == null || version == null
+                || version.contains("${")) {
+            throw new UnsupportedPomException("incomplete parent "
+                    + groupId + ':' + artifactId + ':' + version);
+        }
+
+        final String relativePath = getChildText(parent, "relativePath");
+
+        if (relativePath == null || !relativePath.isEmpty()) {
+            Path candidate = pomFile.getParent().resolve(
+                    relativePath == null ? "../pom.xml" : relativePath).
+                    normalize();
+
+            if (Files.isDirectory(candidate)) {
+                candidate = candidate.resolve("pom.xml");
+            }
+
+            if (Files.isRegularFile(candidate)) {
+                final Element candidateProject
+                        = getRawPom(candidate).getDocumentElement();
+                final Element candidateParent
+                        = getChild(candidateProject, "parent");
+
+                if (groupId.equals(valueOrDefault(
+                        getChildText(candidateProject, "groupId"),
+                        getChildText(candidateParent, "groupId")))
+                        && artifactId.equals(
+                                getChildText(candidateProject, "artifactId"))
+                        && version.equals(valueOrDefault(
+                                getChildText(candidateProject, "version"),
+                                getChildText(candidateParent, "version")))) {
+                    return candidate;
+                }
+            }
+        }
+
+        final Path result = findInRepositories(groupId, artifactId, version);
+
+        if (result == null) {
+            throw new UnsupportedPomException("parent " + groupId + ':'
+                    + artifactId + ':' + version + " not found locally");
+        }
+
+        return result;
+    }
+
+    /**
+     * Searches for pom in work directory and local repositories.
+     *
+     * @param groupId    group id
+     * @param artifactId artifact id
+     * @param version    version
+     *
+     * @return path to the pom or null if it was not found
+     */
+    private Path findInRepositories(final String groupId,
+            final String artifactId, final String version) {
+        final String fileName = artifactId + '-' + version + ".pom";
+
+        if (config.getWorkdir() != null) {
+            final Path candidate = config.getWorkdir().resolve(fileName);
+
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+
+        for (final Path repository : repositories) {
+            Path candidate = repository.resolve(groupId.replace('.', '/')).
+                    resolve(artifactId).resolve(version).resolve(fileName);
+
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+
+            candidate = repository.resolve(fileName);
+
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns parsed pom, parsing it on first request.
+     *
+     * @param pomFile path to pom file
+     *
+     * @return parsed pom
+     *
+     * @throws UnsupportedPomException Thrown if the pom cannot be parsed.
+     */
+    private Document getRawPom(final Path pomFile)
+            throws UnsupportedPomException {
+        Document document = rawPoms.get(pomFile);
+
+        if (document == null) {
+            try {
+                document = newDocumentBuilder().parse(pomFile.toFile());
+            } catch (final IOException | SAXException ex) {
+                throw new UnsupportedPomException("failed to parse " + pomFile
+                        + ": " + ex.getMessage());
+            }
+
+            rawPoms.put(pomFile, document);
+        }
+
+        return document;
+    }
+
+    /**
+     * Imports dependency management of BOMs referenced by dependencies with
+     * scope import. Entries that are already managed are not overridden.
+     *
+     * @param project project element
+     * @param imports coordinates of BOMs that are being imported
+     *
+     * @throws UnsupportedPomException Thrown if BOM cannot be imported.
+     */
+    private void importDependencyManagement(final Element project,
+            final Set<String> imports) throws UnsupportedPomException {
+        final Element management = getChild(
+                getChild(project, "dependencyManagement"), "dependencies");
+
+        if (management == null) {
+            return;
+        }
+
+        final Set<String> keys = new HashSet<>(20);
+        final List<Element> boms = new ArrayList<>(5);
+
+        for (final Element dependency : getChildren(management,
+                "dependency")) {
+            if ("import".equals(getChildText(dependency, "scope"))
+                    && "pom".equals(getChildText(dependency, "type"))) {
+                management.removeChild(dependency);
+                boms.add(dependency);
+            } else {
+                keys.add(dependencyKey(dependency));
+            }
+        }
+
+        for (final Element bom : boms) {
+            final String groupId = getChildText(bom, "groupId");
+            final String artifactId = getChildText(bom, "artifactId");
+            final String version = getChildText(bom, "version");
+            final String coordinates
+                    = groupId + ':' + artifactId + ':' + version;
+
+            if (groupId == null || artifactId == null || version == null
+                    || coordinates.contains("${")) {
+                throw new UnsupportedPomException("incomplete BOM import "
+                        + coordinates);
+            } else if (imports.contains(coordinates)) {
+                throw new UnsupportedPomException("BOM import cycle at "
+                        + coordinates);
+            }
+
+            for (final BomIndex.ManagedDependency dependency
+                    : getManagedDependencies(groupId, artifactId, version,
+                            imports)) {
+                final String type = dependency.getType();
+                final String classifier = dependency.getClassifier();
+
+                if (!keys.add(dependency.getGroupId() + ':'
+                        + dependency.getArtifactId() + ':'
+                        + (type == null ? "jar" : type) + ':'
+                        + (classifier == null ? "" : classifier))) {
+                    continue;
+                }
+
+                final Element element = management.getOwnerDocument().
+                        createElement("dependency");
+                appendText(element, "groupId", dependency.getGroupId());
+                appendText(element, "artifactId", dependency.getArtifactId());
+
+                if (dependency.getVersion() != null) {
+                    appendText(element, "version", dependency.getVersion());
+                }
+
+                if (type != null) {
+                    appendText(element, "type", type);
+                }
+
+                if (classifier != null) {
+                    appendText(element, "classifier", classifier);
+                }
+
+                if (dependency.getScope() != null) {
+                    appendText(element, "scope", dependency.getScope());
+                }
+
+                management.appendChild(element);
+            }
+        }
+    }
+
+    /**
+     * Returns dependencies managed by the BOM. The BOM is looked up in
+     * {@link #bomIndex} first and it is built and added to the index only if
+     * it is not indexed yet.
+     *
+     * @param groupId    BOM group id
+     * @param artifactId BOM artifact id
+     * @param version    BOM version
+     * @param imports    coordinates of BOMs that are being imported
+     *
+     * @return list of managed dependencies
+     *
+     * @throws UnsupportedPomException Thrown if BOM cannot be imported.
+     */
+    private List<BomIndex.ManagedDependency> getManagedDependencies(
+            final String groupId, final String artifactId,
+            final String version, final Set<String> imports)
+            throws UnsupportedPomException {
+        final String coordinates = groupId + ':' + artifactId + ':' + version;
+        final Path bomFile = findInRepositories(groupId, artifactId, version);
+
+        if (bomFile == null) {
+            throw new UnsupportedPomException("BOM " + coordinates
+                    + " not found locally");
+        }
+
+        final Path normalizedBomFile = bomFile.toAbsolutePath().normalize();
+        final List<Path> lineage = getLineage(normalizedBomFile);
+
+        try {
+            final List<BomIndex.ManagedDependency> indexed
+                    = bomIndex.get(coordinates, lineage);
+
+            if (indexed != null) {
+                return indexed;
+            }
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to read index "
+                    + "of BOM " + coordinates + ": " + ex.getMessage());
+        }
+
+        final Set<String> chain = new HashSet<>(imports);
+        chain.add(coordinates);
+
+        final Element bomProject = buildModel(normalizedBomFile, false, chain);
+        final List<Element> dependencies = getChildren(getChild(getChild(
+                bomProject, "dependencyManagement"), "dependencies"),
+                "dependency");
+        final List<BomIndex.ManagedDependency> result
+                = new ArrayList<>(dependencies.size());
+
+        for (final Element dependency : dependencies) {
+            final String dependencyGroupId
+                    = getChildText(dependency, "groupId");
+            final String dependencyArtifactId
+                    = getChildText(dependency, "artifactId");
+
+            if (dependencyGroupId == null || dependencyArtifactId == null) {
+                continue;
+            }
+
+            result.add(new BomIndex.ManagedDependency(dependencyGroupId,
+                    dependencyArtifactId,
+                    getChildText(dependency, "type"),
+                    getChildText(dependency, "classifier"),
+                    getChildText(dependency, "version"),
+                    getChildText(dependency, "scope")));
+        }
+
+        try {
+            bomIndex.put(coordinates, lineage, result);
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to store index "
+                    + "of BOM " + coordinates + ": " + ex.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Merges parent model into child model.
+     *
+     * @param child  child project element
+     * @param parent effective parent project element
+     */
+    private void inherit(final Element child, final Element parent) {
+        copyIfAbsent(child, parent, "description");
+        copyIfAbsent(child, parent, "licenses");
+
+        final String parentUrl = getChildText(parent, "url");
+
+        if (parentUrl != null && getChild(child, "url") == null) {
+            if ("false".equals(parent.getAttribute(
+                    "child.project.url.inherit.append.path"))) {
+                appendText(child, "url", parentUrl);
+            } else {
+                appendText(child, "url", appendUrlPath(parentUrl,
+                        getChildText(child, "artifactId")));
+            }
+        }
+
+        final Element parentProperties = getChild(parent, "properties");
+
+        if (parentProperties != null) {
+            final Element properties = getOrCreateChild(child, "properties");
+
+            for (final Element property : getChildren(parentProperties,
+                    null)) {
+                if (getChild(properties, property.getNodeName()) == null) {
+                    properties.appendChild(copy(properties, property));
+                }
+            }
+        }
+
+        final Element parentManagement = getChild(getChild(parent,
+                "dependencyManagement"), "dependencies");
+
+        if (parentManagement != null) {
+            mergeDependencies(getOrCreateChild(getOrCreateChild(child,
+                    "dependencyManagement"), "dependencies"), parentManagement,
+                    false);
+        }
+
+        final Element parentDependencies = getChild(parent, "dependencies");
+
+        if (parentDependencies != null) {
+            mergeDependencies(getOrCreateChild(child, "dependencies"),
+                    parentDependencies, false);
+        }
+
+        final Element parentBuild = getChild(parent, "build");
+
+        if (parentBuild != null) {
+            final Element build = getOrCreateChild(child, "build");
+
+            for (final String name : new String[]{"sourceDirectory",
+                "testSourceDirectory", "directory", "finalName", "resources",
+                "testResources"}) {
+                copyIfAbsent(build, parentBuild, name);
+            }
+
+            final Element parentPluginManagement = getChild(getChild(
+                    parentBuild, "pluginManagement"), "plugins");
+
+            if (parentPluginManagement != null) {
+                mergePlugins(getOrCreateChild(getOrCreateChild(build,
+                        "pluginManagement"), "plugins"),
+                        parentPluginManagement, false, true);
+            }
+
+            final Element parentPlugins = getChild(parentBuild, "plugins");
+
+            if (parentPlugins != null) {
+                mergePlugins(getOrCreateChild(build, "plugins"),
+                        parentPlugins, false, true);
+            }
+        }
+    }
+
+    /**
+     * Applies dependency management to dependencies that do not specify
+     * version or scope.
+     *
+     * @param project project element
+     */
+    private void injectDependencyManagement(final Element project) {
+        final List<Element> managed = getChildren(getChild(getChild(project,
+                "dependencyManagement"), "dependencies"), "dependency");
+
+        if (managed.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Element> management
+                = new HashMap<>(managed.size() * 2);
+
+        for (final Element dependency : managed) {
+            management.putIfAbsent(dependencyKey(dependency), dependency);
+        }
+
+        for (final Element dependency : getChildren(getChild(project,
+                "dependencies"), "dependency")) {
+            final Element managedDependency
+                    = management.get(dependencyKey(dependency));
+
+            if (managedDependency != null) {
+                copyIfAbsent(dependency, managedDependency, "version");
+                copyIfAbsent(dependency, managedDependency, "scope");
+            }
+        }
+    }
+
+    /**
+     * Sets default scope of dependencies that do not specify scope.
+     *
+     * @param project project element
+     */
+    private void injectDefaultScope(final Element project) {
+        for (final Element dependency : getChildren(getChild(project,
+                "dependencies"), "dependency")) {
+            if (getChild(dependency, "scope") == null) {
+                appendText(dependency, "scope", "compile");
+            }
+        }
+    }
+
+    /**
+     * Applies plugin management to build plugins.
+     *
+     * @param project project element
+     */
+    private void injectPluginManagement(final Element project) {
+        final Element build = getChild(project, "build");
+        final List<Element> managed = getChildren(getChild(getChild(build,
+                "pluginManagement"), "plugins"), "plugin");
+
+        if (managed.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Element> management
+                = new HashMap<>(managed.size() * 2);
+
+        for (final Element plugin : managed) {
+            management.putIfAbsent(pluginKey(plugin), plugin);
+        }
+
+        for (final Element plugin : getChildren(getChild(build, "plugins"),
+                "plugin")) {
+            final Element managedPlugin = management.get(pluginKey(plugin));
+
+            if (managedPlugin != null) {
+                mergePlugin(plugin, managedPlugin);
+            }
+        }
+    }
+
+    /**
+     * Injects content of active profile into project.
+     *
+     * @param project project element
+     * @param profile profile element
+     */
+    private void injectProfile(final Element project, final Element profile) {
+        final Element profileProperties = getChild(profile, "properties");
+
+        if (profileProperties != null) {
+            final Element properties
+                    = getOrCreateChild(project, "properties");
+
+            for (final Element property : getChildren(profileProperties,
+                    null)) {
+                final Element existing
+                        = getChild(properties, property.getNodeName());
+
+                if (existing == null) {
+                    properties.appendChild(copy(properties, property));
+                } else {
+                    properties.replaceChild(copy(properties, property),
+                            existing);
+                }
+            }
+        }
+
+        final Element profileManagement = getChild(getChild(profile,
+                "dependencyManagement"), "dependencies");
+
+        if (profileManagement != null) {
+            mergeDependencies(getOrCreateChild(getOrCreateChild(project,
+                    "dependencyManagement"), "dependencies"),
+                    profileManagement, true);
+        }
+
+        final Element profileDependencies = getChild(profile, "dependencies");
+
+        if (profileDependencies != null) {
+            mergeDependencies(getOrCreateChild(project, "dependencies"),
+                    profileDependencies, true);
+        }
+
+        final Element profileBuild = getChild(profile, "build");
+
+        if (profileBuild != null) {
+            final Element build = getOrCreateChild(project, "build");
+
+            for (final String name : new String[]{"directory", "finalName",
+                "resources", "testResources"}) {
+                final Element child = getChild(profileBuild, name);
+
+                if (child != null) {
+                    final Element existing = getChild(build, name);
+
+                    if (existing == null) {
+                        build.appendChild(copy(build, child));
+                    } else {
+                        build.replaceChild(copy(build, child), existing);
+                    }
+                }
+            }
+
+            final Element profilePluginManagement = getChild(getChild(
+                    profileBuild, "pluginManagement"), "plugins");
+
+            if (profilePluginManagement != null) {
+                mergePlugins(getOrCreateChild(getOrCreateChild(build,
+                        "pluginManagement"), "plugins"),
+                        profilePluginManagement, true, false);
+            }
+
+            final Element profilePlugins = getChild(profileBuild, "plugins");
+
+            if (profilePlugins != null) {
+                mergePlugins(getOrCreateChild(build, "plugins"),
+                        profilePlugins, true, false);
+            }
+        }
+    }
+
+    /**
+     * Injects active profiles into project. Profiles can be activated by
+     * default, by system property, by JDK version, by operating system and by
+     * file existence. JDK and operating system are those of the running JVM.
+     *
+     * @param project project element
+     * @param basedir base directory of the project being built
+     *
+     * @throws UnsupportedPomException Thrown if a profile uses unsupported
+     *                                 activation.
+     */
+    private void injectProfiles(final Element project, final Path basedir)
+            throws UnsupportedPomException {
+        final List<Element> active = new ArrayList<>(2);
+        final List<Element> activeByDefault = new ArrayList<>(2);
+
+        for (final Element profile : getChildren(
+                getChild(project, "profiles"), "profile")) {
+            final Element activation = getChild(profile, "activation");
+
+            if (activation == null) {
+                continue;
+            }
+
+            boolean byDefault = false;
+            boolean hasCondition = false;
+            boolean conditionsMet = true;
+
+            for (final Element condition : getChildren(activation, null)) {
+                switch (condition.getNodeName()) {
+                    case "activeByDefault":
+                        byDefault = "true".equals(
+                                condition.getTextContent().trim());
+                        break;
+                    case "file":
+                        hasCondition = true;
+                        conditionsMet &= isFileActive(condition, basedir);
+                        break;
+                    case "jdk":
+                        hasCondition = true;
+                        conditionsMet &= isJdkActive(
+                                condition.getTextContent().trim());
+                        break;
+                    case "os":
+                        hasCondition = true;
+                        conditionsMet &= isOsActive(condition);
+                        break;
+                    case "property":
+                        hasCondition = true;
+                        conditionsMet &= isPropertyActive(condition);
+                        break;
+                    default:
+                        throw new UnsupportedPomException("profile "
+                                + getChildText(profile, "id")
+                                + " is activated by "
+                                + condition.getNodeName());
+                }
+            }
+
+            if (hasCondition && conditionsMet) {
+                active.add(profile);
+            } else if (!hasCondition && byDefault) {
+                activeByDefault.add(profile);
+            }
+        }
+
+        for (final Element profile
+                : active.isEmpty() ? activeByDefault : active) {
+            injectProfile(project, profile);
+        }
+    }
+
+    /**
+     * Checks whether profile activation file condition is met.
+     *
+     * @param file    file element of profile activation
+     * @param basedir base directory of the project being built
+     *
+     * @return true if the condition is met, otherwise false
+     *
+     * @throws UnsupportedPomException Thrown if the file path contains
+     *                                 unsupported expression.
+     */
+    private boolean isFileActive(final Element file, final Path basedir)
+            throws UnsupportedPomException {
+        String path = getChildText(file, "exists");
+        boolean missing = false;
+
+        if (path == null || path.isEmpty()) {
+            path = getChildText(file, "missing");
+            missing = true;
+        }
+
+        if (path == null || path.isEmpty()) {
+            return false;
+        }
+
+        final String resolvedPath = path.replace("${project.basedir}",
+                basedir.toString()).replace("${basedir}", basedir.toString());
+
+        if (resolvedPath.contains("${")) {
+            throw new UnsupportedPomException("profile activation by file "
+                    + path);
+        }
+
+        return Files.exists(basedir.resolve(resolvedPath)) != missing;
+    }
+
+    /**
+     * Checks whether profile activation JDK condition is met.
+     *
+     * @param jdk JDK version prefix or version range, optionally negated
+     *
+     * @return true if the condition is met, otherwise false
+     *
+     * @throws UnsupportedPomException Thrown if the version range is not
+     *                                 valid.
+     */
+    private boolean isJdkActive(final String jdk)
+            throws UnsupportedPomException {
+        final String javaVersion = System.getProperty("java.version");
+
+        if (jdk.startsWith("!")) {
+            return !javaVersion.startsWith(jdk.substring(1));
+        } else if (jdk.startsWith("[") || jdk.startsWith("(")) {
+            try {
+                return MavenVersionRange.parse(jdk).contains(
+                        MavenVersion.of(javaVersion));
+            } catch (final IllegalArgumentException ex) {
+                throw new UnsupportedPomException(
+                        "profile activation by jdk " + jdk);
+            }
+        }
+
+        return javaVersion.startsWith(jdk);
+    }
+
+    /**
+     * Checks whether profile activation operating system condition is met.
+     *
+     * @param os os element of profile activation
+     *
+     * @return true if the condition is met, otherwise false
+     *
+     * @throws UnsupportedPomException Thrown if the condition uses unknown
+     *                                 element.
+     */
+    private boolean isOsActive(final Element os)
+            throws UnsupportedPomException {
+        final String osName
+                = System.getProperty("os.name").toLowerCase(Locale.ENGLISH);
+
+        for (final Element condition : getChildren(os, null)) {
+            String value = condition.getTextContent().trim().toLowerCase(
+                    Locale.ENGLISH);
+            final boolean negate = value.startsWith("!");
+
+            if (negate) {
+                value = value.substring(1);
+            }
+
+            final boolean matches;
+
+            switch (condition.getNodeName()) {
+                case "arch":
+                    matches = value.equals(System.getProperty("os.arch").
+                            toLowerCase(Locale.ENGLISH));
+                    break;
+                case "family":
+                    switch (value) {
+                        case "mac":
+                            matches = osName.contains("mac");
+                            break;
+                        case "unix":
+                            matches = File.pathSeparatorChar == ':'
+                                    && (!osName.contains("mac")
+                                    || osName.endsWith("x"));
+                            break;
+                        case "windows":
+                            matches = osName.contains("windows");
+                            break;
+                        default:
+                            matches = false;
+                    }
+
+                    break;
+                case "name":
+                    matches = value.equals(osName);
+                    break;
+                case "version":
+                    matches = value.equals(System.getProperty("os.version").
+                            toLowerCase(Locale.ENGLISH));
+                    break;
+                default:
+                    throw new UnsupportedPomException(
+                            "profile activation by os "
+                            + condition.getNodeName());
+            }
+
+            if (matches == negate) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether profile activation property condition is met.
+     *
+     * @param property property element of profile activation
+     *
+     * @return true if the condition is met, otherwise false
+     */
+    private boolean isPropertyActive(final Element property) {
+        String name = getChildText(property, "name");
+        String value = getChildText(property, "value");
+
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+
+        final boolean negateName = name.charAt(0) == '!';
+
+        if (negateName) {
+            name = name.substring(1);
+        }
+
+        final String actualValue = System.getProperty(name);
+
+        if (value == null || value.isEmpty()) {
+            final boolean present
+                    = actualValue != null && !actualValue.isEmpty();
+
+            return negateName ? !present : present;
+        }
+
+        final boolean negateValue = value.charAt(0) == '!';
+
+        if (negateValue) {
+            value = value.substring(1);
+        }
+
+        final boolean matches = value.equals(actualValue);
+
+        return negateValue ? !matches : matches;
+    }
+
+    /**
+     * Creates new document builder.
+     *
+     * @return document builder
+     */
+    private DocumentBuilder newDocumentBuilder() {
+        try {
+            return documentBuilderFactory.newDocumentBuilder();
+        } catch (final ParserConfigurationException ex) {
+            throw new RuntimeException("Failed to create XML parser", ex);
+        }
+    }
+
+    /**
+     * Serializes document to bytes.
+     *
+     * @param document document
+     *
+     * @return serialized document
+     */
+    private byte[] serialize(final Document document) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(8_192);
+
+        try {
+            final Transformer transformer = transformerFactory.newTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.transform(new DOMSource(document),
+                    new StreamResult(output));
+        } catch (final TransformerException ex) {
+            throw new RuntimeException("Failed to serialize effective pom",
+                    ex);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Checks that coordinates of the project and its dependencies are fully
+     * resolved.
+     *
+     * @param project project element
+     *
+     * @throws UnsupportedPomException Thrown if some coordinates are not
+     *                                 resolved.
+     */
+    private void validate(final Element project)
+            throws UnsupportedPomException {
+        final List<Element> elements = new ArrayList<>(20);
+        elements.add(project);
+        elements.addAll(getChildren(getChild(project, "dependencies"),
+                "dependency"));
+
+        for (final Element element : elements) {
+            final String groupId = getChildText(element, "groupId");
+            final String artifactId = getChildText(element, "artifactId");
+            final String version = getChildText(element, "version");
+            final String coordinates
+                    = groupId + ':' + artifactId + ':' + version;
+
+            if (groupId == null || artifactId == null || version == null
+                    || coordinates.contains("${")) {
+                throw new UnsupportedPomException("unresolved coordinates "
+                        + coordinates);
+            }
+        }
+    }
+
+    /**
+     * Returns value or default value if the value is null.
+     *
+     * @param value        value
+     * @param defaultValue default value
+     *
+     * @return value or default value
+     */
+    private static String valueOrDefault(final String value,
+            final String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,332 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of effective poms. Entries are addressed by SHA-256 hash of
+ * everything the effective pom depends on: location and content of the pom,
+ * content of its parent poms and imported BOMs, maven settings and the JDK
+ * version. The total size of the cache is bounded, least recently used
+ * entries are evicted first.
+ *
+ * @author fordfrog
+ */
+public class EffectivePomCache {
+
+    /**
+     * Version of cache entry format. Must be changed whenever the content of
+     * effective poms changes.
+     */
+    private static final String FORMAT_VERSION = "1";
+    /**
+     * Hexadecimal digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /**
+     * Cache directory.
+     */
+    private final Path directory;
+    /**
+     * Number of evicted entries.
+     */
+    private final AtomicInteger evictions = new AtomicInteger();
+    /**
+     * Number of cache hits.
+     */
+    private final AtomicInteger hits = new AtomicInteger();
+    /**
+     * Maximum total size of cache entries in bytes.
+     */
+    private final long maxSize;
+    /**
+     * Number of cache misses.
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates new instance of EffectivePomCache.
+     *
+     * @param directory {@link #directory}
+     * @param maxSize   {@link #maxSize}
+     */
+    public EffectivePomCache(final Path directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Computes cache key of effective pom.
+     *
+     * @param mode       mode in which effective pom is retrieved
+     * @param pomFile    absolute path to pom file
+     * @param inputFiles files the effective pom depends on, including the pom
+     *                   file
+     *
+     * @return cache key
+     *
+     * @throws IOException Thrown if some of the files could not be read.
+     */
+    public String computeKey(final String mode, final Path pomFile,
+            final List<Path> inputFiles) throws IOException {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("SHA-256 is not supported", ex);
+        }
+
+        updateDigest(digest, FORMAT_VERSION);
+        updateDigest(digest, mode);
+        updateDigest(digest, pomFile.toString());
+        updateDigest(digest, System.getProperty("java.version"));
+
+        for (final Path inputFile : inputFiles) {
+            updateDigest(digest, Files.readAllBytes(inputFile));
+        }
+
+        for (final Path settingsFile : getSettingsFiles()) {
+            if (Files.isRegularFile(settingsFile)) {
+                updateDigest(digest, settingsFile.toString());
+                updateDigest(digest, Files.readAllBytes(settingsFile));
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns cached effective pom and marks the entry as recently used.
+     *
+     * @param key cache key
+     *
+     * @return effective pom or null if it is not cached
+     *
+     * @throws IOException Thrown if the entry could not be read.
+     */
+    public byte[] get(final String key) throws IOException {
+        final Path entry = getEntryPath(key);
+        final byte[] result;
+
+        try {
+            result = Files.readAllBytes(entry);
+        } catch (final NoSuchFileException ex) {
+            misses.incrementAndGet();
+
+            return null;
+        }
+
+        Files.setLastModifiedTime(entry,
+                FileTime.fromMillis(System.currentTimeMillis()));
+        hits.incrementAndGet();
+
+        return result;
+    }
+
+    /**
+     * Getter for {@link #evictions}.
+     *
+     * @return {@link #evictions}
+     */
+    public int getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Getter for {@link #hits}.
+     *
+     * @return {@link #hits}
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter for {@link #misses}.
+     *
+     * @return {@link #misses}
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stores effective pom in the cache. The entry is written to temporary
+     * file first and then moved in place, so concurrent readers never see
+     * partially written entries.
+     *
+     * @param key          cache key
+     * @param effectivePom effective pom
+     *
+     * @throws IOException Thrown if the entry could not be written.
+     */
+    public void put(final String key, final byte[] effectivePom)
+            throws IOException {
+        final Path entry = getEntryPath(key);
+        Files.createDirectories(entry.getParent());
+
+        final Path tempFile = Files.createTempFile(entry.getParent(), key,
+                ".tmp");
+
+        try {
+            Files.write(tempFile, effectivePom);
+
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, entry,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Converts bytes to lower case hexadecimal string.
+     *
+     * @param bytes bytes
+     *
+     * @return hexadecimal string
+     */
+    static String toHex(final byte[] bytes) {
+        final char[] result = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            result[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+
+        return new String(result);
+    }
+
+    /**
+     * Evicts least recently used entries until total size of the cache fits
+     * into {@link #maxSize}.
+     *
+     * @throws IOException Thrown if the cache directory could not be read.
+     */
+    public void trim() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        final List<Path> entries = new ArrayList<>(100);
+        long totalSize = 0;
+
+        try (final DirectoryStream<Path> subdirectories
+                = Files.newDirectoryStream(directory)) {
+            for (final Path subdirectory : subdirectories) {
+                if (!Files.isDirectory(subdirectory)) {
+                    continue;
+                }
+
+                try (final DirectoryStream<Path> files = Files.
+                        newDirectoryStream(subdirectory, "*.xml")) {
+                    for (final Path file : files) {
+                        entries.add(file);
+                        totalSize += Files.size(file);
+                    }
+                }
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort((final Path o1, final Path o2) -> {
+            try {
+                return Files.getLastModifiedTime(o1).compareTo(
+                        Files.getLastModifiedTime(o2));
+            } catch (final IOException ex) {
+                return 0;
+            }
+        });
+
+        for (final Path entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+
+            final long size = Files.size(entry);
+
+            if (Files.deleteIfExists(entry)) {
+                totalSize -= size;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns path of cache entry.
+     *
+     * @param key cache key
+     *
+     * @return path of the entry
+     */
+    private Path getEntryPath(final String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".xml");
+    }
+
+    /**
+     * Returns paths of maven settings files that influence effective pom.
+     *
+     * @return list of paths
+     */
+    private static List<Path> getSettingsFiles() {
+        final List<Path> result = new ArrayList<>(2);
+        result.add(Paths.get(System.getProperty("user.home"), ".m2",
+                "settings.xml"));
+
+        final String mavenHome = System.getenv("MAVEN_HOME") != null
+                ? System.getenv("MAVEN_HOME") : System.getenv("M2_HOME");
+
+        if (mavenHome != null) {
+            result.add(Paths.get(mavenHome, "conf", "settings.xml"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates digest with length prefixed bytes so that concatenated inputs
+     * cannot collide.
+     *
+     * @param digest message digest
+     * @param bytes  bytes
+     */
+    static void updateDigest(final MessageDigest digest,
+            final byte[] bytes) {
+        final int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16),
+            (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    /**
+     * Updates digest with length prefixed string.
+     *
+     * @param digest message digest
+     * @param value  string, null is treated as empty string
+     */
+    static void updateDigest(final MessageDigest digest,
+            final String value) {
+        updateDigest(digest, value == null
+                ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -7,100 +7,143 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 import org.gentoo.java.ebuilder.Config;
 import org.gentoo.java.ebuilder.portage.CacheItem;
-import org.gentoo.java.ebuilder.portage.MavenVersion;
 import org.gentoo.java.ebuilder.portage.PortageParser;
 
 /**
- * Cache for resolving maven artifacts into portage ebuilds.
+ * Cache for resolving maven artifacts into portage ebuilds. The cache content
+ * is held in an immutable {@link MavenCacheSnapshot} that is replaced as a
+ * whole when the cache is (re)loaded, so the cache can be queried from many
+ * threads while a reload is in progress.
  *
  * @author fordfrog
  */
 public class MavenCache {
 
     /**
-     * Cache containing map of group ids, artifact ids and corresponding cache
-     * items.
+     * Generation of the last started load, every load gets higher generation
+     * than the previous ones.
      */
-    private final Map<String, Map<String, List<CacheItem>>> cache
-            = new HashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    /**
+     * Generation of {@link #snapshot}, guarded by this cache.
+     */
+    private long publishedGeneration;
+    /**
+     * Currently published cache snapshot.
+     */
+    private volatile MavenCacheSnapshot snapshot = MavenCacheSnapshot.EMPTY;
 
     /**
      * Searches for system dependency using maven group id, artifact id and
-     * version. First version that is the same or greater than specified version
-     * is returned. In case there is no such version, the highest version from
-     * the available ebuilds is returned.
+     * version using the current snapshot.
      *
      * @param groupId    maven group id
      * @param artifactId maven artifact id
      * @param version    maven version
      *
      * @return dependency string or null
+     *
+     * @see MavenCacheSnapshot#getDependency(java.lang.String,
+     * java.lang.String, java.lang.String)
      */
     public String getDependency(final String groupId, final String artifactId,
             final String version) {
-        final Map<String, List<CacheItem>> artifactIds = cache.get(groupId);
+        return snapshot.getDependency(groupId, artifactId, version);
+    }
 
-        if (artifactIds == null) {
-            return "!!!groupId-not-found!!!";
-        }
+    /**
+     * Getter for {@link #snapshot}. Callers that perform several lookups which
+     * should see consistent data should query the returned snapshot instead of
+     * this cache.
+     *
+     * @return {@link #snapshot}
+     */
+    public MavenCacheSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        final List<CacheItem> versions = artifactIds.get(artifactId);
+    /**
+     * Loads cache from specified path and publishes it as the current
+     * snapshot. The previous snapshot stays intact and usable by its holders.
+     *
+     * @param config application configuration
+     */
+    public void loadCache(final Config config) {
+        final long generation = generations.incrementAndGet();
 
-        if (versions == null) {
-            return "!!!artifactId-not-found!!!";
+        try {
+            publish(generation, readSnapshot(config));
+        } catch (final UnsupportedCacheException ex) {
+            config.getErrorWriter().println("ERROR: " + ex.getMessage());
+            config.exit(1);
         }
+    }
 
-        final MavenVersion mavenVersion = new MavenVersion(version);
-        CacheItem cacheItem = null;
-
-        for (final CacheItem curCacheItem : versions) {
-            if (curCacheItem.getParsedMavenVersion().compareTo(mavenVersion)
-                    >= 0) {
-                cacheItem = curCacheItem;
-
-                break;
+    /**
+     * Loads cache from specified path in the background. Until the returned
+     * future completes, the previous snapshot is still served. If loads
+     * overlap, snapshot of the load started last wins regardless of the order
+     * in which the loads finish.
+     *
+     * @param config application configuration
+     *
+     * @return future completed with the current snapshot after the load, or
+     *         completed exceptionally with {@link UnsupportedCacheException}
+     *         or {@link RuntimeException} if the cache could not be read
+     */
+    public CompletableFuture<MavenCacheSnapshot> reloadCache(
+            final Config config) {
+        final long generation = generations.incrementAndGet();
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return publish(generation, readSnapshot(config));
+            } catch (final UnsupportedCacheException ex) {
+                throw new CompletionException(ex);
             }
-        }
-
-        if (cacheItem == null) {
-            return "!!!suitble-mavenVersion-not-found!!!";
-        }
-
-        final StringBuilder sbDependency = new StringBuilder(50);
-        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
-            sbDependency.append(">=");
-        }
-        sbDependency.append(cacheItem.getCategory());
-        sbDependency.append('/');
-        sbDependency.append(cacheItem.getPkg());
-        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
-            sbDependency.append('-');
-            sbDependency.append(stripExtraFromVersion(cacheItem.getVersion()));
-        }
+        });
+    }
 
-        if (cacheItem.getUseFlag() != null) {
-            sbDependency.append('[');
-            sbDependency.append(cacheItem.getUseFlag());
-            sbDependency.append(']');
+    /**
+     * Publishes the snapshot unless snapshot of later load is already
+     * published.
+     *
+     * @param generation  generation of the load that read the snapshot
+     * @param newSnapshot snapshot
+     *
+     * @return current snapshot
+     */
+    private synchronized MavenCacheSnapshot publish(final long generation,
+            final MavenCacheSnapshot newSnapshot) {
+        if (generation > publishedGeneration) {
+            publishedGeneration = generation;
+            snapshot = newSnapshot;
         }
 
-        sbDependency.append(':');
-        sbDependency.append(cacheItem.getSlot());
-
-        return sbDependency.toString();
+        return snapshot;
     }
 
     /**
-     * Loads cache from specified path.
+     * Reads cache from specified path into new snapshot.
      *
      * @param config application configuration
+     *
+     * @return cache snapshot
+     *
+     * @throws UnsupportedCacheException Thrown if the cache has unsupported
+     *                                   format version.
      */
-    public void loadCache(final Config config) {
+    private MavenCacheSnapshot readSnapshot(final Config config)
+            throws UnsupportedCacheException {
         config.getStdoutWriter().print("Reading in maven cache...");
 
-        cache.clear();
+        final Map<String, Map<String, List<CacheItem>>> cache
+                = new HashMap<>(1_000);
 
         try (final BufferedReader reader = new BufferedReader(
                 new FileReader(config.getCacheFile().toFile()))) {
@@ -110,17 +153,16 @@ public class MavenCache {
                 config.getStdoutWriter().print("(warning: format is not "
                         + "up-to-date, consider refreshing the cache)...");
             } else if (!PortageParser.CACHE_VERSION.equals(line)) {
-                config.getErrorWriter().println("ERROR: Unsupported version of "
+                throw new UnsupportedCacheException("Unsupported version of "
                         + "cache. Please refresh the cache using command line "
                         + "switch --refresh-cache.");
-                Runtime.getRuntime().exit(1);
             }
 
             line = reader.readLine();
 
             while (line != null) {
                 if (!line.isEmpty() && line.charAt(0) != '#') {
-                    addCacheItem(new CacheItem(line));
+                    addCacheItem(cache, new CacheItem(line));
                 }
 
                 line = reader.readLine();
@@ -129,24 +171,22 @@ public class MavenCache {
             throw new RuntimeException("Failed to load cache", ex);
         }
 
-        for (final Map<String, List<CacheItem>> artifactIds : cache.values()) {
-            for (final List<CacheItem> versions : artifactIds.values()) {
-                versions.sort((final CacheItem o1, final CacheItem o2) -> {
-                    return o1.getParsedMavenVersion().compareTo(
-                            o2.getParsedMavenVersion());
-                });
-            }
-        }
+        final MavenCacheSnapshot result = new MavenCacheSnapshot(cache);
 
         config.getStdoutWriter().println("done");
+
+        return result;
     }
 
     /**
      * Adds cache item to the cache if it contains maven id.
      *
+     * @param cache     cache being populated
      * @param cacheItem cache item
      */
-    private void addCacheItem(final CacheItem cacheItem) {
+    private static void addCacheItem(
+            final Map<String, Map<String, List<CacheItem>>> cache,
+            final CacheItem cacheItem) {
         if (cacheItem.getGroupId() == null) {
             return;
         }
@@ -168,15 +208,4 @@ public class MavenCache {
 
         versions.add(cacheItem);
     }
-
-    /**
-     * Strips all -r* from the version string.
-     *
-     * @param version version string
-     *
-     * @return stripped version string
-     */
-    private String stripExtraFromVersion(final String version) {
-        return version.replaceAll("-r\\d+", "");
-    }
 }
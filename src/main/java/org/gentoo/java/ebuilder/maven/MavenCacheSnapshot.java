@@ -0,0 +1,202 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+
+/**
+ * Immutable view of the maven cache. Instances are never modified after
+ * construction so they can be shared between threads without locking. Only
+ * resolved dependencies are memoized in concurrent map, so that projects of
+ * the same reactor, which mostly share their dependencies, resolve every
+ * dependency once. The memo is cleared when it reaches
+ * {@link #MAX_RESOLVED_DEPENDENCIES} entries, so that long-running server
+ * serving the same snapshot does not grow it without limit.
+ *
+ * @author fordfrog
+ */
+public final class MavenCacheSnapshot {
+
+    /**
+     * Maximum number of memoized resolved dependencies.
+     */
+    private static final int MAX_RESOLVED_DEPENDENCIES = 4_096;
+    /**
+     * Empty snapshot used before the cache is loaded.
+     */
+    static final MavenCacheSnapshot EMPTY
+            = new MavenCacheSnapshot(Collections.emptyMap());
+
+    /**
+     * Cache containing map of group ids, artifact ids and corresponding cache
+     * items sorted by maven version.
+     */
+    private final Map<String, Map<String, List<CacheItem>>> cache;
+    /**
+     * Resolved dependencies mapped by groupId:artifactId:version.
+     */
+    private final Map<String, String> resolvedDependencies
+            = new ConcurrentHashMap<>(256);
+
+    /**
+     * Creates new instance of MavenCacheSnapshot. The passed map is copied
+     * into read-only structures and version lists are sorted.
+     *
+     * @param cache map of group ids, artifact ids and corresponding cache
+     *              items
+     */
+    MavenCacheSnapshot(final Map<String, Map<String, List<CacheItem>>> cache) {
+        final Map<String, Map<String, List<CacheItem>>> groupIds
+                = new HashMap<>(cache.size() * 4 / 3 + 1);
+
+        for (final Map.Entry<String, Map<String, List<CacheItem>>> groupEntry
+                : cache.entrySet()) {
+            final Map<String, List<CacheItem>> artifactIds = new HashMap<>(
+                    groupEntry.getValue().size() * 4 / 3 + 1);
+
+            for (final Map.Entry<String, List<CacheItem>> artifactEntry
+                    : groupEntry.getValue().entrySet()) {
+                final List<CacheItem> versions
+                        = new ArrayList<>(artifactEntry.getValue());
+                versions.sort((final CacheItem o1, final CacheItem o2) -> {
+                    return o1.getParsedMavenVersion().compareTo(
+                            o2.getParsedMavenVersion());
+                });
+
+                artifactIds.put(artifactEntry.getKey(),
+                        Collections.unmodifiableList(versions));
+            }
+
+            groupIds.put(groupEntry.getKey(),
+                    Collections.unmodifiableMap(artifactIds));
+        }
+
+        this.cache = Collections.unmodifiableMap(groupIds);
+    }
+
+    /**
+     * Searches for system dependency using maven group id, artifact id and
+     * version. For plain versions, first version that is the same or greater
+     * than specified version is returned. For version ranges, the lowest
+     * version within the range is returned.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version or version range
+     *
+     * @return dependency string or null
+     */
+    public String getDependency(final String groupId, final String artifactId,
+            final String version) {
+        if (groupId == null || artifactId == null || version == null) {
+            return resolveDependency(groupId, artifactId, version);
+        }
+
+        final String key = groupId + ':' + artifactId + ':' + version;
+        final String result = resolvedDependencies.get(key);
+
+        if (result != null) {
+            return result;
+        } else if (resolvedDependencies.size() >= MAX_RESOLVED_DEPENDENCIES) {
+            resolvedDependencies.clear();
+        }
+
+        return resolvedDependencies.computeIfAbsent(key,
+                (k) -> resolveDependency(groupId, artifactId, version));
+    }
+
+    /**
+     * Resolves system dependency without memoization.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version or version range
+     *
+     * @return dependency string
+     *
+     * @see #getDependency(java.lang.String, java.lang.String,
+     * java.lang.String)
+     */
+    private String resolveDependency(final String groupId,
+            final String artifactId, final String version) {
+        final Map<String, List<CacheItem>> artifactIds = cache.get(groupId);
+
+        if (artifactIds == null) {
+            return "!!!groupId-not-found!!!";
+        }
+
+        final List<CacheItem> versions = artifactIds.get(artifactId);
+
+        if (versions == null) {
+            return "!!!artifactId-not-found!!!";
+        }
+
+        final int index = MavenDependency.parseVersionRange(version).
+                selectBest(versions, CacheItem::getParsedMavenVersion);
+
+        if (index == -1) {
+            return "!!!suitble-mavenVersion-not-found!!!";
+        }
+
+        final CacheItem cacheItem = versions.get(index);
+        final StringBuilder sbDependency = new StringBuilder(50);
+        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
+            sbDependency.append(">=");
+        }
+        sbDependency.append(cacheItem.getCategory());
+        sbDependency.append('/');
+        sbDependency.append(cacheItem.getPkg());
+        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
+            sbDependency.append('-');
+            sbDependency.append(stripExtraFromVersion(cacheItem.getVersion()));
+        }
+
+        if (cacheItem.getUseFlag() != null) {
+            sbDependency.append('[');
+            sbDependency.append(cacheItem.getUseFlag());
+            sbDependency.append(']');
+        }
+
+        sbDependency.append(':');
+        sbDependency.append(cacheItem.getSlot());
+
+        return sbDependency.toString();
+    }
+
+    /**
+     * Returns cache items available for specified maven group id and artifact
+     * id, sorted by maven version.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     *
+     * @return read-only list of cache items, empty if there are none
+     */
+    public List<CacheItem> getVersions(final String groupId,
+            final String artifactId) {
+        final Map<String, List<CacheItem>> artifactIds = cache.get(groupId);
+
+        if (artifactIds == null) {
+            return Collections.emptyList();
+        }
+
+        final List<CacheItem> versions = artifactIds.get(artifactId);
+
+        return versions == null ? Collections.emptyList() : versions;
+    }
+
+    /**
+     * Strips all -r* from the version string.
+     *
+     * @param version version string
+     *
+     * @return stripped version string
+     */
+    private static String stripExtraFromVersion(final String version) {
+        return version.replaceAll("-r\\d+", "");
+    }
+}
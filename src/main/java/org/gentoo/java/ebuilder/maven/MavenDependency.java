@@ -1,6 +1,7 @@
 package org.gentoo.java.ebuilder.maven;
 
 import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
 
 /**
  * Maven project dependency.
@@ -18,7 +19,8 @@ public class MavenDependency {
      */
     private final String groupId;
     /**
-     * Parsed maven version.
+     * Parsed maven version. For version ranges this is the lowest version of
+     * the range.
      */
     private final MavenVersion mavenVersion;
     /**
@@ -51,7 +53,23 @@ public class MavenDependency {
         this.version = version;
         this.scope = scope;
         this.systemDependency = systemDependency;
-        mavenVersion = new MavenVersion(version);
+        mavenVersion = parseVersionRange(version).getLowerBound();
+    }
+
+    /**
+     * Parses version or version range. If the version range is not valid, the
+     * whole specification is treated as a soft version.
+     *
+     * @param version version or version range
+     *
+     * @return version range
+     */
+    static MavenVersionRange parseVersionRange(final String version) {
+        try {
+            return MavenVersionRange.parse(version);
+        } catch (final IllegalArgumentException ex) {
+            return MavenVersionRange.ofVersion(MavenVersion.of(version));
+        }
     }
 
     /**
@@ -1,16 +1,29 @@
 package org.gentoo.java.ebuilder.maven;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import org.gentoo.java.ebuilder.Config;
 import org.gentoo.java.ebuilder.portage.MavenVersion;
 
@@ -36,6 +49,11 @@ public class MavenEbuilder {
      * EAPI version.
      */
     private static final String EAPI = "7";
+    /**
+     * Highest JUnit version that is packaged as junit:0 slot.
+     */
+    private static final MavenVersion JUNIT_3_VERSION
+            = MavenVersion.of("3.9.9");
     /**
      * Pattern for retrieval of tarball extension.
      */
@@ -54,13 +72,51 @@ public class MavenEbuilder {
             = Pattern.compile("^.*/\\$\\{P\\}-test-sources\\.jar$");
 
     /**
-     * Pattern for checking whether the dependency is specifying versions.
+     * Number of ebuilds that were left untouched because their content did
+     * not change.
+     */
+    private final AtomicInteger unchanged = new AtomicInteger();
+    /**
+     * Number of written ebuilds, or of changed ebuilds if ebuilds are only
+     * compared.
      */
-    private static final Pattern PATTERN_EBUILD_VERSIONING
-            = Pattern.compile("^[~=<>].*$");
+    private final AtomicInteger written = new AtomicInteger();
+    /**
+     * Ebuilds that differ from their rendered content when ebuilds are only
+     * compared. Every entry is path to the ebuild prefixed with {@code A\t}
+     * if the ebuild does not exist yet or {@code M\t} if it was modified.
+     */
+    private final Queue<String> changedEbuilds
+            = new ConcurrentLinkedQueue<>();
+    /**
+     * Template of generated ebuilds.
+     */
+    private final EbuildTemplate template;
+
+    /**
+     * Creates new instance of MavenEbuilder using the default template.
+     */
+    public MavenEbuilder() {
+        this(EbuildTemplate.getDefault());
+    }
+
+    /**
+     * Creates new instance of MavenEbuilder.
+     *
+     * @param template {@link #template}
+     */
+    public MavenEbuilder(final EbuildTemplate template) {
+        this.template = template;
+    }
 
     /**
      * Generates ebuild from the collected information at the specified path.
+     * The ebuild is rendered in memory first and the file is written only if
+     * its content changed, so that modification time of unchanged ebuilds is
+     * preserved. Data derived from the projects are computed once into
+     * {@link RenderContext} before rendering. The method does not modify any
+     * shared state except of thread safe counters, so ebuilds of different
+     * configurations can be generated concurrently.
      *
      * @param config        application configuration
      * @param mavenProjects list of maven project information
@@ -69,31 +125,107 @@ public class MavenEbuilder {
     public void generateEbuild(final Config config,
             final List<MavenProject> mavenProjects,
             final MavenCache mavenCache) {
-        config.getStdoutWriter().print("Writing ebuild...");
+        config.getStdoutWriter().print(config.isDryRun()
+                ? "Comparing ebuild..." : "Writing ebuild...");
 
-        try (final PrintWriter writer = new PrintWriter(
-                new FileWriter(config.getEbuild().toFile()))) {
-            writeHeader(writer);
-            writeCommand(config, writer);
-            writeEAPI(writer);
+        final RenderContext context = new RenderContext(config, mavenProjects);
+        final StringBuilder sb = new StringBuilder(8_192);
+        template.render(sb, (slot, out) -> {
+            renderSlot(context, slot, out);
+        });
 
-            /**
-             * Write the info from the last project as it is probably the one
-             * that depends on the rest.
-             */
-            final MavenProject mavenProject
-                    = mavenProjects.get(mavenProjects.size() - 1);
-            writeInherit(config, mavenProject, writer);
-            writePackageInfo(config, mavenProject, writer);
-
-            writeDependencies(config, mavenProjects, writer);
-            writeSourceDir(writer);
-            writeScript(config, mavenProjects, writer);
+        final String content = sb.toString();
+
+        try {
+            if (config.isDryRun()) {
+                compareEbuild(config, content);
+            } else if (writeIfChanged(config.getEbuild(), content.getBytes(
+                    Charset.defaultCharset()))) {
+                written.incrementAndGet();
+                config.getStdoutWriter().println("done");
+            } else {
+                unchanged.incrementAndGet();
+                config.getStdoutWriter().println("unchanged");
+            }
         } catch (final IOException ex) {
             throw new RuntimeException("Failed to write ebuild", ex);
         }
+    }
+
+    /**
+     * Returns {@link #changedEbuilds} sorted by path.
+     *
+     * @return sorted list of changed ebuilds
+     */
+    public List<String> getChangedEbuilds() {
+        final List<String> result = new ArrayList<>(changedEbuilds);
+        result.sort((final String o1, final String o2) -> {
+            return o1.substring(2).compareTo(o2.substring(2));
+        });
 
-        config.getStdoutWriter().println("done");
+        return result;
+    }
+
+    /**
+     * Getter for {@link #unchanged}.
+     *
+     * @return {@link #unchanged}
+     */
+    public int getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Getter for {@link #written}.
+     *
+     * @return {@link #written}
+     */
+    public int getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Compares rendered ebuild with the existing file without modifying it.
+     * If they differ, the ebuild is recorded in {@link #changedEbuilds} and
+     * unified diff is printed if {@link Config#isDiff()} is set.
+     *
+     * @param config  application configuration
+     * @param content rendered ebuild
+     *
+     * @throws IOException Thrown if the existing ebuild could not be read.
+     */
+    private void compareEbuild(final Config config, final String content)
+            throws IOException {
+        final Path ebuild = config.getEbuild();
+        String oldContent;
+
+        try {
+            oldContent = new String(Files.readAllBytes(ebuild),
+                    Charset.defaultCharset());
+        } catch (final NoSuchFileException ex) {
+            oldContent = null;
+        }
+
+        if (content.equals(oldContent)) {
+            unchanged.incrementAndGet();
+            config.getStdoutWriter().println("unchanged");
+
+            return;
+        }
+
+        written.incrementAndGet();
+        changedEbuilds.add((oldContent == null ? "A\t" : "M\t") + ebuild);
+        config.getStdoutWriter().println(oldContent == null
+                ? "new" : "changed");
+
+        if (config.isDiff()) {
+            final StringBuilder sbDiff = new StringBuilder(1_024);
+            UnifiedDiff.append(sbDiff, oldContent == null
+                    ? "/dev/null" : ebuild.toString(),
+                    oldContent == null ? "" : oldContent, ebuild.toString(),
+                    content);
+            config.getStdoutWriter().print(sbDiff);
+        }
     }
 
     /**
@@ -107,37 +239,51 @@ public class MavenEbuilder {
             final List<MavenDependency> dependencies) {
         final StringBuilder sbCP = new StringBuilder(dependencies.size() * 15);
 
-        dependencies.stream().filter((dependency)
-                -> dependency.getSystemDependency() != null).
-                forEach((dependency) -> {
-                    if (sbCP.length() > 0) {
-                        sbCP.append(',');
-                    }
+        for (final MavenDependency dependency : dependencies) {
+            if (dependency.getSystemDependency() == null) {
+                continue;
+            }
 
-                    final String ebuildDependency =
-                            dependency.getSystemDependency();
+            if (sbCP.length() > 0) {
+                sbCP.append(',');
+            }
 
-                    final String[] parts = ebuildDependency.
-                            replaceAll(".*/", "").
-                            replaceAll("\\[.*\\]", "").
-                            split(":");
-                    String pn = parts[0].replaceAll("-r\\d+$", "");
+            sbCP.append(ClassPathMapper.getEntry(
+                    dependency.getSystemDependency()));
+        }
 
-                    if (parts.length == 2) {
-                        if (PATTERN_EBUILD_VERSIONING.
-                                matcher(ebuildDependency).matches()) {
-                            pn = pn.substring(0, pn.lastIndexOf('-'));
-                        }
+        return sbCP.toString();
+    }
 
-                        if (!parts[1].equals("0")) {
-                            pn += "-" + parts[1];
-                        }
-                    }
+    /**
+     * Returns classpath entries of dependencies of the projects, every
+     * package is listed only once.
+     *
+     * @param mavenProjects list of maven projects
+     * @param scopes        functions returning dependencies of the project
+     *
+     * @return classpath entries in order of the dependencies
+     */
+    @SafeVarargs
+    private static Set<String> getClassPathEntries(
+            final List<MavenProject> mavenProjects,
+            final Function<MavenProject, List<MavenDependency>>... scopes) {
+        final Set<String> entries = new LinkedHashSet<>(30);
 
-                    sbCP.append(pn);
-                });
+        for (final MavenProject mavenProject : mavenProjects) {
+            for (final Function<MavenProject, List<MavenDependency>> scope
+                    : scopes) {
+                for (final MavenDependency dependency
+                        : scope.apply(mavenProject)) {
+                    if (dependency.getSystemDependency() != null) {
+                        entries.add(ClassPathMapper.getEntry(
+                                dependency.getSystemDependency()));
+                    }
+                }
+            }
+        }
 
-        return sbCP.toString();
+        return entries;
     }
 
     /**
@@ -147,7 +293,7 @@ public class MavenEbuilder {
      *
      * @return testing framework name or null
      */
-    private String determineTestingFramework(
+    private static String determineTestingFramework(
             final List<MavenProject> mavenProjects, final Config config) {
         for (final MavenProject mavenProject : mavenProjects) {
             final String result
@@ -168,7 +314,7 @@ public class MavenEbuilder {
      *
      * @return testing framework name or null
      */
-    private String determineTestingFramework(
+    private static String determineTestingFramework(
             final MavenProject mavenProject, final Config config) {
         Set<String> frameworks = new HashSet<>(10);
 
@@ -204,7 +350,7 @@ public class MavenEbuilder {
      *
      * @return testing framework name or null
      */
-    private String determineTestingFrameworkByDependency(
+    private static String determineTestingFrameworkByDependency(
             final MavenDependency dependency) {
         /** TODO: missing determination for
          *    "POJO" tests
@@ -213,7 +359,7 @@ public class MavenEbuilder {
         if ("junit".equals(dependency.getGroupId())
                 && "junit".equals(dependency.getArtifactId())) {
             if (dependency.getMavenVersion().
-                    compareTo(new MavenVersion("3.9.9")) < 1) {
+                    compareTo(JUNIT_3_VERSION) < 1) {
                 return "junit";
             } else {
                 return "junit-4";
@@ -246,7 +392,7 @@ public class MavenEbuilder {
      *
      * @return minimum source version
      */
-    private JavaVersion getMinSourceVersion(
+    private static JavaVersion getMinSourceVersion(
             final List<MavenProject> mavenProjects,
             final JavaVersion forceMinVersion) {
         JavaVersion result = null;
@@ -273,7 +419,7 @@ public class MavenEbuilder {
      *
      * @return minimum target version
      */
-    private JavaVersion getMinTargetVersion(
+    private static JavaVersion getMinTargetVersion(
             final List<MavenProject> mavenProjects,
             final JavaVersion forceMinVersion) {
         JavaVersion result = null;
@@ -352,6 +498,119 @@ public class MavenEbuilder {
         return TestSrcUri + " -> " + "${P}-test-sources.jar";
     }
 
+    /**
+     * Appends value of template slot.
+     *
+     * @param context render context
+     * @param slot    template slot
+     * @param sb      string builder
+     */
+    private void renderSlot(final RenderContext context,
+            final EbuildTemplate.Slot slot, final StringBuilder sb) {
+        final Config config = context.config;
+        final MavenProject mavenProject = context.mavenProject;
+
+        switch (slot) {
+            case COMMAND:
+                writeCommand(config, sb);
+                break;
+            case DEPENDENCIES:
+                writeDependencies(context, sb);
+                break;
+            case DESCRIPTION:
+                if (mavenProject.getDescription() != null) {
+                    sb.append(mavenProject.getDescription().replace("\"",
+                            "\\\""));
+                } else {
+                    sb.append(defaultDescription);
+                }
+
+                break;
+            case EAPI:
+                sb.append(EAPI);
+                break;
+            case ECLASSES:
+                sb.append("java-pkg-2 java-pkg-simple");
+
+                if (config.isFromMavenCentral()) {
+                    sb.append(" java-pkg-maven");
+                }
+
+                break;
+            case HOMEPAGE:
+                if (mavenProject.getHomepage() != null) {
+                    sb.append(mavenProject.getHomepage());
+                } else {
+                    sb.append(defaultHomepage);
+                }
+
+                break;
+            case IUSE:
+                sb.append("doc source");
+
+                if (config.hasBinjarUri() || context.hasTests) {
+                    sb.append(" test");
+                }
+
+                if (config.hasBinjarUri()) {
+                    sb.append(" binary");
+                }
+
+                break;
+            case KEYWORDS:
+                sb.append(config.getKeywords());
+                break;
+            case LICENSE:
+                if (config.getLicense() != null) {
+                    sb.append(config.getLicense());
+                } else {
+                    sb.append(mavenProject.getLicenses());
+                }
+
+                break;
+            case MAVEN_ID:
+                sb.append(mavenProject.getGroupId()).append(':').
+                        append(mavenProject.getArtifactId()).append(':').
+                        append(mavenProject.getVersion());
+                break;
+            case SCRIPT:
+                writeScript(config, context.mavenProjects, sb);
+                break;
+            case SLOT:
+                sb.append(config.getSlot());
+                break;
+            case SRC_URI:
+                sb.append(improveSrcUri(replaceWithVars(
+                        config.getDownloadUri().toString(), config)));
+
+                if (config.hasBinjarUri()) {
+                    sb.append("\n\t").append(improveBinjarUri(replaceWithVars(
+                            config.getBinjarUri().toString(), config)));
+                }
+
+                if (config.hasTestSrcUri()) {
+                    sb.append("\n\t").append(improveTestSrcUri(
+                            replaceWithVars(config.getTestSrcUri().toString(),
+                                    config)));
+                }
+
+                break;
+            case TESTING_FRAMEWORKS:
+                // so that java-pkg-simple.eclass can deal with it
+                if (context.testingFramework != null) {
+                    sb.append("JAVA_TESTING_FRAMEWORKS=\"").
+                            append(context.testingFramework).append("\"\n");
+                }
+
+                break;
+            case YEAR:
+                sb.append(LocalDate.now().getYear());
+                break;
+            default:
+                throw new RuntimeException("Slot not supported: " + slot);
+        }
+    }
+
     /**
      * Merges maven project system dependencies of specified type and removed
      * duplicates.
@@ -360,11 +619,12 @@ public class MavenEbuilder {
      * @param type          type of dependencies ("common", "compile", "runtime"
      *                      and "test")
      *
-     * @return list of merged dependencies
+     * @return unmodifiable list of merged dependencies
      */
-    private List<String> mergeSystemDependencies(
+    private static List<String> mergeSystemDependencies(
             final List<MavenProject> mavenProjects, final String type) {
-        final List<String> result = new ArrayList<>(30);
+        final Set<String> merged = new LinkedHashSet<>(30);
+        final boolean test = "test".equals(type);
 
         mavenProjects.stream().forEach((mavenProject) -> {
             final List<MavenDependency> dependencies;
@@ -389,19 +649,19 @@ public class MavenEbuilder {
 
             dependencies.stream().filter((dependency)
                     -> (dependency.getSystemDependency() != null
-                    && !result.contains(dependency.getSystemDependency())
-                    && (determineTestingFrameworkByDependency(dependency) == null
-                        || type != "test"))).
+                    && (!test || determineTestingFrameworkByDependency(
+                            dependency) == null))).
                     forEach((dependency) -> {
-                        result.add(dependency.getSystemDependency());
+                        merged.add(dependency.getSystemDependency());
                     });
         });
 
+        final List<String> result = new ArrayList<>(merged);
         result.sort((final String o1, final String o2) -> {
             return o1.compareTo(o2);
         });
 
-        return result;
+        return Collections.unmodifiableList(result);
     }
 
     private String replaceWithVars(final String string, final Config config) {
@@ -418,113 +678,98 @@ public class MavenEbuilder {
      * Writes command that was used to create skeleton of the ebuild.
      *
      * @param config application configuration
-     * @param writer ebuild writer
+     * @param sb     string builder
      */
-    private void writeCommand(final Config config, final PrintWriter writer) {
-        writer.println();
-        writer.println("# Skeleton command:");
-        writer.print("# java-ebuilder --generate-ebuild --workdir .");
+    private void writeCommand(final Config config, final StringBuilder sb) {
+        sb.append("# java-ebuilder --generate-ebuild --workdir .");
 
         if (!config.getPomFiles().isEmpty()) {
             config.getPomFiles().stream().forEach((pomFile) -> {
-                writer.print(" --pom ");
-                writer.print(pomFile);
+                sb.append(" --pom ").append(pomFile);
             });
         }
 
         if (config.isFromMavenCentral()) {
-            writer.print(" --from-maven-central");
+            sb.append(" --from-maven-central");
         }
 
         if (config.getDownloadUri() != null) {
-            writer.print(" --download-uri ");
-            writer.print(config.getDownloadUri());
+            sb.append(" --download-uri ").append(config.getDownloadUri());
         }
 
         if (config.hasBinjarUri()) {
-            writer.print(" --binjar-uri ");
-            writer.print(config.getBinjarUri());
+            sb.append(" --binjar-uri ").append(config.getBinjarUri());
         }
 
         if (config.hasTestSrcUri()) {
-            writer.print(" --test-src-uri ");
-            writer.print(config.getTestSrcUri());
+            sb.append(" --test-src-uri ").append(config.getTestSrcUri());
         }
 
         if (config.getLicense() != null) {
-            writer.print(" --license ");
-            writer.print(config.getLicense());
+            sb.append(" --license ").append(config.getLicense());
         }
 
         if (config.getSlot() != null) {
-            writer.print(" --slot ");
-            writer.print(config.getSlot());
+            sb.append(" --slot ").append(config.getSlot());
         }
 
         if (config.getKeywords() != null) {
-            writer.print(" --keywords \"");
-            writer.print(config.getKeywords());
-            writer.print("\"");
+            sb.append(" --keywords \"").append(config.getKeywords()).
+                    append('"');
         }
 
         if (config.getEbuild() != null) {
-            writer.print(" --ebuild ");
-            writer.print(config.getEbuild().getFileName());
+            sb.append(" --ebuild ").append(config.getEbuild().getFileName());
         }
 
         if (config.getForceMinJavaVersion() != null) {
-            writer.print(" --force-min-java-version ");
-            writer.print(config.getForceMinJavaVersion());
+            sb.append(" --force-min-java-version ").append(
+                    config.getForceMinJavaVersion());
         }
 
-        writer.println();
+        sb.append('\n');
     }
 
     /**
      * Writes dependencies to the ebuild.
      *
-     * @param config        application configuration
-     * @param mavenProjects list of maven projects
-     * @param writer        ebuild writer
+     * @param context render context
+     * @param sb      string builder
      */
-    private void writeDependencies(final Config config,
-            final List<MavenProject> mavenProjects,
-            final PrintWriter writer) {
-        final List<String> commonDependencies = mergeSystemDependencies(
-                mavenProjects, "common");
-        final List<String> testDependencies = mergeSystemDependencies(
-                mavenProjects, "test");
-        final List<String> compileDependencies = mergeSystemDependencies(
-                mavenProjects, "compile");
-        final List<String> runtimeDependencies = mergeSystemDependencies(
-                mavenProjects, "runtime");
+    private void writeDependencies(final RenderContext context,
+            final StringBuilder sb) {
+        final Config config = context.config;
+        final List<MavenProject> mavenProjects = context.mavenProjects;
+        final List<String> commonDependencies = context.commonDependencies;
+        final List<String> testDependencies = context.testDependencies;
+        final List<String> compileDependencies = context.compileDependencies;
+        final List<String> runtimeDependencies = context.runtimeDependencies;
         final boolean hasCDepend = !commonDependencies.isEmpty();
 
         if (hasCDepend) {
-            writer.println("\n# Common dependencies");
+            sb.append("\n# Common dependencies\n");
 
             mavenProjects.stream().
                     filter((mavenProject)
                             -> !mavenProject.getCommonDependencies().isEmpty()).
                     forEach((mavenProject) -> {
-                        writeDependenciesInfo(config, writer,
+                        writeDependenciesInfo(config, sb,
                                 mavenProject.getPomFile(),
                                 mavenProject.getCommonDependencies(), null);
                     });
 
-            writer.println("\nCDEPEND=\"");
+            sb.append("\nCDEPEND=\"\n");
 
             commonDependencies.stream().forEach((dependency) -> {
-                writer.print('\t');
-                writer.println(dependency);
+                sb.append('\t').append(dependency).append('\n');
             });
 
-            writer.println('"');
+            sb.append("\"\n");
         }
 
         if (!compileDependencies.isEmpty()
                 || !testDependencies.isEmpty()) {
-            writer.println("\n# Compile dependencies");
+            sb.append("\n# Compile dependencies\n");
 
             mavenProjects.stream().
                     filter((mavenProject)
@@ -532,14 +777,14 @@ public class MavenEbuilder {
                     || !mavenProject.getTestDependencies().isEmpty())
                     .forEach((mavenProject) -> {
                         if (!mavenProject.getCompileDependencies().isEmpty()) {
-                            writeDependenciesInfo(config, writer,
+                            writeDependenciesInfo(config, sb,
                                     mavenProject.getPomFile(),
                                     mavenProject.getCompileDependencies(),
                                     null);
                         }
 
                         if (!mavenProject.getTestDependencies().isEmpty()) {
-                            writeDependenciesInfo(config, writer,
+                            writeDependenciesInfo(config, sb,
                                     mavenProject.getPomFile(),
                                     mavenProject.getTestDependencies(),
                                     "test?");
@@ -547,290 +792,357 @@ public class MavenEbuilder {
                     });
         }
 
-        writer.print("\nDEPEND=\"\n\t>=virtual/jdk-");
-        writer.print(getMinSourceVersion(
-                mavenProjects, config.getForceMinJavaVersion()));
-        writer.println(":*");
+        sb.append("\nDEPEND=\"\n\t>=virtual/jdk-");
+        sb.append(context.minSourceVersion);
+        sb.append(":*\n");
 
         if (config.getDownloadUri() != null && config.getDownloadUri().
                 toString().matches("^.*?\\.(jar|zip)$")) {
-            writer.println("\tapp-arch/unzip");
+            sb.append("\tapp-arch/unzip\n");
         }
 
         if (config.hasBinjarUri()) {
             if (hasCDepend && compileDependencies.isEmpty()) {
-                writer.println("\t!binary? ( ${CDEPEND} )");
+                sb.append("\t!binary? ( ${CDEPEND} )\n");
             } else if (!compileDependencies.isEmpty()) {
-                writer.println("\t!binary? (");
+                sb.append("\t!binary? (\n");
 
                 if (hasCDepend) {
-                    writer.println("\t\t${CDEPEND}");
+                    sb.append("\t\t${CDEPEND}\n");
                 }
 
                 if (!compileDependencies.isEmpty()) {
                     compileDependencies.stream().forEach((dependency) -> {
-                        writer.print("\t\t");
-                        writer.println(dependency);
+                        sb.append("\t\t").append(dependency).append('\n');
                     });
                 }
 
-                writer.println("\t)");
+                sb.append("\t)\n");
             }
         } else {
             if (hasCDepend) {
-                writer.println("\t${CDEPEND}");
+                sb.append("\t${CDEPEND}\n");
             }
 
             if (!compileDependencies.isEmpty()) {
                 compileDependencies.stream().forEach((dependency) -> {
-                    writer.print('\t');
-                    writer.println(dependency);
+                    sb.append('\t').append(dependency).append('\n');
                 });
             }
         }
 
         if (!testDependencies.isEmpty()) {
-            writer.println("\ttest? (");
+            sb.append("\ttest? (\n");
 
             testDependencies.stream().forEach((dependency) -> {
-                writer.print("\t\t");
-                writer.println(dependency);
+                sb.append("\t\t").append(dependency).append('\n');
             });
 
-            writer.println("\t)");
+            sb.append("\t)\n");
         }
 
-        writer.println('"');
+        sb.append("\"\n");
 
         if (!runtimeDependencies.isEmpty()) {
-            writer.println("\n# Runtime dependencies");
+            sb.append("\n# Runtime dependencies\n");
 
             mavenProjects.stream().
                     filter((mavenProject)
                             -> !mavenProject.getRuntimeDependencies().isEmpty())
                     .forEach((mavenProject) -> {
-                        writeDependenciesInfo(config, writer,
+                        writeDependenciesInfo(config, sb,
                                 mavenProject.getPomFile(),
                                 mavenProject.getRuntimeDependencies(), null);
                     });
         }
 
-        writer.print("\nRDEPEND=\"\n\t>=virtual/jre-");
-        writer.print(getMinTargetVersion(
-                mavenProjects, config.getForceMinJavaVersion()));
-        writer.println(":*");
+        sb.append("\nRDEPEND=\"\n\t>=virtual/jre-");
+        sb.append(context.minTargetVersion);
+        sb.append(":*\n");
 
         if (hasCDepend) {
-            writer.print("\t${CDEPEND}");
+            sb.append("\t${CDEPEND}");
         }
 
         if (!runtimeDependencies.isEmpty()) {
             runtimeDependencies.stream().forEach((dependency) -> {
-                writer.println();
-                writer.print('\t');
-                writer.println(dependency);
+                sb.append("\n\t").append(dependency).append('\n');
             });
         }
 
-        writer.println('"');
+        sb.append("\"\n");
     }
 
     /**
      * Writes dependencies information to the ebuild.
      *
      * @param config       application configuration
-     * @param writer       ebuild writer
+     * @param sb           string builder
      * @param pomFile      path to pom file
      * @param dependencies list of dependencies
      * @param useFlag      optional USE flag including question mark
      */
     private void writeDependenciesInfo(final Config config,
-            final PrintWriter writer, final Path pomFile,
+            final StringBuilder sb, final Path pomFile,
             final List<MavenDependency> dependencies, final String useFlag) {
-        writer.print("# POM: ");
-        writer.println(replaceWithVars(pomFile.toString(), config));
+        sb.append("# POM: ").append(replaceWithVars(pomFile.toString(),
+                config)).append('\n');
 
         dependencies.stream().forEach((dependency) -> {
-            writer.print("# ");
+            sb.append("# ");
 
             if (useFlag != null) {
-                writer.print(useFlag);
-                writer.print(' ');
+                sb.append(useFlag).append(' ');
             }
 
-            writer.print(dependency.getGroupId());
-            writer.print(':');
-            writer.print(dependency.getArtifactId());
-            writer.print(':');
-            writer.print(dependency.getVersion());
-            writer.print(" -> ");
-            writer.println(dependency.getSystemDependency());
+            sb.append(dependency.getGroupId()).append(':').
+                    append(dependency.getArtifactId()).append(':').
+                    append(dependency.getVersion()).append(" -> ").
+                    append(dependency.getSystemDependency()).append('\n');
         });
     }
 
     /**
-     * Writes EAPI version.
+     * Writes array variable listing directories relative to workdir.
      *
-     * @param writer ebuild writer
+     * @param config      application configuration
+     * @param variable    variable name
+     * @param directories set of directories
+     * @param sb          string builder
      */
-    private void writeEAPI(final PrintWriter writer) {
-        writer.println();
-        writer.print("EAPI=");
-        writer.println(EAPI);
-    }
+    private void writeDirectories(final Config config, final String variable,
+            final Set<Path> directories, final StringBuilder sb) {
+        sb.append(variable).append("=(\n");
+
+        directories.forEach((directory) -> {
+            sb.append("\t\"");
+            sb.append(replaceWithVars(config.getWorkdir().relativize(
+                    directory).toString(), config));
+            sb.append("\"\n");
+        });
 
-    /**
-     * Writes Gentoo header.
-     *
-     * @param writer ebuild writer
-     */
-    private void writeHeader(final PrintWriter writer) {
-        writer.printf("# Copyright 1999-%d Gentoo Authors\n",
-                LocalDate.now().getYear());
-        writer.println("# Distributed under the terms of the GNU General "
-                + "Public License v2");
+        sb.append(")\n");
     }
 
     /**
-     * Writes inherit line.
+     * Writes content to the file unless the file already has the same
+     * content. The content is written to temporary file first and then moved
+     * in place, so the file is never left partially written. The temporary
+     * file is created the same way as any other file, so new file gets
+     * permissions according to umask, replaced file keeps its permissions.
      *
-     * @param writer ebuild writer
+     * @param file    target file
+     * @param content file content
+     *
+     * @return true if the file was written, false if it was unchanged
+     *
+     * @throws IOException Thrown if the file could not be read or written.
      */
-    private void writeInherit(final Config config,
-            final MavenProject mavenProject, final PrintWriter writer) {
-        writer.println();
-        writer.print("JAVA_PKG_IUSE=\"doc source");
-
-        if (mavenProject.hasTests() || config.hasBinjarUri()) {
-            writer.print(" test");
-        }
+    private static boolean writeIfChanged(final Path file,
+            final byte[] content) throws IOException {
+        Set<PosixFilePermission> permissions = null;
+
+        try {
+            if (Files.size(file) == content.length
+                    && Arrays.equals(Files.readAllBytes(file), content)) {
+                return false;
+            }
 
-        if (config.hasBinjarUri()) {
-            writer.print(" binary");
+            permissions = Files.getPosixFilePermissions(file);
+        } catch (final NoSuchFileException ex) {
+            // the ebuild is new
+        } catch (final UnsupportedOperationException ex) {
+            // permissions are not supported by the file system
         }
 
-        writer.println('"');
+        final Path tempFile = createTempFile(file);
 
-        // write MAVEN_ID ahead of DESCRIPTION
-        writer.print("MAVEN_ID=\"");
-        writer.print(mavenProject.getGroupId());
-        writer.print(':');
-        writer.print(mavenProject.getArtifactId());
-        writer.print(':');
-        writer.print(mavenProject.getVersion());
-        writer.println('"');
+        try {
+            Files.write(tempFile, content);
 
-        // write testing framworks, so java-pkg-simple.eclass can deal with it
-        final String testingFramework
-                = determineTestingFramework(mavenProject, config);
+            if (permissions != null) {
+                Files.setPosixFilePermissions(tempFile, permissions);
+            }
 
-        if (testingFramework != null) {
-            writer.print("JAVA_TESTING_FRAMEWORKS=\"");
-            writer.print(testingFramework);
-            writer.println('"');
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile, file,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
 
-        writer.println();
-        writer.print("inherit java-pkg-2 java-pkg-simple");
+        return true;
+    }
 
-        if (config.isFromMavenCentral()) {
-            writer.print(" java-pkg-maven");
+    /**
+     * Creates hidden temporary file next to the file. Unlike
+     * {@link Files#createTempFile(Path, String, String,
+     * java.nio.file.attribute.FileAttribute...)}, which makes the file
+     * readable by owner only, the file is created with default permissions.
+     *
+     * @param file file the temporary file is created for
+     *
+     * @return path to the temporary file
+     *
+     * @throws IOException Thrown if the file could not be created.
+     */
+    private static Path createTempFile(final Path file) throws IOException {
+        while (true) {
+            final Path tempFile = file.resolveSibling("." + file.getFileName()
+                    + Long.toUnsignedString(
+                            ThreadLocalRandom.current().nextLong()) + ".tmp");
+
+            try {
+                return Files.createFile(tempFile);
+            } catch (final FileAlreadyExistsException ex) {
+                // try another name
+            }
         }
-
-        writer.println("");
     }
 
     /**
-     * Writes ebuild script for multiple projects.
+     * Writes ebuild script for multiple projects. All projects are compiled
+     * into single jar, so classpaths are merged and source and resource
+     * directories of the projects are listed in arrays. Settings that
+     * java-pkg-simple.eclass supports only once (source encoding and main
+     * class) are taken from the last project that specifies them.
      *
      * @param config        application configuration
      * @param mavenProjects list of maven projects
-     * @param writer        ebuild writer
+     * @param sb            string builder
      */
     private void writeMultipleProjectsScript(final Config config,
-            final List<MavenProject> mavenProjects, final PrintWriter writer) {
-        // TODO: implement multiple-project script
-        throw new UnsupportedOperationException("Not implemented yet.");
-
-        // Global:
-        // JAVA_GENTOO_CLASSPATH
-        // JAVA_CLASSPATH_EXTRA
-        // JAVA_TEST_GENTOO_CLASSPATH
-        // JAVA_ENCODING (unless it differs in projects)
-        // JAVA_NEED_TOOLS
-        // Compile (jars, doc):
-        // JAVA_SRC_DIR
-        // JAVA_RESOURCE_DIRS
-        // JAVA_ENCODING (in case project encodings are different)
-        // Test:
-        // JAVA_TESTING_FRAMEWORKS
-        // JAVA_TEST_SRC_DIR
-        // JAVA_TEST_RESOURCE_DIRS
-        // Install (jars, doc, sources):
-        // JAVA_MAIN_CLASS
-    }
+            final List<MavenProject> mavenProjects, final StringBuilder sb) {
+        final Set<Path> sourceDirectories = new LinkedHashSet<>(
+                mavenProjects.size() * 2);
+        final Set<Path> resourceDirectories = new LinkedHashSet<>(
+                mavenProjects.size() * 2);
+        final Set<Path> testSourceDirectories = new LinkedHashSet<>(
+                mavenProjects.size() * 2);
+        final Set<Path> testResourceDirectories = new LinkedHashSet<>(
+                mavenProjects.size() * 2);
+        final Set<String> extraJars = new LinkedHashSet<>(2);
+        String sourceEncoding = null;
+        MavenProject mainProject = null;
 
-    /**
-     * Writes package information.
-     *
-     * @param config       application configuration
-     * @param mavenProject maven project instance
-     * @param writer       ebuild writer
-     */
-    private void writePackageInfo(final Config config,
-            final MavenProject mavenProject, final PrintWriter writer) {
-        writer.println();
+        for (final MavenProject mavenProject : mavenProjects) {
+            // modules without sources can still have resources and tests
+            if (mavenProject.getSourceDirectory() != null
+                    && mavenProject.getSourceDirectory().toFile().
+                            isDirectory()) {
+                sourceDirectories.add(mavenProject.getSourceDirectory());
+            }
 
-        writer.print("DESCRIPTION=\"");
+            resourceDirectories.addAll(
+                    mavenProject.getResourceDirectories());
 
-        if (mavenProject.getDescription() != null) {
-            writer.print(mavenProject.getDescription().replace("\"", "\\\""));
-        } else {
-            writer.print(defaultDescription);
+            if (mavenProject.hasTests()) {
+                testSourceDirectories.add(
+                        mavenProject.getTestSourceDirectory());
+                testResourceDirectories.addAll(
+                        mavenProject.getTestResourceDirectories());
+            }
+
+            if (mavenProject.getSourceEncoding() != null) {
+                if (sourceEncoding != null && !sourceEncoding.equals(
+                        mavenProject.getSourceEncoding())) {
+                    config.getStdoutWriter().println("Source encoding "
+                            + sourceEncoding + " is overridden by "
+                            + mavenProject.getSourceEncoding() + " of "
+                            + mavenProject.getPomFile());
+                }
+
+                sourceEncoding = mavenProject.getSourceEncoding();
+            }
+
+            if (mavenProject.getMainClass() != null) {
+                if (mainProject != null) {
+                    config.getStdoutWriter().println("Main class "
+                            + mainProject.getMainClass() + " of "
+                            + mainProject.getPomFile() + " is overridden by "
+                            + mavenProject.getMainClass() + " of "
+                            + mavenProject.getPomFile());
+                }
+
+                mainProject = mavenProject;
+            }
+
+            extraJars.add(mavenProject.getExtraJars(
+                    config.getStdoutWriter()));
         }
 
-        writer.println('"');
+        if (sourceEncoding != null && !"UTF-8".equals(sourceEncoding)) {
+            sb.append("JAVA_ENCODING=\"");
+            sb.append(sourceEncoding);
+            sb.append("\"\n\n");
+        }
 
-        writer.print("HOMEPAGE=\"");
+        final Set<String> classPath = getClassPathEntries(mavenProjects,
+                MavenProject::getCommonDependencies,
+                MavenProject::getRuntimeDependencies);
 
-        if (mavenProject.getHomepage() != null) {
-            writer.print(mavenProject.getHomepage());
-        } else {
-            writer.print(defaultHomepage);
+        if (!classPath.isEmpty()) {
+            sb.append("JAVA_GENTOO_CLASSPATH=\"");
+            sb.append(String.join(",", classPath));
+            sb.append("\"\n");
         }
 
-        writer.println('"');
+        final Set<String> classPathExtra = getClassPathEntries(mavenProjects,
+                MavenProject::getCompileDependencies);
+        // a package that other module needs at runtime is already on the
+        // compile classpath
+        classPathExtra.removeAll(classPath);
 
-        writer.print("SRC_URI=\"");
-        writer.print(improveSrcUri(
-                replaceWithVars(config.getDownloadUri().toString(), config)));
-        if (config.hasBinjarUri()) {
-            writer.print("\n\t" + improveBinjarUri(
-                    replaceWithVars(config.getBinjarUri().toString(), config)));
+        if (!classPathExtra.isEmpty()) {
+            sb.append("JAVA_CLASSPATH_EXTRA=\"");
+            sb.append(String.join(",", classPathExtra));
+            sb.append("\"\n");
         }
-        if (config.hasTestSrcUri()) {
-            writer.print("\n\t" + improveTestSrcUri(
-                    replaceWithVars(config.getTestSrcUri().toString(), config)));
+
+        extraJars.forEach(sb::append);
+
+        writeDirectories(config, "JAVA_SRC_DIR", sourceDirectories, sb);
+
+        if (mainProject != null) {
+            sb.append("JAVA_MAIN_CLASS=\"");
+            sb.append(mainProject.getMainClass());
+            sb.append("\"\n");
         }
-        writer.println('"');
 
-        writer.print("LICENSE=\"");
+        if (!resourceDirectories.isEmpty()) {
+            writeDirectories(config, "JAVA_RESOURCE_DIRS", resourceDirectories,
+                    sb);
+        }
 
-        if (config.getLicense() != null) {
-            writer.print(config.getLicense());
-        } else {
-            writer.print(mavenProject.getLicenses());
+        if (config.hasBinjarUri()) {
+            sb.append("JAVA_BINJAR_FILENAME=\"${P}-bin.jar\"\n");
+        }
+
+        final Set<String> testClassPath = getClassPathEntries(mavenProjects,
+                MavenProject::getTestDependencies);
+
+        if (!testClassPath.isEmpty() || !testSourceDirectories.isEmpty()) {
+            sb.append('\n');
         }
 
-        writer.println('"');
+        if (!testClassPath.isEmpty()) {
+            sb.append("JAVA_TEST_GENTOO_CLASSPATH=\"");
+            sb.append(String.join(",", testClassPath));
+            sb.append("\"\n");
+        }
 
-        writer.print("SLOT=\"");
-        writer.print(config.getSlot());
-        writer.println('"');
+        if (!testSourceDirectories.isEmpty()) {
+            writeDirectories(config, "JAVA_TEST_SRC_DIR",
+                    testSourceDirectories, sb);
 
-        writer.print("KEYWORDS=\"");
-        writer.print(config.getKeywords());
-        writer.println('"');
+            if (!testResourceDirectories.isEmpty()) {
+                writeDirectories(config, "JAVA_TEST_RESOURCE_DIRS",
+                        testResourceDirectories, sb);
+            }
+        }
     }
 
     /**
@@ -838,15 +1150,15 @@ public class MavenEbuilder {
      *
      * @param config        application configuration
      * @param mavenProjects list of maven projects
-     * @param writer        ebuild writer
+     * @param sb            string builder
      */
     private void writeScript(final Config config,
             final List<MavenProject> mavenProjects,
-            final PrintWriter writer) {
+            final StringBuilder sb) {
         if (mavenProjects.size() == 1) {
-            writeSingleProjectScript(config, mavenProjects.get(0), writer);
+            writeSingleProjectScript(config, mavenProjects.get(0), sb);
         } else {
-            writeMultipleProjectsScript(config, mavenProjects, writer);
+            writeMultipleProjectsScript(config, mavenProjects, sb);
         }
     }
 
@@ -855,16 +1167,14 @@ public class MavenEbuilder {
      *
      * @param config       application configuration
      * @param mavenProject maven project
-     * @param writer       ebuild writer
+     * @param sb           string builder
      */
     private void writeSingleProjectScript(final Config config,
-            final MavenProject mavenProject, final PrintWriter writer) {
-        writer.println();
-
+            final MavenProject mavenProject, final StringBuilder sb) {
         if (!"UTF-8".equals(mavenProject.getSourceEncoding())) {
-            writer.print("JAVA_ENCODING=\"");
-            writer.print(mavenProject.getSourceEncoding());
-            writer.println("\"\n");
+            sb.append("JAVA_ENCODING=\"");
+            sb.append(mavenProject.getSourceEncoding());
+            sb.append("\"\n\n");
         }
 
         if (!mavenProject.getCommonDependencies().isEmpty()
@@ -876,94 +1186,171 @@ public class MavenEbuilder {
             dependencies.addAll(mavenProject.getCommonDependencies());
             dependencies.addAll(mavenProject.getRuntimeDependencies());
 
-            writer.print("JAVA_GENTOO_CLASSPATH=\"");
-            writer.print(createClassPath(dependencies));
-            writer.println('"');
+            sb.append("JAVA_GENTOO_CLASSPATH=\"");
+            sb.append(createClassPath(dependencies));
+            sb.append("\"\n");
         }
 
         if (!mavenProject.getCompileDependencies().isEmpty()) {
-            writer.print("JAVA_CLASSPATH_EXTRA=\"");
-            writer.print(createClassPath(mavenProject.getCompileDependencies()));
-            writer.println('"');
+            sb.append("JAVA_CLASSPATH_EXTRA=\"");
+            sb.append(createClassPath(mavenProject.getCompileDependencies()));
+            sb.append("\"\n");
         }
 
-        writer.print(mavenProject.getExtraJars(config.getStdoutWriter()));
+        sb.append(mavenProject.getExtraJars(config.getStdoutWriter()));
 
-        writer.print("JAVA_SRC_DIR=\"");
-        writer.print(replaceWithVars(config.getWorkdir().relativize(
+        sb.append("JAVA_SRC_DIR=\"");
+        sb.append(replaceWithVars(config.getWorkdir().relativize(
                 mavenProject.getSourceDirectory()).toString(), config));
-        writer.println('"');
+        sb.append("\"\n");
 
         if (mavenProject.getMainClass() != null) {
-            writer.print("JAVA_MAIN_CLASS=\"");
-            writer.print(mavenProject.getMainClass());
-            writer.println('"');
+            sb.append("JAVA_MAIN_CLASS=\"");
+            sb.append(mavenProject.getMainClass());
+            sb.append("\"\n");
         }
 
         if (mavenProject.hasResources()) {
-            writer.println("JAVA_RESOURCE_DIRS=(");
+            sb.append("JAVA_RESOURCE_DIRS=(\n");
 
             mavenProject.getResourceDirectories().forEach((directory) -> {
-                writer.print("\t\"");
-                writer.print(replaceWithVars(
+                sb.append("\t\"");
+                sb.append(replaceWithVars(
                         config.getWorkdir().relativize(directory).toString(),
                         config));
-                writer.println('"');
+                sb.append("\"\n");
             });
 
-            writer.println(')');
+            sb.append(")\n");
         }
 
         if (config.hasBinjarUri()) {
-            writer.println("JAVA_BINJAR_FILENAME=\"${P}-bin.jar\"");
+            sb.append("JAVA_BINJAR_FILENAME=\"${P}-bin.jar\"\n");
         }
 
         boolean firstTestVar = true;
 
         if (!mavenProject.getTestDependencies().isEmpty()) {
             if (firstTestVar) {
-                writer.println();
+                sb.append('\n');
                 firstTestVar = false;
             }
 
-            writer.print("JAVA_TEST_GENTOO_CLASSPATH=\"");
-            writer.print(createClassPath(mavenProject.getTestDependencies()));
-            writer.println('"');
+            sb.append("JAVA_TEST_GENTOO_CLASSPATH=\"");
+            sb.append(createClassPath(mavenProject.getTestDependencies()));
+            sb.append("\"\n");
         }
 
         if (mavenProject.hasTests()) {
             if (firstTestVar) {
-                writer.println();
+                sb.append('\n');
             }
 
-            writer.print("JAVA_TEST_SRC_DIR=\"");
-            writer.print(replaceWithVars(config.getWorkdir().relativize(
+            sb.append("JAVA_TEST_SRC_DIR=\"");
+            sb.append(replaceWithVars(config.getWorkdir().relativize(
                     mavenProject.getTestSourceDirectory()).toString(), config));
-            writer.println('"');
+            sb.append("\"\n");
 
             if (mavenProject.hasTestResources()) {
-                writer.println("JAVA_TEST_RESOURCE_DIRS=(");
+                sb.append("JAVA_TEST_RESOURCE_DIRS=(\n");
 
                 mavenProject.getTestResourceDirectories().
                         forEach((directory) -> {
-                            writer.print("\t\"");
-                            writer.print(replaceWithVars(config.getWorkdir().
+                            sb.append("\t\"");
+                            sb.append(replaceWithVars(config.getWorkdir().
                                     relativize(directory).toString(), config));
-                            writer.println('"');
+                            sb.append("\"\n");
                         });
 
-                writer.println(')');
+                sb.append(")\n");
             }
         }
     }
 
     /**
-     * Writes S directory.
-     *
-     * @param writer ebuild writer
+     * Read-only data needed for rendering of single ebuild. Values derived
+     * from the projects are computed once when the context is created, so
+     * template slots do not walk the projects repeatedly. Every rendering
+     * uses its own context.
      */
-    private void writeSourceDir(final PrintWriter writer) {
-        writer.println();
-        writer.println("S=\"${WORKDIR}\"");
+    private static final class RenderContext {
+
+        /**
+         * Merged common system dependencies.
+         */
+        private final List<String> commonDependencies;
+        /**
+         * Merged compile system dependencies.
+         */
+        private final List<String> compileDependencies;
+        /**
+         * Application configuration.
+         */
+        private final Config config;
+        /**
+         * Whether any of the projects has tests.
+         */
+        private final boolean hasTests;
+        /**
+         * Maven project the package information is taken from.
+         */
+        private final MavenProject mavenProject;
+        /**
+         * List of maven projects.
+         */
+        private final List<MavenProject> mavenProjects;
+        /**
+         * Minimum source version of the projects.
+         */
+        private final JavaVersion minSourceVersion;
+        /**
+         * Minimum target version of the projects.
+         */
+        private final JavaVersion minTargetVersion;
+        /**
+         * Merged runtime system dependencies.
+         */
+        private final List<String> runtimeDependencies;
+        /**
+         * Merged test system dependencies without testing frameworks.
+         */
+        private final List<String> testDependencies;
+        /**
+         * Testing framework names or null.
+         */
+        private final String testingFramework;
+
+        /**
+         * Creates new instance of RenderContext.
+         *
+         * @param config        {@link #config}
+         * @param mavenProjects {@link #mavenProjects}
+         */
+        RenderContext(final Config config,
+                final List<MavenProject> mavenProjects) {
+            this.config = config;
+            this.mavenProjects = Collections.unmodifiableList(
+                    new ArrayList<>(mavenProjects));
+
+            /**
+             * Write the info from the last project as it is probably the one
+             * that depends on the rest.
+             */
+            mavenProject = mavenProjects.get(mavenProjects.size() - 1);
+            commonDependencies = mergeSystemDependencies(mavenProjects,
+                    "common");
+            compileDependencies = mergeSystemDependencies(mavenProjects,
+                    "compile");
+            runtimeDependencies = mergeSystemDependencies(mavenProjects,
+                    "runtime");
+            testDependencies = mergeSystemDependencies(mavenProjects, "test");
+            hasTests = mavenProjects.stream().anyMatch(MavenProject::hasTests);
+            minSourceVersion = getMinSourceVersion(mavenProjects,
+                    config.getForceMinJavaVersion());
+            minTargetVersion = getMinTargetVersion(mavenProjects,
+                    config.getForceMinJavaVersion());
+            testingFramework = determineTestingFramework(mavenProjects,
+                    config);
+        }
     }
 }
@@ -1,22 +1,31 @@
 package org.gentoo.java.ebuilder.maven;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import javax.xml.stream.FactoryConfigurationError;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import org.gentoo.java.ebuilder.Config;
-import org.gentoo.java.ebuilder.maven.MavenLicenses;
+import org.gentoo.java.ebuilder.ProcessScheduler;
 
 /**
  * Parser for parsing pom.xml into project collector class.
@@ -26,7 +35,46 @@ import org.gentoo.java.ebuilder.maven.MavenLicenses;
 public class MavenParser {
 
     /**
-     * Parses specified pom.xml files.
+     * Factory for XML stream readers. Looking the factory up is expensive, so
+     * single instance is shared, but it is not guaranteed to be thread safe
+     * so it must be used synchronized.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY
+            = XMLInputFactory.newInstance();
+    /**
+     * License mapping, loaded once and shared by all parsers, so that
+     * long-running processes do not load it for every request.
+     */
+    private static final MavenLicenses MAVEN_LICENSES = new MavenLicenses();
+    /**
+     * Scheduler of mvn processes shared by all calls of
+     * {@link #parsePomFiles(Config, MavenCache)}, or null if each call uses
+     * its own scheduler.
+     */
+    private final ProcessScheduler sharedProcessScheduler;
+
+    /**
+     * Creates new instance of MavenParser that uses new process scheduler
+     * for each call of {@link #parsePomFiles(Config, MavenCache)}.
+     */
+    public MavenParser() {
+        this(null);
+    }
+
+    /**
+     * Creates new instance of MavenParser.
+     *
+     * @param sharedProcessScheduler {@link #sharedProcessScheduler}
+     */
+    public MavenParser(final ProcessScheduler sharedProcessScheduler) {
+        this.sharedProcessScheduler = sharedProcessScheduler;
+    }
+
+    /**
+     * Parses specified pom.xml files. If more than one job is configured, the
+     * pom files are processed concurrently. The output of each pom file is
+     * buffered and written in the order of the pom files, and so are the
+     * returned projects.
      *
      * @param config     application configuration
      * @param mavenCache maven cache
@@ -35,148 +83,675 @@ public class MavenParser {
      */
     public List<MavenProject> parsePomFiles(final Config config,
             final MavenCache mavenCache) {
-        final List<MavenProject> result
-                = new ArrayList<>(config.getPomFiles().size());
+        final List<Path> pomFiles = config.getPomFiles();
+        final EffectivePomBuilder effectivePomBuilder
+                = new EffectivePomBuilder(config, new BomIndex(
+                        config.getPomCacheSize() == 0 ? null
+                        : config.getPomCacheDir().resolve("bom-index")));
+        final EffectivePomCache effectivePomCache
+                = config.getPomCacheSize() == 0 ? null : new EffectivePomCache(
+                        config.getPomCacheDir(), config.getPomCacheSize());
+        final ProcessScheduler processScheduler
+                = sharedProcessScheduler == null
+                ? new ProcessScheduler(config) : sharedProcessScheduler;
+        final ExecutorService executor = config.getJobs() > 1
+                && pomFiles.size() > 1 ? Executors.newFixedThreadPool(
+                        Math.min(config.getJobs(), pomFiles.size())) : null;
+        final byte[][] effectivePoms = new byte[pomFiles.size()][];
+        final String[] cacheKeys = new String[pomFiles.size()];
+        final boolean[] rawPoms = new boolean[pomFiles.size()];
 
-        config.getPomFiles().stream().forEach((pomFile) -> {
-            final File effectivePom = getEffectivePom(config, pomFile);
+        try {
+            runInOrder(config, executor, pomFiles.size(), (index, output) -> {
+                if (!config.isForceMvn()) {
+                    effectivePoms[index] = getSufficientRawPom(config,
+                            pomFiles.get(index));
+
+                    if (effectivePoms[index] != null) {
+                        output.println("Using raw pom for "
+                                + pomFiles.get(index)
+                                + ", effective pom is not needed");
+                        rawPoms[index] = true;
+
+                        return null;
+                    }
+                }
+
+                final String cacheKey = getCacheKey(config,
+                        effectivePomBuilder, effectivePomCache,
+                        pomFiles.get(index));
+                effectivePoms[index] = getCachedEffectivePom(config, output,
+                        effectivePomCache, cacheKey, pomFiles.get(index));
+
+                if (effectivePoms[index] == null) {
+                    cacheKeys[index] = cacheKey;
+                    effectivePoms[index] = buildEffectivePom(config, output,
+                            effectivePomBuilder, pomFiles.get(index));
+                }
+
+                return null;
+            });
 
-            final MavenProject mavenProject = parsePom(config, mavenCache,
-                    pomFile, effectivePom);
+            final List<Path> mvnPomFiles = new ArrayList<>(pomFiles.size());
 
-            // TODO: I suppose they should go to "POJO" tests
-            if (mavenProject.hasTests()
-                    && mavenProject.getTestDependencies().isEmpty()) {
-                mavenProject.addDependency(new MavenDependency(
-                        "junit", "junit", "4.11", "test",
-                        mavenCache.getDependency("junit", "junit", "4.11")));
+            for (int i = 0; i < pomFiles.size(); i++) {
+                if (effectivePoms[i] == null) {
+                    mvnPomFiles.add(pomFiles.get(i));
+                }
             }
 
-            if (config.hasTestSrcUri()) {
-                mavenProject.setHasTests(true);
+            final Map<Path, byte[]> reactorEffectivePoms
+                    = mvnPomFiles.size() > 1 ? getEffectivePomsUsingReactor(
+                            config, effectivePomBuilder, processScheduler,
+                            mvnPomFiles) : Collections.emptyMap();
+
+            final List<MavenProject> result = runInOrder(config, executor,
+                    pomFiles.size(), (index, output) -> {
+                        final Path pomFile = pomFiles.get(index);
+                        byte[] effectivePom = effectivePoms[index];
+
+                        if (effectivePom == null) {
+                            effectivePom = reactorEffectivePoms.get(pomFile);
+                        }
+
+                        if (effectivePom == null) {
+                            effectivePom = getEffectivePomUsingMvn(config,
+                                    output, processScheduler, pomFile);
+                        }
+
+                        if (cacheKeys[index] != null) {
+                            storeEffectivePom(config, effectivePomCache,
+                                    cacheKeys[index], effectivePom);
+                        }
+
+                        final MavenProject mavenProject = parsePom(config,
+                                output, mavenCache, pomFile, effectivePom);
+
+                        if (rawPoms[index]) {
+                            setDefaultDirectories(mavenProject, config.
+                                    getWorkdir().resolve(pomFile).
+                                    toAbsolutePath().normalize().getParent());
+                        }
+
+                        // TODO: I suppose they should go to "POJO" tests
+                        if (mavenProject.hasTests() && mavenProject.
+                                getTestDependencies().isEmpty()) {
+                            mavenProject.addDependency(new MavenDependency(
+                                    "junit", "junit", "4.11", "test",
+                                    mavenCache.getDependency("junit", "junit",
+                                            "4.11")));
+                        }
+
+                        if (config.hasTestSrcUri()) {
+                            mavenProject.setHasTests(true);
+                        }
+
+                        if (config.willSkipTests()) {
+                            mavenProject.setHasTests(false);
+                        }
+
+                        return mavenProject;
+                    });
+
+            if (result.size() > 1) {
+                excludeReactorDependencies(config, result);
             }
 
-            if (config.willSkipTests()) {
-                mavenProject.setHasTests(false);
+            if (effectivePomCache != null) {
+                try {
+                    effectivePomCache.trim();
+                } catch (final IOException ex) {
+                    config.getErrorWriter().println("WARNING: Failed to trim "
+                            + "effective pom cache: " + ex.getMessage());
+                }
+
+                config.getStdoutWriter().println("Effective pom cache: "
+                        + effectivePomCache.getHits() + " hits, "
+                        + effectivePomCache.getMisses() + " misses, "
+                        + effectivePomCache.getEvictions() + " evictions");
             }
 
-            result.add(mavenProject);
-        });
+            if (sharedProcessScheduler == null) {
+                processScheduler.printSummary(config.getStdoutWriter());
+            }
 
-        return result;
+            return result;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
     }
 
     /**
-     * Consumes current element.
+     * Builds effective pom in process.
      *
-     * @param reader XML stream reader
+     * @param config              application configuration
+     * @param output              writer for progress output
+     * @param effectivePomBuilder effective pom builder
+     * @param pomFile             path to pom.xml file that should be processed
      *
-     * @throws XMLStreamException Thrown if problem occurred while parsing the
-     *                            element.
+     * @return effective pom or null if it has to be retrieved using mvn
      */
-    private void consumeElement(final XMLStreamReader reader)
+    private byte[] buildEffectivePom(final Config config,
+            final PrintWriter output,
+            final EffectivePomBuilder effectivePomBuilder, final Path pomFile) {
+        if (config.isForceMvn()) {
+            return null;
+        }
+
+        output.print("Building effective pom for " + pomFile + "...");
+
+        try {
+            final byte[] result = effectivePomBuilder.build(
+                    config.getWorkdir().resolve(pomFile));
+            output.println("done");
+
+            return result;
+        } catch (final UnsupportedPomException ex) {
+            output.println("not supported (" + ex.getMessage()
+                    + "), falling back to mvn");
+
+            return null;
+        }
+    }
+
+    /**
+     * Creates pom reader using the scanner selected in configuration. Poms
+     * that are not encoded in UTF-8 or that contain DOCTYPE are always read
+     * using StAX.
+     *
+     * @param config application configuration
+     * @param pom    pom content
+     *
+     * @return pom reader
+     *
+     * @throws XMLStreamException Thrown if the reader could not be created.
+     */
+    private static PomReader createPomReader(final Config config,
+            final byte[] pom) throws XMLStreamException {
+        if (Config.POM_SCANNER_BYTES.equals(config.getPomScanner())
+                && BytePomReader.isSupported(pom)) {
+            return new BytePomReader(pom);
+        }
+
+        return new StaxPomReader(createXmlStreamReader(pom));
+    }
+
+    /**
+     * Creates XML stream reader using shared {@link #XML_INPUT_FACTORY}.
+     *
+     * @param content XML content
+     *
+     * @return XML stream reader
+     *
+     * @throws XMLStreamException Thrown if the reader could not be created.
+     */
+    private static XMLStreamReader createXmlStreamReader(final byte[] content)
             throws XMLStreamException {
-        while (reader.hasNext()) {
-            reader.next();
+        synchronized (XML_INPUT_FACTORY) {
+            return XML_INPUT_FACTORY.createXMLStreamReader(
+                    new ByteArrayInputStream(content));
+        }
+    }
 
-            if (reader.isStartElement()) {
-                consumeElement(reader);
-            } else if (reader.isEndElement()) {
-                return;
+    /**
+     * Removes dependencies between the projects, as all the projects are
+     * built within single ebuild.
+     *
+     * @param config        application configuration
+     * @param mavenProjects list of maven projects
+     */
+    private static void excludeReactorDependencies(final Config config,
+            final List<MavenProject> mavenProjects) {
+        final Set<String> artifacts = new HashSet<>(mavenProjects.size() * 2);
+
+        for (final MavenProject mavenProject : mavenProjects) {
+            artifacts.add(mavenProject.getGroupId() + ':'
+                    + mavenProject.getArtifactId());
+        }
+
+        for (final MavenProject mavenProject : mavenProjects) {
+            if (mavenProject.excludeDependencies(artifacts)) {
+                config.getStdoutWriter().println("Dependencies of "
+                        + mavenProject.getPomFile() + " on other projects "
+                        + "are built within the ebuild");
             }
         }
     }
 
     /**
-     * Stores effective pom to file and returns the file.
+     * Computes cache key of effective pom.
      *
-     * @param config  application configuration
-     * @param pomFile path to pom.xml file that should be processed
+     * @param config              application configuration
+     * @param effectivePomBuilder effective pom builder
+     * @param effectivePomCache   effective pom cache or null if the cache is
+     *                            disabled
+     * @param pomFile             path to pom.xml file
      *
-     * @return path to effective pom
+     * @return cache key or null if the cache is not used
      */
-    private File getEffectivePom(final Config config, final Path pomFile) {
-        final File outputPath;
+    private String getCacheKey(final Config config,
+            final EffectivePomBuilder effectivePomBuilder,
+            final EffectivePomCache effectivePomCache, final Path pomFile) {
+        if (effectivePomCache == null) {
+            return null;
+        }
+
+        final Path fullPath = config.getWorkdir().resolve(pomFile).
+                toAbsolutePath().normalize();
 
         try {
-            outputPath = File.createTempFile("pom", ".xml");
+            return effectivePomCache.computeKey(
+                    config.isForceMvn() ? "mvn" : "auto", fullPath,
+                    effectivePomBuilder.getLineage(fullPath));
         } catch (final IOException ex) {
-            throw new RuntimeException("Failed to create temporary file for "
-                    + "effective pom", ex);
+            config.getErrorWriter().println("WARNING: Failed to compute "
+                    + "effective pom cache key: " + ex.getMessage());
+
+            return null;
         }
+    }
 
-        config.getStdoutWriter().print("Retrieving effective pom for "
-                + pomFile + " into " + outputPath + "...");
+    /**
+     * Returns effective pom from the cache.
+     *
+     * @param config            application configuration
+     * @param output            writer for progress output
+     * @param effectivePomCache effective pom cache or null if the cache is
+     *                          disabled
+     * @param cacheKey          cache key or null if the cache is not used
+     * @param pomFile           path to pom.xml file that should be processed
+     *
+     * @return effective pom or null if it is not cached
+     */
+    private byte[] getCachedEffectivePom(final Config config,
+            final PrintWriter output,
+            final EffectivePomCache effectivePomCache, final String cacheKey,
+            final Path pomFile) {
+        if (cacheKey == null) {
+            return null;
+        }
 
-        final ProcessBuilder processBuilder = new ProcessBuilder("mvn", "-f",
-                pomFile.toString(), "help:effective-pom",
-                "-Doutput=" + outputPath);
-        processBuilder.directory(config.getWorkdir().toFile());
-        final ProcessBuilder xmlBuilder = new ProcessBuilder("simple-xml-formatter",
-                "" + outputPath);
-        xmlBuilder.directory(config.getWorkdir().toFile());
+        try {
+            final byte[] result = effectivePomCache.get(cacheKey);
 
-        final Process process;
+            if (result != null) {
+                output.println("Using cached effective pom for " + pomFile);
+            }
+
+            return result;
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to read "
+                    + "effective pom cache: " + ex.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves effective poms of multiple pom files using single mvn run. An
+     * aggregator pom listing the pom files as modules is created in the work
+     * directory and the resulting effective pom is split by project
+     * coordinates. Pom files whose coordinates cannot be determined from the
+     * pom file, or are not unique, are not included. If the aggregator pom
+     * cannot be created, for example because the work directory is read-only,
+     * no effective pom is retrieved.
+     *
+     * @param config              application configuration
+     * @param effectivePomBuilder effective pom builder
+     * @param processScheduler    scheduler of mvn processes
+     * @param pomFiles            paths to pom.xml files that should be
+     *                            processed
+     *
+     * @return map of pom files and corresponding effective poms, empty if the
+     *         reactor run failed
+     */
+    private Map<Path, byte[]> getEffectivePomsUsingReactor(final Config config,
+            final EffectivePomBuilder effectivePomBuilder,
+            final ProcessScheduler processScheduler,
+            final List<Path> pomFiles) {
+        final Map<String, Path> modules = new LinkedHashMap<>(
+                pomFiles.size() * 2);
+        final Set<String> duplicates = new HashSet<>(2);
+
+        for (final Path pomFile : pomFiles) {
+            final String coordinates = effectivePomBuilder.getCoordinates(
+                    config.getWorkdir().resolve(pomFile));
+
+            if (coordinates != null
+                    && modules.put(coordinates, pomFile) != null) {
+                duplicates.add(coordinates);
+            }
+        }
+
+        modules.keySet().removeAll(duplicates);
+
+        if (modules.size() < 2) {
+            return Collections.emptyMap();
+        }
+
+        final StringBuilder sbAggregator = new StringBuilder(500);
+        sbAggregator.append("<project xmlns=\"http://maven.apache.org/POM/"
+                + "4.0.0\">\n  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>java-ebuilder</groupId>\n"
+                + "  <artifactId>java-ebuilder-reactor</artifactId>\n"
+                + "  <version>0</version>\n  <packaging>pom</packaging>\n"
+                + "  <modules>\n");
+
+        // modules are resolved against directory of the aggregator pom
+        final Path aggregatorDir = config.getWorkdir().toAbsolutePath();
+
+        modules.values().stream().forEach((pomFile) -> {
+            sbAggregator.append("    <module>");
+            sbAggregator.append(aggregatorDir.relativize(aggregatorDir.resolve(
+                    pomFile).normalize()).toString().replace("&", "&amp;").
+                    replace("<", "&lt;"));
+            sbAggregator.append("</module>\n");
+        });
+
+        sbAggregator.append("  </modules>\n</project>\n");
+
+        final Path aggregatorFile;
 
         try {
-            process = processBuilder.start();
+            aggregatorFile = Files.createTempFile(aggregatorDir,
+                    "java-ebuilder-reactor", ".xml");
         } catch (final IOException ex) {
-            throw new RuntimeException("Failed to run mvn command", ex);
+            config.getErrorWriter().println("WARNING: Failed to create "
+                    + "aggregator pom in " + aggregatorDir + " ("
+                    + ex.getMessage() + "), falling back to separate mvn "
+                    + "runs");
+
+            return Collections.emptyMap();
         }
 
+        final Map<String, byte[]> projects;
+
         try {
-            process.waitFor(10, TimeUnit.MINUTES);
-        } catch (final InterruptedException ex) {
-            config.getErrorWriter().println("ERROR: mvn process did not finish "
-                    + "within 10 minute, exiting.");
-            Runtime.getRuntime().exit(1);
+            Files.write(aggregatorFile, sbAggregator.toString().getBytes(
+                    StandardCharsets.UTF_8));
+
+            final byte[] effectivePoms = runMvn(config,
+                    config.getStdoutWriter(), processScheduler,
+                    aggregatorDir.relativize(aggregatorFile),
+                    modules.size() + " modules", false);
+
+            if (effectivePoms == null) {
+                config.getStdoutWriter().println("Reactor run failed, falling "
+                        + "back to separate mvn runs");
+
+                return Collections.emptyMap();
+            }
+
+            projects = effectivePomBuilder.splitEffectivePoms(effectivePoms);
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to write "
+                    + "aggregator pom " + aggregatorFile + " ("
+                    + ex.getMessage() + "), falling back to separate mvn "
+                    + "runs");
+
+            return Collections.emptyMap();
+        } catch (final UnsupportedPomException ex) {
+            config.getStdoutWriter().println("Cannot split reactor effective "
+                    + "pom (" + ex.getMessage() + "), falling back to separate "
+                    + "mvn runs");
+
+            return Collections.emptyMap();
+        } finally {
+            try {
+                Files.deleteIfExists(aggregatorFile);
+            } catch (final IOException ex) {
+                config.getErrorWriter().println("WARNING: Failed to delete "
+                        + aggregatorFile + ": " + ex.getMessage());
+            }
         }
 
-        final Process xmlProcess;
+        final Map<Path, byte[]> result = new HashMap<>(modules.size() * 2);
+
+        modules.entrySet().stream().forEach((entry) -> {
+            final byte[] effectivePom = projects.get(entry.getKey());
+
+            if (effectivePom != null) {
+                result.put(entry.getValue(), effectivePom);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Retrieves effective pom using mvn.
+     *
+     * @param config           application configuration
+     * @param output           writer for progress output
+     * @param processScheduler scheduler of mvn processes
+     * @param pomFile          path to pom.xml file that should be processed
+     *
+     * @return effective pom
+     */
+    private byte[] getEffectivePomUsingMvn(final Config config,
+            final PrintWriter output, final ProcessScheduler processScheduler,
+            final Path pomFile) {
+        return runMvn(config, output, processScheduler, pomFile,
+                pomFile.toString(), true);
+    }
+
+    /**
+     * Reads raw pom and checks whether it can be parsed directly, because
+     * effective pom would not differ in any element that is parsed.
+     *
+     * @param config  application configuration
+     * @param pomFile path to pom.xml file
+     *
+     * @return raw pom or null if effective pom is needed
+     *
+     * @see #isRawPomSufficient(byte[])
+     */
+    private byte[] getSufficientRawPom(final Config config,
+            final Path pomFile) {
+        final byte[] result;
+
+        try {
+            result = Files.readAllBytes(config.getWorkdir().resolve(pomFile));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read " + pomFile, ex);
+        }
+
+        return isRawPomSufficient(result) ? result : null;
+    }
+
+    /**
+     * Checks whether raw pom can be parsed instead of effective pom. That is
+     * the case if the pom has no parent, modules, profiles, dependency
+     * management or plugin management, does not contain any expressions,
+     * declares its own coordinates and versions of all dependencies, has no
+     * values with surrounding whitespace, and does not override default
+     * source and resource directories, which are set using
+     * {@link #setDefaultDirectories(MavenProject, Path)}.
+     *
+     * @param rawPom raw pom
+     *
+     * @return true if raw pom can be parsed, otherwise false
+     */
+    private boolean isRawPomSufficient(final byte[] rawPom) {
+        for (int i = 0; i < rawPom.length - 1; i++) {
+            if (rawPom[i] == '$' && rawPom[i + 1] == '{') {
+                return false;
+            }
+        }
+
+        final XMLStreamReader reader;
+
         try {
-            xmlProcess = xmlBuilder.start();
-            xmlProcess.waitFor(10, TimeUnit.MINUTES);
-        } catch (final IOException | InterruptedException ex) {
-            config.getStdoutWriter().print("");
-            //config.getStdoutWriter().println('\n' + ex.toString());
+            reader = createXmlStreamReader(rawPom);
+        } catch (final XMLStreamException ex) {
+            return false;
         }
 
-        if (process.exitValue() != 0) {
-            config.getErrorWriter().println(
-                    "ERROR: Failed to run mvn command:");
+        final List<String> elements = new ArrayList<>(10);
+        final Set<String> projectChildren = new HashSet<>(20);
+        final Set<String> dependencyChildren = new HashSet<>(5);
+        final StringBuilder sbText = new StringBuilder(100);
+        boolean leaf = false;
+
+        try {
+            while (reader.hasNext()) {
+                reader.next();
+
+                if (reader.isStartElement()) {
+                    final String name = reader.getLocalName();
+                    elements.add(name);
+                    sbText.setLength(0);
+                    leaf = true;
+
+                    final String path = String.join("/", elements);
+
+                    switch (path) {
+                        case "project/parent":
+                        case "project/modules":
+                        case "project/profiles":
+                        case "project/dependencyManagement":
+                        case "project/build/pluginManagement":
+                        case "project/build/sourceDirectory":
+                        case "project/build/testSourceDirectory":
+                        case "project/build/resources":
+                        case "project/build/testResources":
+                            return false;
+                        case "project/dependencies/dependency":
+                            dependencyChildren.clear();
+                            break;
+                        default:
+                            if (elements.size() == 1 && !"project".equals(
+                                    name)) {
+                                return false;
+                            } else if (elements.size() == 2) {
+                                projectChildren.add(name);
+                            } else if (elements.size() == 4 && path.
+                                    startsWith("project/dependencies/"
+                                            + "dependency/")) {
+                                dependencyChildren.add(name);
+                            }
+                    }
+                } else if (reader.isCharacters()) {
+                    sbText.append(reader.getText());
+                } else if (reader.isEndElement()) {
+                    /* maven trims values, raw values are not trimmed */
+                    if (leaf && sbText.length() != sbText.toString().trim().
+                            length()) {
+                        return false;
+                    }
+
+                    leaf = false;
 
-            try (final BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(process.getErrorStream()))) {
-                String line = reader.readLine();
+                    if ("project/dependencies/dependency".equals(
+                            String.join("/", elements))
+                            && !dependencyChildren.containsAll(Arrays.asList(
+                                    "groupId", "artifactId", "version"))) {
+                        return false;
+                    }
 
-                while (line != null) {
-                    config.getErrorWriter().println(line);
-                    line = reader.readLine();
+                    elements.remove(elements.size() - 1);
                 }
-            } catch (final IOException ex) {
-                throw new RuntimeException(
-                        "Failed to read mvn command error output", ex);
+            }
+        } catch (final XMLStreamException ex) {
+            return false;
+        }
+
+        return projectChildren.containsAll(
+                Arrays.asList("groupId", "artifactId", "version"));
+    }
+
+    /**
+     * Runs mvn to retrieve effective pom. Maven is run quietly and writes the
+     * effective pom to its standard output, which is collected in memory,
+     * so no temporary files are created. Maven that does not finish within
+     * its timeout is terminated and treated as failed.
+     *
+     * @param config           application configuration
+     * @param output           writer for progress output
+     * @param processScheduler scheduler of mvn processes
+     * @param pomFile          path to pom.xml file that should be processed
+     * @param label            description of processed poms for progress
+     *                         output
+     * @param required         whether failure of mvn is fatal
+     *
+     * @return effective pom or null if mvn failed and it is not required
+     */
+    private byte[] runMvn(final Config config, final PrintWriter output,
+            final ProcessScheduler processScheduler, final Path pomFile,
+            final String label, final boolean required) {
+        output.print("Retrieving effective pom for " + label + "...");
+
+        final ProcessBuilder processBuilder = new ProcessBuilder("mvn", "-q",
+                "-B", "-f", pomFile.toString(), "help:effective-pom",
+                "-Doutput=/dev/stdout");
+        processBuilder.directory(config.getWorkdir().toFile());
+
+        final ProcessScheduler.Result processResult;
+
+        try {
+            processResult = processScheduler.run("mvn", processBuilder);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to run mvn command", ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException("Interrupted while waiting for mvn",
+                    ex);
+        }
+
+        final byte[] result = stripLeadingGarbage(processResult.getOutput());
+
+        if (processResult.isTimedOut() || processResult.getExitValue() != 0
+                || result.length == 0) {
+            final String message = processResult.isTimedOut()
+                    ? "mvn process did not finish within "
+                    + processScheduler.getTimeout("mvn")
+                    + " seconds and was terminated:"
+                    : "Failed to run mvn command:";
+
+            if (required) {
+                config.getErrorWriter().println("ERROR: " + message);
+            } else {
+                output.println("failed");
+                config.getErrorWriter().println("WARNING: " + message);
+            }
+
+            config.getErrorWriter().print(new String(
+                    processResult.getOutput(), StandardCharsets.UTF_8));
+            config.getErrorWriter().print(new String(
+                    processResult.getErrorOutput(), StandardCharsets.UTF_8));
+            config.getErrorWriter().flush();
+
+            if (required) {
+                if (config.isBatchEntry()) {
+                    throw new RuntimeException("Failed to retrieve effective "
+                            + "pom for " + label);
+                }
+
+                config.exit(1);
             }
 
-            Runtime.getRuntime().exit(1);
+            return null;
         }
 
-        config.getStdoutWriter().println("done");
+        output.println("done");
 
-        return outputPath;
+        return result;
     }
 
     /**
      * Parses build plugin.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseBuildPlugin(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         String artifactId = null;
 
         while (reader.hasNext()) {
@@ -192,7 +767,7 @@ public class MavenParser {
                                 artifactId);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -204,14 +779,14 @@ public class MavenParser {
      * Parses build plugin configuration.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      * @param artifactId   plugin artifact id
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseBuildPluginConfiguration(final MavenProject mavenProject,
-            final XMLStreamReader reader, final String artifactId)
+            final PomReader reader, final String artifactId)
             throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
@@ -223,7 +798,7 @@ public class MavenParser {
                             parseBuildPluginConfigurationArchive(mavenProject,
                                     reader);
                         } else {
-                            consumeElement(reader);
+                            reader.skipElement();
                         }
 
                         break;
@@ -232,7 +807,7 @@ public class MavenParser {
                             mavenProject.setSourceVersion(
                                     new JavaVersion(reader.getElementText()));
                         } else {
-                            consumeElement(reader);
+                            reader.skipElement();
                         }
 
                         break;
@@ -241,12 +816,12 @@ public class MavenParser {
                             mavenProject.setTargetVersion(
                                     new JavaVersion(reader.getElementText()));
                         } else {
-                            consumeElement(reader);
+                            reader.skipElement();
                         }
 
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -258,13 +833,13 @@ public class MavenParser {
      * Parses archive element of build plugin configuration.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseBuildPluginConfigurationArchive(
-            final MavenProject mavenProject, final XMLStreamReader reader)
+            final MavenProject mavenProject, final PomReader reader)
             throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
@@ -275,7 +850,7 @@ public class MavenParser {
                         parseManifest(mavenProject, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -287,13 +862,13 @@ public class MavenParser {
      * Parses build plugins and its sub-elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseBuildPlugins(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -303,8 +878,10 @@ public class MavenParser {
                         parseBuildPlugin(mavenProject, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
+            } else if (reader.isEndElement()) {
+                return;
             }
         }
     }
@@ -313,13 +890,13 @@ public class MavenParser {
      * Parses manifest elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseManifest(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -329,7 +906,7 @@ public class MavenParser {
                         mavenProject.setMainClass(reader.getElementText());
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -342,24 +919,23 @@ public class MavenParser {
      * collected information.
      *
      * @param config       application configuration
+     * @param output       writer for progress output
      * @param mavenCache   maven cache
      * @param pomFile      path to pom.xml file
-     * @param effectivePom path to effective pom
+     * @param effectivePom effective pom
      *
      * @return maven project instance
      */
     private MavenProject parsePom(final Config config,
-            final MavenCache mavenCache, final Path pomFile,
-            final File effectivePom) {
-        config.getStdoutWriter().print("Parsing effective pom...");
+            final PrintWriter output, final MavenCache mavenCache,
+            final Path pomFile, final byte[] effectivePom) {
+        output.print("Parsing effective pom...");
 
-        final XMLStreamReader reader;
+        final PomReader reader;
 
         try {
-            reader = XMLInputFactory.newInstance().createXMLStreamReader(
-                    new FileInputStream(effectivePom));
-        } catch (final FactoryConfigurationError | FileNotFoundException |
-                XMLStreamException ex) {
+            reader = createPomReader(config, effectivePom);
+        } catch (final XMLStreamException ex) {
             throw new RuntimeException("Failed to read effective pom", ex);
         }
 
@@ -378,7 +954,7 @@ public class MavenParser {
                             parseProject(mavenProject, mavenCache, reader);
                             break;
                         default:
-                            consumeElement(reader);
+                            reader.skipElement();
                     }
                 }
             }
@@ -386,7 +962,7 @@ public class MavenParser {
             throw new RuntimeException("Failed to parse effective pom", ex);
         }
 
-        config.getStdoutWriter().println("done");
+        output.println("done");
 
         return mavenProject;
     }
@@ -395,13 +971,13 @@ public class MavenParser {
      * Parses project element and it's sub-elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseProject(final MavenProject mavenProject,
-            final MavenCache mavenCache, final XMLStreamReader reader)
+            final MavenCache mavenCache, final PomReader reader)
             throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
@@ -438,7 +1014,7 @@ public class MavenParser {
                                 "-SNAPSHOT", ""));
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -450,13 +1026,13 @@ public class MavenParser {
      * Parses project build element and its sub-elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseProjectBuild(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -480,7 +1056,7 @@ public class MavenParser {
                                 Paths.get(reader.getElementText()));
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -493,13 +1069,13 @@ public class MavenParser {
      *
      * @param mavenProject maven project instance
      * @param mavenCache   maven cache
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseProjectDependencies(final MavenProject mavenProject,
-            final MavenCache mavenCache, final XMLStreamReader reader)
+            final MavenCache mavenCache, final PomReader reader)
             throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
@@ -510,7 +1086,7 @@ public class MavenParser {
                         parseProjectDependency(mavenProject, mavenCache, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -523,13 +1099,13 @@ public class MavenParser {
      *
      * @param mavenProject maven project instance
      * @param mavenCache   maven cache
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseProjectDependency(final MavenProject mavenProject,
-            final MavenCache mavenCache, final XMLStreamReader reader)
+            final MavenCache mavenCache, final PomReader reader)
             throws XMLStreamException {
         String groupId = null;
         String artifactId = null;
@@ -562,7 +1138,7 @@ public class MavenParser {
                         }
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 mavenProject.addDependency(new MavenDependency(groupId,
@@ -578,26 +1154,24 @@ public class MavenParser {
      * Parses project licenses.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading the
      *                            XML stream.
      */
     private void parseProjectLicenses(final MavenProject mavenProject,
-            final XMLStreamReader reader)
+            final PomReader reader)
             throws XMLStreamException {
-        MavenLicenses mavenLic = new MavenLicenses();
-
         while (reader.hasNext()) {
             reader.next();
 
             if (reader.isStartElement()) {
                 switch (reader.getLocalName()) {
                     case "license":
-                        parseProjectLicense(mavenLic, mavenProject, reader);
+                        parseProjectLicense(mavenProject, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -609,13 +1183,13 @@ public class MavenParser {
      * Parses project license.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading the
      *                            XML stream.
      */
-    private void parseProjectLicense(final MavenLicenses mavenLicenses,
-            final MavenProject mavenProject, final XMLStreamReader reader)
+    private void parseProjectLicense(final MavenProject mavenProject,
+            final PomReader reader)
             throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
@@ -624,11 +1198,11 @@ public class MavenParser {
                 switch (reader.getLocalName()) {
                     case "name":
                         mavenProject.addLicense(
-                                mavenLicenses.getEquivalentLicense(
+                                MAVEN_LICENSES.getEquivalentLicense(
                                 reader.getElementText()));
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -640,13 +1214,13 @@ public class MavenParser {
      * Parses project properties.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading the
      *                            XML stream.
      */
     private void parseProjectProperties(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -664,7 +1238,7 @@ public class MavenParser {
                         mavenProject.setSourceEncoding(reader.getElementText());
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -676,13 +1250,13 @@ public class MavenParser {
      * Parses resource element.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseResource(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -693,7 +1267,7 @@ public class MavenParser {
                                 Paths.get(reader.getElementText()));
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -705,13 +1279,13 @@ public class MavenParser {
      * Parses resources and its sub-elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseResources(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -721,7 +1295,7 @@ public class MavenParser {
                         parseResource(mavenProject, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -733,13 +1307,13 @@ public class MavenParser {
      * Parses test resource.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseTestResource(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -750,7 +1324,7 @@ public class MavenParser {
                                 Paths.get(reader.getElementText()));
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
@@ -762,13 +1336,13 @@ public class MavenParser {
      * Parses test resources and its sub-elements.
      *
      * @param mavenProject maven project instance
-     * @param reader       XML stream reader
+     * @param reader       pom reader
      *
      * @throws XMLStreamException Thrown if problem occurred while reading XML
      *                            stream.
      */
     private void parseTestResources(final MavenProject mavenProject,
-            final XMLStreamReader reader) throws XMLStreamException {
+            final PomReader reader) throws XMLStreamException {
         while (reader.hasNext()) {
             reader.next();
 
@@ -778,11 +1352,153 @@ public class MavenParser {
                         parseTestResource(mavenProject, reader);
                         break;
                     default:
-                        consumeElement(reader);
+                        reader.skipElement();
                 }
             } else if (reader.isEndElement()) {
                 return;
             }
         }
     }
+
+    /**
+     * Runs task for each pom file. If executor is specified, the tasks run
+     * concurrently and their output is buffered and written in the order of
+     * the pom files, otherwise the tasks run sequentially and write their
+     * output directly.
+     *
+     * @param <T>      type of task result
+     * @param config   application configuration
+     * @param executor executor or null if the tasks should run sequentially
+     * @param count    number of pom files
+     * @param task     task
+     *
+     * @return list of task results in the order of pom files
+     */
+    private <T> List<T> runInOrder(final Config config,
+            final ExecutorService executor, final int count,
+            final PomTask<T> task) {
+        final List<T> result = new ArrayList<>(count);
+
+        if (executor == null) {
+            for (int i = 0; i < count; i++) {
+                result.add(task.run(i, config.getStdoutWriter()));
+            }
+
+            return result;
+        }
+
+        final List<StringWriter> outputs = new ArrayList<>(count);
+        final List<Future<T>> futures = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final StringWriter output = new StringWriter(256);
+            outputs.add(output);
+            futures.add(executor.submit(
+                    () -> task.run(index, new PrintWriter(output, true))));
+        }
+
+        for (int i = 0; i < count; i++) {
+            final T taskResult;
+
+            try {
+                taskResult = futures.get(i).get();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+
+                throw new RuntimeException("Interrupted while processing pom "
+                        + "files", ex);
+            } catch (final ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                } else if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+
+                throw new RuntimeException("Failed to process pom file",
+                        ex.getCause());
+            } finally {
+                config.getStdoutWriter().print(outputs.get(i).toString());
+                config.getStdoutWriter().flush();
+            }
+
+            result.add(taskResult);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets source and resource directories to maven defaults. Used for
+     * projects parsed from raw poms that do not override them.
+     *
+     * @param mavenProject maven project
+     * @param basedir      directory containing the pom file
+     */
+    private void setDefaultDirectories(final MavenProject mavenProject,
+            final Path basedir) {
+        mavenProject.setSourceDirectory(basedir.resolve("src/main/java"));
+        mavenProject.setTestSourceDirectory(basedir.resolve("src/test/java"));
+        mavenProject.addResourceDirectory(
+                basedir.resolve("src/main/resources"));
+        mavenProject.addTestResourceDirectory(
+                basedir.resolve("src/test/resources"));
+    }
+
+    /**
+     * Stores effective pom in the cache.
+     *
+     * @param config            application configuration
+     * @param effectivePomCache effective pom cache
+     * @param cacheKey          cache key
+     * @param effectivePom      effective pom
+     */
+    private void storeEffectivePom(final Config config,
+            final EffectivePomCache effectivePomCache, final String cacheKey,
+            final byte[] effectivePom) {
+        try {
+            effectivePomCache.put(cacheKey, effectivePom);
+        } catch (final IOException ex) {
+            config.getErrorWriter().println("WARNING: Failed to store "
+                    + "effective pom in cache: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Strips anything that precedes the XML document, like messages written
+     * by the JVM to standard output.
+     *
+     * @param content mvn standard output
+     *
+     * @return XML document or empty array if there is none
+     */
+    private static byte[] stripLeadingGarbage(final byte[] content) {
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == '<') {
+                return i == 0 ? content
+                        : Arrays.copyOfRange(content, i, content.length);
+            }
+        }
+
+        return new byte[0];
+    }
+
+    /**
+     * Task processing single pom file.
+     *
+     * @param <T> type of task result
+     */
+    @FunctionalInterface
+    private interface PomTask<T> {
+
+        /**
+         * Processes pom file.
+         *
+         * @param index  index of the pom file
+         * @param output writer for progress output
+         *
+         * @return task result
+         */
+        T run(int index, PrintWriter output);
+    }
 }
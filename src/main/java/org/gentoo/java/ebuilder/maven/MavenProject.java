@@ -5,7 +5,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -24,6 +27,11 @@ public class MavenProject {
      * List of project dependencies.
      */
     private final List<MavenDependency> dependencies = new ArrayList<>(10);
+    /**
+     * Sorted read-only lists of {@link #dependencies} mapped by scope. Created
+     * on first request and reset whenever dependency is added.
+     */
+    private Map<String, List<MavenDependency>> dependenciesByScope;
     /**
      * Project description.
      */
@@ -101,6 +109,7 @@ public class MavenProject {
      */
     public void addDependency(final MavenDependency dependency) {
         dependencies.add(dependency);
+        dependenciesByScope = null;
     }
 
     /**
@@ -251,7 +260,7 @@ public class MavenProject {
      * @return list of dependencies
      */
     public List<MavenDependency> getCommonDependencies() {
-        return getDependencies(new String[]{"compile"});
+        return getDependencies("compile");
     }
 
     /**
@@ -260,7 +269,7 @@ public class MavenProject {
      * @return list of dependencies
      */
     public List<MavenDependency> getCompileDependencies() {
-        return getDependencies(new String[]{"provided"});
+        return getDependencies("provided");
     }
 
     /**
@@ -299,16 +308,16 @@ public class MavenProject {
      */
     @SuppressWarnings("unchecked")
     public String getExtraJars(final PrintWriter writer) {
-        String ret = "";
-        List<MavenDependency> systemDependencies = getDependencies(new String[]{
-            "system"});
+        final StringBuilder sbExtraJars = new StringBuilder(20);
+        final List<MavenDependency> systemDependencies
+                = getDependencies("system");
 
         for (final MavenDependency dependency : systemDependencies) {
             switch (dependency.getGroupId()) {
                 case "com.sun":
                     switch (dependency.getArtifactId()) {
                         case "tools":
-                            ret += "JAVA_NEEDS_TOOLS=1\n";
+                            sbExtraJars.append("JAVA_NEEDS_TOOLS=1\n");
                             break;
                         default:
                             writer.println("Equivalent variable for "
@@ -321,7 +330,27 @@ public class MavenProject {
             }
         }
 
-        return ret;
+        return sbExtraJars.toString();
+    }
+
+    /**
+     * Removes dependencies on the specified artifacts from
+     * {@link #dependencies}.
+     *
+     * @param artifacts artifacts in format groupId:artifactId
+     *
+     * @return true if some dependency was removed, otherwise false
+     */
+    public boolean excludeDependencies(final Set<String> artifacts) {
+        final boolean removed = dependencies.removeIf((dependency)
+                -> artifacts.contains(dependency.getGroupId() + ':'
+                        + dependency.getArtifactId()));
+
+        if (removed) {
+            dependenciesByScope = null;
+        }
+
+        return removed;
     }
 
     /**
@@ -420,7 +449,7 @@ public class MavenProject {
      * @return list of dependencies
      */
     public List<MavenDependency> getRuntimeDependencies() {
-        return getDependencies(new String[]{"runtime"});
+        return getDependencies("runtime");
     }
 
     /**
@@ -507,7 +536,7 @@ public class MavenProject {
             return Collections.EMPTY_LIST;
         }
 
-        return getDependencies(new String[]{"test"});
+        return getDependencies("test");
     }
 
     /**
@@ -589,35 +618,46 @@ public class MavenProject {
     }
 
     /**
-     * Returns dependencies based on the specified scopes.
+     * Returns dependencies of the specified scope sorted by group id and
+     * artifact id. Dependencies are partitioned by scope in single pass on
+     * first request, later requests return the same read-only lists until
+     * another dependency is added.
      *
-     * @param scopes array of scopes
+     * @param scope scope
      *
-     * @return list of dependencies
+     * @return read-only list of dependencies
      */
-    private List<MavenDependency> getDependencies(final String[] scopes) {
-        final List<MavenDependency> result
-                = new ArrayList<>(dependencies.size());
+    @SuppressWarnings("unchecked")
+    private List<MavenDependency> getDependencies(final String scope) {
+        if (dependenciesByScope == null) {
+            final Map<String, List<MavenDependency>> partition
+                    = new HashMap<>(8);
+
+            for (final MavenDependency dependency : dependencies) {
+                partition.computeIfAbsent(dependency.getScope(),
+                        (key) -> new ArrayList<>(10)).add(dependency);
+            }
 
-        for (final MavenDependency dependency : dependencies) {
-            for (final String scope : scopes) {
-                if (dependency.getScope().equals(scope)) {
-                    result.add(dependency);
+            partition.replaceAll((key, scopeDependencies) -> {
+                scopeDependencies.sort((final MavenDependency o1,
+                        final MavenDependency o2) -> {
+                    if (!o1.getGroupId().equals(o2.getGroupId())) {
+                        return o1.getGroupId().compareTo(o2.getGroupId());
+                    } else {
+                        return o1.getArtifactId().compareTo(
+                                o2.getArtifactId());
+                    }
+                });
 
-                    break;
-                }
-            }
+                return Collections.unmodifiableList(scopeDependencies);
+            });
+
+            dependenciesByScope = partition;
         }
 
-        result.sort((final MavenDependency o1, final MavenDependency o2) -> {
-            if (!o1.getGroupId().equals(o2.getGroupId())) {
-                return o1.getGroupId().compareTo(o2.getGroupId());
-            } else {
-                return o1.getArtifactId().compareTo(o2.getArtifactId());
-            }
-        });
+        final List<MavenDependency> result = dependenciesByScope.get(scope);
 
-        return result;
+        return result == null ? Collections.EMPTY_LIST : result;
     }
 
     /**
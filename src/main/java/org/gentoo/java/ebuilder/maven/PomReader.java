@@ -0,0 +1,69 @@
+package org.gentoo.java.ebuilder.maven;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Cursor over elements of pom file used by {@link MavenParser}. It mirrors
+ * the subset of {@link javax.xml.stream.XMLStreamReader} that the parser
+ * needs, plus skipping of whole elements, so that the parser does not depend
+ * on the way the pom is scanned.
+ *
+ * @author fordfrog
+ */
+interface PomReader {
+
+    /**
+     * Returns text of current element and moves to its end element.
+     *
+     * @return element text
+     *
+     * @throws XMLStreamException Thrown if current element is not a text-only
+     *                            element or the pom is not well-formed.
+     */
+    String getElementText() throws XMLStreamException;
+
+    /**
+     * Returns local name of current start or end element.
+     *
+     * @return local name
+     */
+    String getLocalName();
+
+    /**
+     * Checks whether there is more to read.
+     *
+     * @return true if there is more to read, otherwise false
+     *
+     * @throws XMLStreamException Thrown if the pom is not well-formed.
+     */
+    boolean hasNext() throws XMLStreamException;
+
+    /**
+     * Checks whether the cursor is at end element.
+     *
+     * @return true if the cursor is at end element, otherwise false
+     */
+    boolean isEndElement();
+
+    /**
+     * Checks whether the cursor is at start element.
+     *
+     * @return true if the cursor is at start element, otherwise false
+     */
+    boolean isStartElement();
+
+    /**
+     * Moves to next parsing event.
+     *
+     * @throws XMLStreamException Thrown if the pom is not well-formed.
+     */
+    void next() throws XMLStreamException;
+
+    /**
+     * Skips current start element including all its content and moves to
+     * its end element.
+     *
+     * @throws XMLStreamException Thrown if the pom is not well-formed.
+     */
+    void skipElement() throws XMLStreamException;
+}
@@ -0,0 +1,253 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Interpolates ${...} expressions in pom values the way maven does for an
+ * effective model, that is for a model already merged with its parent chain.
+ * Expressions are looked up in this order: basedir and baseUri, model values
+ * prefixed with "project." or "pom.", model properties, system properties,
+ * environment variables prefixed with "env." and unprefixed model values (for
+ * example ${parent.version}). Values are interpolated recursively.
+ * <p>
+ * Each distinct expression is resolved only once, later occurrences are
+ * served from memo. Expressions that reference themselves, directly or
+ * through other expressions, are reported as unsupported. Instances are not
+ * thread safe.
+ *
+ * @author fordfrog
+ */
+public class PropertyInterpolator {
+
+    /**
+     * Marker of expressions that cannot be resolved, stored in
+     * {@link #resolved}.
+     */
+    private static final String UNRESOLVED = new String("unresolved");
+    /**
+     * Project base directory.
+     */
+    private final Path basedir;
+    /**
+     * Function returning raw model value for a path without "project."
+     * prefix, like "version", "parent.groupId" or "build.directory", or null
+     * if the model does not contain the value.
+     */
+    private final Function<String, String> modelValues;
+    /**
+     * Model properties.
+     */
+    private final Map<String, String> properties;
+    /**
+     * Memo of resolved expressions.
+     */
+    private final Map<String, String> resolved = new HashMap<>(50);
+    /**
+     * Expressions that are being resolved, used to detect cycles.
+     */
+    private final Set<String> resolving = new HashSet<>(8);
+
+    /**
+     * Creates new instance of PropertyInterpolator.
+     *
+     * @param basedir     {@link #basedir}
+     * @param modelValues {@link #modelValues}
+     * @param properties  {@link #properties}
+     */
+    public PropertyInterpolator(final Path basedir,
+            final Function<String, String> modelValues,
+            final Map<String, String> properties) {
+        this.basedir = basedir;
+        this.modelValues = modelValues;
+        this.properties = properties;
+    }
+
+    /**
+     * Interpolates expressions in the value. Expressions that cannot be
+     * resolved are left as they are.
+     *
+     * @param value value
+     *
+     * @return interpolated value
+     *
+     * @throws UnsupportedPomException Thrown if expressions reference each
+     *                                 other in cycle.
+     */
+    public String interpolate(final String value)
+            throws UnsupportedPomException {
+        int start = value.indexOf("${");
+
+        if (start == -1) {
+            return value;
+        }
+
+        final StringBuilder sbResult = new StringBuilder(value.length());
+        int pos = 0;
+
+        while (start != -1) {
+            final int end = value.indexOf('}', start + 2);
+
+            if (end == -1) {
+                break;
+            }
+
+            sbResult.append(value, pos, start);
+
+            final String result = resolve(value.substring(start + 2, end));
+            sbResult.append(result == null
+                    ? value.substring(start, end + 1) : result);
+
+            pos = end + 1;
+            start = value.indexOf("${", pos);
+        }
+
+        sbResult.append(value, pos, value.length());
+
+        return sbResult.toString();
+    }
+
+    /**
+     * Checks whether model path denotes a build directory. Maven resolves
+     * these against project base directory.
+     *
+     * @param path model path without "project." prefix
+     *
+     * @return true if the path denotes build directory, otherwise false
+     */
+    private static boolean isBuildDirectory(final String path) {
+        switch (path) {
+            case "build.directory":
+            case "build.outputDirectory":
+            case "build.testOutputDirectory":
+            case "build.sourceDirectory":
+            case "build.testSourceDirectory":
+            case "build.scriptSourceDirectory":
+            case "reporting.outputDirectory":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns model value for specified path, including values that are
+     * derived from project base directory and properties.
+     *
+     * @param path model path without "project." prefix
+     *
+     * @return raw value or null
+     */
+    private String getModelValue(final String path) {
+        switch (path) {
+            case "basedir":
+                return basedir.toString();
+            case "baseUri":
+                return basedir.toUri().toASCIIString();
+            default:
+                if (path.startsWith("properties.")) {
+                    return properties.get(
+                            path.substring("properties.".length()));
+                }
+
+                return modelValues.apply(path);
+        }
+    }
+
+    /**
+     * Resolves single expression, using memo if the expression was already
+     * resolved.
+     *
+     * @param expression expression without ${ and }
+     *
+     * @return resolved and interpolated value or null if the expression
+     *         cannot be resolved
+     *
+     * @throws UnsupportedPomException Thrown if expressions reference each
+     *                                 other in cycle.
+     */
+    private String resolve(final String expression)
+            throws UnsupportedPomException {
+        final String memo = resolved.get(expression);
+
+        if (memo != null) {
+            return memo == UNRESOLVED ? null : memo;
+        }
+
+        if (!resolving.add(expression)) {
+            throw new UnsupportedPomException("expression ${" + expression
+                    + "} references itself");
+        }
+
+        final String result;
+
+        try {
+            result = resolveUncached(expression);
+        } finally {
+            resolving.remove(expression);
+        }
+
+        resolved.put(expression, result == null ? UNRESOLVED : result);
+
+        return result;
+    }
+
+    /**
+     * Resolves single expression.
+     *
+     * @param expression expression without ${ and }
+     *
+     * @return resolved and interpolated value or null if the expression
+     *         cannot be resolved
+     *
+     * @throws UnsupportedPomException Thrown if expressions reference each
+     *                                 other in cycle.
+     */
+    private String resolveUncached(final String expression)
+            throws UnsupportedPomException {
+        String path = null;
+        String value = null;
+
+        if ("basedir".equals(expression)) {
+            return basedir.toString();
+        } else if (expression.startsWith("project.")
+                || expression.startsWith("pom.")) {
+            path = expression.substring(expression.indexOf('.') + 1);
+            value = getModelValue(path);
+        }
+
+        if (value == null) {
+            path = null;
+            value = properties.get(expression);
+        }
+
+        if (value == null) {
+            value = System.getProperty(expression);
+        }
+
+        if (value == null && expression.startsWith("env.")) {
+            value = System.getenv(expression.substring("env.".length()));
+        }
+
+        if (value == null) {
+            value = getModelValue(expression);
+
+            if (value != null) {
+                path = expression;
+            }
+        }
+
+        if (value == null) {
+            return null;
+        }
+
+        final String result = interpolate(value);
+
+        return path != null && isBuildDirectory(path)
+                ? basedir.resolve(result).toString() : result;
+    }
+}
@@ -0,0 +1,71 @@
+package org.gentoo.java.ebuilder.maven;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pom reader backed by StAX stream reader.
+ *
+ * @author fordfrog
+ */
+class StaxPomReader implements PomReader {
+
+    /**
+     * XML stream reader.
+     */
+    private final XMLStreamReader reader;
+
+    /**
+     * Creates new instance of StaxPomReader.
+     *
+     * @param reader {@link #reader}
+     */
+    StaxPomReader(final XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        return reader.getElementText();
+    }
+
+    @Override
+    public String getLocalName() {
+        return reader.getLocalName();
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return reader.hasNext();
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return reader.isEndElement();
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return reader.isStartElement();
+    }
+
+    @Override
+    public void next() throws XMLStreamException {
+        reader.next();
+    }
+
+    @Override
+    public void skipElement() throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0 && reader.hasNext()) {
+            reader.next();
+
+            if (reader.isStartElement()) {
+                depth++;
+            } else if (reader.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+}
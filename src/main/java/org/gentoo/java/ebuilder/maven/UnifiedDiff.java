@@ -0,0 +1,292 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates unified diff of two texts. Common leading and trailing lines are
+ * skipped first, the rest is compared using longest common subsequence,
+ * which is fast enough for texts of ebuild size.
+ *
+ * @author fordfrog
+ */
+final class UnifiedDiff {
+
+    /**
+     * Number of unchanged lines printed around changes.
+     */
+    private static final int CONTEXT = 3;
+    /**
+     * Marker of text that does not end with line break.
+     */
+    private static final String NO_NEWLINE = "\\ No newline at end of file\n";
+
+    /**
+     * Creates new instance of UnifiedDiff.
+     */
+    private UnifiedDiff() {
+    }
+
+    /**
+     * Appends unified diff of the texts. Nothing is appended if the texts are
+     * equal.
+     *
+     * @param sb      string builder
+     * @param oldName name of the old text, {@code /dev/null} if there is no
+     *                old text
+     * @param oldText old text, may be empty
+     * @param newName name of the new text
+     * @param newText new text
+     */
+    static void append(final StringBuilder sb, final String oldName,
+            final String oldText, final String newName, final String newText) {
+        final List<String> oldLines = splitLines(oldText);
+        final List<String> newLines = splitLines(newText);
+        final List<Edit> edits = diff(oldLines, newLines);
+
+        if (edits.stream().allMatch((edit) -> edit.type == ' ')) {
+            return;
+        }
+
+        sb.append("--- ").append(oldName).append('\n');
+        sb.append("+++ ").append(newName).append('\n');
+
+        int start = 0;
+
+        while (start < edits.size()) {
+            // find next change and the end of its hunk
+            int first = start;
+
+            while (first < edits.size() && edits.get(first).type == ' ') {
+                first++;
+            }
+
+            if (first == edits.size()) {
+                break;
+            }
+
+            int last = first;
+            int unchanged = 0;
+
+            for (int i = first + 1; i < edits.size()
+                    && unchanged <= 2 * CONTEXT; i++) {
+                if (edits.get(i).type == ' ') {
+                    unchanged++;
+                } else {
+                    last = i;
+                    unchanged = 0;
+                }
+            }
+
+            final int hunkStart = Math.max(start, first - CONTEXT);
+            final int hunkEnd = Math.min(edits.size(), last + CONTEXT + 1);
+            appendHunk(sb, edits.subList(hunkStart, hunkEnd), oldLines,
+                    newLines);
+            start = hunkEnd;
+        }
+    }
+
+    /**
+     * Appends single hunk.
+     *
+     * @param sb       string builder
+     * @param edits    edits of the hunk
+     * @param oldLines lines of the old text
+     * @param newLines lines of the new text
+     */
+    private static void appendHunk(final StringBuilder sb,
+            final List<Edit> edits, final List<String> oldLines,
+            final List<String> newLines) {
+        int oldStart = -1;
+        int oldCount = 0;
+        int newStart = -1;
+        int newCount = 0;
+
+        for (final Edit edit : edits) {
+            if (edit.type != '+') {
+                if (oldStart == -1) {
+                    oldStart = edit.oldIndex;
+                }
+
+                oldCount++;
+            }
+
+            if (edit.type != '-') {
+                if (newStart == -1) {
+                    newStart = edit.newIndex;
+                }
+
+                newCount++;
+            }
+        }
+
+        // empty ranges refer to the line before the range
+        sb.append("@@ -").append(oldCount == 0
+                ? edits.get(0).oldIndex : oldStart + 1);
+
+        if (oldCount != 1) {
+            sb.append(',').append(oldCount);
+        }
+
+        sb.append(" +").append(newCount == 0
+                ? edits.get(0).newIndex : newStart + 1);
+
+        if (newCount != 1) {
+            sb.append(',').append(newCount);
+        }
+
+        sb.append(" @@\n");
+
+        for (final Edit edit : edits) {
+            final String line = edit.type == '+'
+                    ? newLines.get(edit.newIndex) : oldLines.get(edit.oldIndex);
+            sb.append(edit.type).append(line, 0, line.length()
+                    - (line.endsWith("\n") ? 1 : 0)).append('\n');
+
+            if (!line.endsWith("\n")) {
+                sb.append(NO_NEWLINE);
+            }
+        }
+    }
+
+    /**
+     * Computes edits transforming old lines to new lines.
+     *
+     * @param oldLines lines of the old text
+     * @param newLines lines of the new text
+     *
+     * @return list of edits
+     */
+    private static List<Edit> diff(final List<String> oldLines,
+            final List<String> newLines) {
+        int prefix = 0;
+
+        while (prefix < oldLines.size() && prefix < newLines.size()
+                && oldLines.get(prefix).equals(newLines.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+
+        while (suffix < oldLines.size() - prefix
+                && suffix < newLines.size() - prefix
+                && oldLines.get(oldLines.size() - 1 - suffix).equals(
+                        newLines.get(newLines.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        final int oldCount = oldLines.size() - prefix - suffix;
+        final int newCount = newLines.size() - prefix - suffix;
+
+        // lengths of longest common subsequences of the line suffixes
+        final int[][] lengths = new int[oldCount + 1][newCount + 1];
+
+        for (int i = oldCount - 1; i >= 0; i--) {
+            for (int j = newCount - 1; j >= 0; j--) {
+                if (oldLines.get(prefix + i).equals(
+                        newLines.get(prefix + j))) {
+                    lengths[i][j] = lengths[i + 1][j + 1] + 1;
+                } else {
+                    lengths[i][j] = Math.max(lengths[i + 1][j],
+                            lengths[i][j + 1]);
+                }
+            }
+        }
+
+        final List<Edit> result = new ArrayList<>(
+                Math.max(oldLines.size(), newLines.size()) + 10);
+
+        for (int i = 0; i < prefix; i++) {
+            result.add(new Edit(' ', i, i));
+        }
+
+        int i = 0;
+        int j = 0;
+
+        while (i < oldCount || j < newCount) {
+            if (i < oldCount && j < newCount && oldLines.get(prefix + i).
+                    equals(newLines.get(prefix + j))) {
+                result.add(new Edit(' ', prefix + i, prefix + j));
+                i++;
+                j++;
+            } else if (j == newCount || (i < oldCount
+                    && lengths[i + 1][j] >= lengths[i][j + 1])) {
+                result.add(new Edit('-', prefix + i, prefix + j));
+                i++;
+            } else {
+                result.add(new Edit('+', prefix + i, prefix + j));
+                j++;
+            }
+        }
+
+        for (int k = 0; k < suffix; k++) {
+            result.add(new Edit(' ', prefix + oldCount + k,
+                    prefix + newCount + k));
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits text into lines including line breaks, so that missing line
+     * break at the end of the text is detected as a difference.
+     *
+     * @param text text
+     *
+     * @return list of lines
+     */
+    private static List<String> splitLines(final String text) {
+        final List<String> result = new ArrayList<>(text.length() / 30 + 1);
+        int start = 0;
+
+        while (start < text.length()) {
+            final int end = text.indexOf('\n', start);
+
+            if (end == -1) {
+                result.add(text.substring(start));
+
+                break;
+            }
+
+            result.add(text.substring(start, end + 1));
+            start = end + 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Single line of the edit script.
+     */
+    private static class Edit {
+
+        /**
+         * Index of the line in the new text, or of the following line if the
+         * line was removed.
+         */
+        private final int newIndex;
+        /**
+         * Index of the line in the old text, or of the following line if the
+         * line was added.
+         */
+        private final int oldIndex;
+        /**
+         * Type of the edit, {@code ' '} for unchanged line, {@code '-'} for
+         * removed line and {@code '+'} for added line.
+         */
+        private final char type;
+
+        /**
+         * Creates new instance of Edit.
+         *
+         * @param type     {@link #type}
+         * @param oldIndex {@link #oldIndex}
+         * @param newIndex {@link #newIndex}
+         */
+        Edit(final char type, final int oldIndex, final int newIndex) {
+            this.type = type;
+            this.oldIndex = oldIndex;
+            this.newIndex = newIndex;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Thrown if cache file has format version that is not supported.
+ *
+ * @author fordfrog
+ */
+public class UnsupportedCacheException extends Exception {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates new instance of UnsupportedCacheException.
+     *
+     * @param message description of the problem
+     */
+    public UnsupportedCacheException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,24 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Thrown if pom.xml contains construct that cannot be processed without
+ * running maven.
+ *
+ * @author fordfrog
+ */
+public class UnsupportedPomException extends Exception {
+
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates new instance of UnsupportedPomException.
+     *
+     * @param message description of the unsupported construct
+     */
+    public UnsupportedPomException(final String message) {
+        super(message);
+    }
+}
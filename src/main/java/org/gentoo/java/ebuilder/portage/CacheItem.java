@@ -83,7 +83,7 @@ public class CacheItem {
                 = Collections.unmodifiableList(new ArrayList<>(javaEclasses));
 
         parsedMavenVersion = mavenVersion == null
-                ? null : new MavenVersion(mavenVersion);
+                ? null : MavenVersion.of(mavenVersion);
     }
 
     /**
@@ -127,7 +127,7 @@ public class CacheItem {
         }
 
         parsedMavenVersion = mavenVersion == null
-                ? null : new MavenVersion(mavenVersion);
+                ? null : MavenVersion.of(mavenVersion);
     }
 
     /**
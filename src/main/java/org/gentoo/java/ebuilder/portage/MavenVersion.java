@@ -1,29 +1,127 @@
 package org.gentoo.java.ebuilder.portage;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Maven version container.
+ * Maven version container. Versions are ordered the same way Maven's
+ * ComparableVersion orders them: the version is split into a list of numeric
+ * and qualifier items (sub-lists start at '-' and at digit/letter
+ * transitions), well known qualifiers are ranked (alpha &lt; beta &lt;
+ * milestone &lt; rc &lt; snapshot &lt; release &lt; sp &lt; others) and
+ * missing trailing items are padded with zero/release.
+ * <p>
+ * The item list is encoded once into a binary sort key so that comparing two
+ * versions is an unsigned byte array comparison. Maven's ordering is not
+ * transitive for some exotic mixes of qualifiers and sub-lists (for example
+ * "1", "1.sp" and "1-alpha"); for those the key picks a consistent total order
+ * instead.
+ * <p>
+ * Instances are immutable and interned, use {@link #of(java.lang.String)} to
+ * obtain them. The table of interned instances is cleared when it reaches
+ * {@link #MAX_INTERNED} entries, so that long-running java-ebuilder does not
+ * keep every version it has seen; instances are compared by value, so
+ * equal versions need not be the same instance. Empty version is valid and
+ * is equal to "0".
  *
  * @author fordfrog
  */
-public class MavenVersion implements Comparable<MavenVersion> {
+public final class MavenVersion implements Comparable<MavenVersion> {
 
     /**
-     * Pattern for parsing maven version number.
+     * Sort key tag of qualifier ranked lower than release.
      */
-    private static final Pattern PATTERN_VERSION = Pattern.compile(
-            "^[vr]?(\\d+)(?:\\.(\\d+))?(?:(?:\\.|b|beta)(\\d+))?(?:[\\.-]?(.*))?$");
+    private static final int TAG_STRING_LOW = 0x10;
     /**
-     * Pattern for parsing maven version range.
+     * Sort key tag of release qualifier that is followed by item lower than
+     * release.
      */
-    private static final Pattern PATTERN_VERSION_RANGE
-            = Pattern.compile("[\\[\\(](.*), ?(.*?)[\\]\\)]");
+    private static final int TAG_NULL_STRING_LOW = 0x18;
+    /**
+     * Sort key tag of sub-list that is lower than release.
+     */
+    private static final int TAG_LIST_LOW = 0x20;
+    /**
+     * Sort key tag of empty sub-list that is followed by item lower than
+     * release.
+     */
+    private static final int TAG_NULL_LIST_LOW = 0x24;
+    /**
+     * Sort key tag of zero that is followed by item lower than release.
+     */
+    private static final int TAG_NULL_NUMBER_LOW = 0x28;
+    /**
+     * Sort key tag of the end of a list.
+     */
+    private static final int TAG_END = 0x30;
+    /**
+     * Sort key tag of release qualifier that is followed by item higher than
+     * release.
+     */
+    private static final int TAG_NULL_STRING_HIGH = 0x38;
+    /**
+     * Sort key tag of qualifier ranked higher than release.
+     */
+    private static final int TAG_STRING_HIGH = 0x40;
+    /**
+     * Sort key tag of empty sub-list that is followed by item higher than
+     * release.
+     */
+    private static final int TAG_NULL_LIST_HIGH = 0x48;
+    /**
+     * Sort key tag of sub-list that is higher than release.
+     */
+    private static final int TAG_LIST_HIGH = 0x50;
+    /**
+     * Sort key tag of zero that is followed by item higher than release.
+     */
+    private static final int TAG_NULL_NUMBER_HIGH = 0x58;
+    /**
+     * Sort key tag of non-zero number.
+     */
+    private static final int TAG_NUMBER = 0x60;
+    /**
+     * Well known qualifiers in their order.
+     */
+    private static final String[] QUALIFIERS = {"alpha", "beta", "milestone",
+        "rc", "snapshot", "", "sp"};
+    /**
+     * Rank of release qualifier (empty qualifier) in {@link #QUALIFIERS}.
+     */
+    private static final int RELEASE_RANK = 5;
+    /**
+     * Rank used for qualifiers that are not in {@link #QUALIFIERS}.
+     */
+    private static final int UNKNOWN_RANK = QUALIFIERS.length;
+    /**
+     * Maximum number of interned instances.
+     */
+    private static final int MAX_INTERNED = 65_536;
+    /**
+     * Table of interned instances mapped by version string.
+     */
+    private static final ConcurrentMap<String, MavenVersion> INTERNED
+            = new ConcurrentHashMap<>(4096);
+    /**
+     * Hash code of {@link #key}.
+     */
+    private final int hashCode;
     /**
      * Incremental version number.
      */
     private final int incrementalVersion;
+    /**
+     * Binary sort key.
+     */
+    private final byte[] key;
     /**
      * Major version number.
      */
@@ -33,7 +131,7 @@ public class MavenVersion implements Comparable<MavenVersion> {
      */
     private final int minorVersion;
     /**
-     * Version qualifier.
+     * Version qualifier, the part of the version following the numbers.
      */
     private final String qualifier;
     /**
@@ -42,50 +140,97 @@ public class MavenVersion implements Comparable<MavenVersion> {
     private final String version;
 
     /**
-     * Creates new instance of MavenVersion.
+     * Returns shared instance of MavenVersion for specified version string.
+     * Instances are created on first request and reused afterwards. Version
+     * ranges are handled by {@link MavenVersionRange}.
      *
      * @param version version string
+     *
+     * @return maven version
+     *
+     * @throws IllegalArgumentException Thrown if the version contains
+     *                                  whitespace, control character or
+     *                                  character used in version ranges.
      */
-    public MavenVersion(final String version) {
-        this.version = version;
-
-        final Matcher matcherRange = PATTERN_VERSION_RANGE.matcher(version);
-        final String useVersion;
+    public static MavenVersion of(final String version) {
+        final MavenVersion mavenVersion = INTERNED.get(version);
 
-        if (matcherRange.matches()) {
-            useVersion = matcherRange.group(1);
-        } else {
-            useVersion = version;
+        if (mavenVersion != null) {
+            return mavenVersion;
+        } else if (INTERNED.size() >= MAX_INTERNED) {
+            INTERNED.clear();
         }
 
-        final Matcher matcher = PATTERN_VERSION.matcher(useVersion);
+        return INTERNED.computeIfAbsent(version, MavenVersion::new);
+    }
+
+    /**
+     * Creates new instance of MavenVersion.
+     *
+     * @param version version string
+     */
+    private MavenVersion(final String version) {
+        for (int i = 0; i < version.length(); i++) {
+            final char c = version.charAt(i);
 
-        if (!matcher.matches()) {
-            throw new RuntimeException(
-                    "Maven version " + useVersion + " is not valid.");
+            if (c <= ' ' || c == 0x7f || c == '[' || c == ']' || c == '('
+                    || c == ')' || c == ',') {
+                throw new IllegalArgumentException("Maven version " + version
+                        + " is not valid.");
+            }
         }
 
-        majorVersion = Integer.parseInt(matcher.group(1), 10);
-        minorVersion = matcher.group(2) == null
-                ? 0 : Integer.parseInt(matcher.group(2), 10);
-        incrementalVersion = matcher.group(3) == null
-                ? 0 : Integer.parseInt(matcher.group(3), 10);
-        qualifier = matcher.group(4) == null ? "" : matcher.group(4).toLowerCase();
+        this.version = version;
+        qualifier = parseQualifier(version);
+
+        final Item items = parseItems(version);
+        majorVersion = getNumber(items, 0);
+        minorVersion = getNumber(items, 1);
+        incrementalVersion = getNumber(items, 2);
+
+        final ByteArrayOutputStream keyStream
+                = new ByteArrayOutputStream(version.length() + 8);
+        writeListBody(keyStream, items);
+        key = keyStream.toByteArray();
+        hashCode = Arrays.hashCode(key);
     }
 
     @Override
     public int compareTo(final MavenVersion o) {
         if (o == null) {
             return 1;
-        } else if (majorVersion != o.getMajorVersion()) {
-            return Integer.valueOf(majorVersion).compareTo(o.getMajorVersion());
-        } else if (minorVersion != o.getMinorVersion()) {
-            return Integer.valueOf(minorVersion).compareTo(o.getMinorVersion());
-        } else if (incrementalVersion != o.getIncrementalVersion()) {
-            return Integer.valueOf(incrementalVersion).compareTo(o.getIncrementalVersion());
-        } else {
-            return qualifier.compareTo(o.getQualifier());
         }
+
+        final byte[] otherKey = o.key;
+        final int length = Math.min(key.length, otherKey.length);
+
+        for (int i = 0; i < length; i++) {
+            if (key[i] != otherKey[i]) {
+                return (key[i] & 0xff) - (otherKey[i] & 0xff);
+            }
+        }
+
+        return key.length - otherKey.length;
+    }
+
+    /**
+     * Versions are equal if they compare as equal, for example "1" and "1.0".
+     *
+     * @param obj object to compare
+     *
+     * @return true if the versions are equal, otherwise false
+     */
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        } else if (!(obj instanceof MavenVersion)) {
+            return false;
+        }
+
+        final MavenVersion other = (MavenVersion) obj;
+
+        return hashCode == other.hashCode && Arrays.equals(key, other.key);
     }
 
     /**
@@ -116,7 +261,10 @@ public class MavenVersion implements Comparable<MavenVersion> {
     }
 
     /**
-     * Getter for {@link #qualifier}.
+     * Getter for {@link #qualifier}. The qualifier is in lower case, without
+     * the separator that precedes it and is empty if there is none. For
+     * versions that do not start with a number, the whole version is the
+     * qualifier.
      *
      * @return {@link #qualifier}
      */
@@ -124,6 +272,17 @@ public class MavenVersion implements Comparable<MavenVersion> {
         return qualifier;
     }
 
+    /**
+     * Returns copy of the binary sort key. Keys of two versions compared as
+     * unsigned byte arrays give the same result as
+     * {@link #compareTo(org.gentoo.java.ebuilder.portage.MavenVersion)}.
+     *
+     * @return sort key
+     */
+    public byte[] getSortKey() {
+        return key.clone();
+    }
+
     /**
      * Getter for {@link #version}.
      *
@@ -132,4 +291,503 @@ public class MavenVersion implements Comparable<MavenVersion> {
     public String getVersion() {
         return version;
     }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+
+    /**
+     * Returns number at specified position of the top level item list.
+     *
+     * @param items top level item list
+     * @param index index of the item
+     *
+     * @return the number, 0 if the item is not a number or is missing, or
+     *         {@link Integer#MAX_VALUE} if it does not fit into int
+     */
+    private static int getNumber(final Item items, final int index) {
+        if (index >= items.items.size()) {
+            return 0;
+        }
+
+        final Item item = items.items.get(index);
+
+        if (item.type != Item.NUMBER) {
+            return 0;
+        }
+
+        return item.value.length() > 9
+                ? Integer.MAX_VALUE : Integer.parseInt(item.value, 10);
+    }
+
+    /**
+     * Returns index of the first non-digit character.
+     *
+     * @param string string to scan
+     * @param from   index to start at
+     *
+     * @return index of first non-digit character or length of the string
+     */
+    private static int skipDigits(final String string, final int from) {
+        int pos = from;
+
+        while (pos < string.length() && string.charAt(pos) >= '0'
+                && string.charAt(pos) <= '9') {
+            pos++;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Skips number preceded by the separator.
+     *
+     * @param string    string to scan
+     * @param from      index of the separator
+     * @param separator separator
+     *
+     * @return index after the number, or {@code from} if the separator
+     *         followed by a number is not found there
+     */
+    private static int skipNumber(final String string, final int from,
+            final String separator) {
+        if (!string.startsWith(separator, from)) {
+            return from;
+        }
+
+        final int end = skipDigits(string, from + separator.length());
+
+        return end > from + separator.length() ? end : from;
+    }
+
+    /**
+     * Extracts qualifier following major, minor and incremental version
+     * numbers. Incremental version may be separated by '.', 'b' or 'beta'
+     * and version may be prefixed by 'v' or 'r'.
+     *
+     * @param version version string
+     *
+     * @return qualifier in lower case
+     */
+    private static String parseQualifier(final String version) {
+        int pos = 0;
+
+        if (version.length() > 1 && (version.charAt(0) == 'v'
+                || version.charAt(0) == 'r')
+                && skipDigits(version, 1) > 1) {
+            pos = 1;
+        }
+
+        final int end = skipDigits(version, pos);
+
+        if (end == pos) {
+            return version.toLowerCase(Locale.ENGLISH);
+        }
+
+        pos = skipNumber(version, end, ".");
+
+        for (final String separator : new String[]{".", "beta", "b"}) {
+            final int next = skipNumber(version, pos, separator);
+
+            if (next != pos) {
+                pos = next;
+
+                break;
+            }
+        }
+
+        if (pos < version.length() && (version.charAt(pos) == '.'
+                || version.charAt(pos) == '-')) {
+            pos++;
+        }
+
+        return version.substring(pos).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Parses version into list of items the way Maven does.
+     *
+     * @param version version string
+     *
+     * @return top level item list
+     */
+    private static Item parseItems(final String version) {
+        final String lowerVersion = version.toLowerCase(Locale.ENGLISH);
+        final Item root = Item.list();
+        final Deque<Item> stack = new ArrayDeque<>(8);
+        Item list = root;
+        stack.push(list);
+        boolean isDigit = false;
+        int startIndex = 0;
+
+        for (int i = 0; i < lowerVersion.length(); i++) {
+            final char c = lowerVersion.charAt(i);
+
+            if (c == '.' || c == '-') {
+                if (i == startIndex) {
+                    list.items.add(Item.number("0"));
+                } else {
+                    list.items.add(Item.parse(isDigit,
+                            lowerVersion.substring(startIndex, i), false));
+                }
+
+                startIndex = i + 1;
+
+                if (c == '-') {
+                    final Item subList = Item.list();
+                    list.items.add(subList);
+                    list = subList;
+                    stack.push(list);
+                }
+            } else if (Character.isDigit(c)) {
+                if (!isDigit && i > startIndex) {
+                    // qualifier followed by number starts its own sub-list
+                    if (!list.items.isEmpty()) {
+                        final Item subList = Item.list();
+                        list.items.add(subList);
+                        list = subList;
+                        stack.push(list);
+                    }
+
+                    list.items.add(Item.parse(false,
+                            lowerVersion.substring(startIndex, i), true));
+                    startIndex = i;
+
+                    final Item subList = Item.list();
+                    list.items.add(subList);
+                    list = subList;
+                    stack.push(list);
+                }
+
+                isDigit = true;
+            } else {
+                if (isDigit && i > startIndex) {
+                    list.items.add(Item.parse(true,
+                            lowerVersion.substring(startIndex, i), false));
+                    startIndex = i;
+
+                    final Item subList = Item.list();
+                    list.items.add(subList);
+                    list = subList;
+                    stack.push(list);
+                }
+
+                isDigit = false;
+            }
+        }
+
+        if (lowerVersion.length() > startIndex) {
+            // trailing ".X" qualifier is treated as "-X"
+            if (!isDigit && !list.items.isEmpty()) {
+                final Item subList = Item.list();
+                list.items.add(subList);
+                list = subList;
+                stack.push(list);
+            }
+
+            list.items.add(Item.parse(isDigit,
+                    lowerVersion.substring(startIndex), false));
+        }
+
+        while (!stack.isEmpty()) {
+            stack.pop().normalize();
+        }
+
+        return root;
+    }
+
+    /**
+     * Writes items of the list followed by end tag into the sort key.
+     *
+     * @param key  sort key stream
+     * @param list item list
+     */
+    private static void writeListBody(final ByteArrayOutputStream key,
+            final Item list) {
+        final List<Item> items = list.items;
+        final int[] signs = new int[items.size()];
+
+        for (int i = 0; i < signs.length; i++) {
+            signs[i] = items.get(i).sign();
+        }
+
+        for (int i = 0; i < signs.length; i++) {
+            final Item item = items.get(i);
+
+            if (signs[i] == 0) {
+                int followingSign = 1;
+
+                for (int j = i + 1; j < signs.length; j++) {
+                    if (signs[j] != 0) {
+                        followingSign = signs[j];
+
+                        break;
+                    }
+                }
+
+                switch (item.type) {
+                    case Item.NUMBER:
+                        key.write(followingSign < 0
+                                ? TAG_NULL_NUMBER_LOW : TAG_NULL_NUMBER_HIGH);
+                        break;
+                    case Item.STRING:
+                        key.write(followingSign < 0
+                                ? TAG_NULL_STRING_LOW : TAG_NULL_STRING_HIGH);
+                        break;
+                    default:
+                        key.write(followingSign < 0
+                                ? TAG_NULL_LIST_LOW : TAG_NULL_LIST_HIGH);
+                }
+
+                continue;
+            }
+
+            switch (item.type) {
+                case Item.NUMBER:
+                    key.write(TAG_NUMBER);
+
+                    if (item.value.length() < 0xff) {
+                        key.write(item.value.length());
+                    } else {
+                        key.write(0xff);
+                        key.write(item.value.length() >>> 24);
+                        key.write(item.value.length() >>> 16);
+                        key.write(item.value.length() >>> 8);
+                        key.write(item.value.length());
+                    }
+
+                    final byte[] digits
+                            = item.value.getBytes(StandardCharsets.US_ASCII);
+                    key.write(digits, 0, digits.length);
+
+                    break;
+                case Item.STRING:
+                    key.write(signs[i] < 0 ? TAG_STRING_LOW : TAG_STRING_HIGH);
+                    key.write(item.rank);
+
+                    if (item.rank == UNKNOWN_RANK) {
+                        final byte[] chars
+                                = item.value.getBytes(StandardCharsets.UTF_8);
+                        key.write(chars, 0, chars.length);
+                        key.write(0);
+                    }
+
+                    break;
+                case Item.LIST:
+                    key.write(signs[i] < 0 ? TAG_LIST_LOW : TAG_LIST_HIGH);
+                    writeListBody(key, item);
+
+                    break;
+                default:
+                    throw new IllegalStateException(
+                            "Unsupported item type: " + item.type);
+            }
+        }
+
+        key.write(TAG_END);
+    }
+
+    /**
+     * Version item: number, qualifier or list of items.
+     */
+    private static final class Item {
+
+        /**
+         * Qualifier item type. Item types are ordered the way they are ordered
+         * when compared against each other.
+         */
+        static final int STRING = 1;
+        /**
+         * List item type.
+         */
+        static final int LIST = 2;
+        /**
+         * Number item type.
+         */
+        static final int NUMBER = 3;
+
+        /**
+         * Creates list item.
+         *
+         * @return list item
+         */
+        static Item list() {
+            return new Item(LIST, null, 0, new ArrayList<>(4));
+        }
+
+        /**
+         * Creates number item.
+         *
+         * @param digits digits without leading zeros
+         *
+         * @return number item
+         */
+        static Item number(final String digits) {
+            return new Item(NUMBER, digits, 0, null);
+        }
+
+        /**
+         * Creates number or qualifier item from the token.
+         *
+         * @param isDigit         whether the token is a number
+         * @param token           version token
+         * @param followedByDigit whether qualifier token is followed by digit
+         *
+         * @return item
+         */
+        static Item parse(final boolean isDigit, final String token,
+                final boolean followedByDigit) {
+            if (isDigit) {
+                final StringBuilder sbDigits = new StringBuilder(token.length());
+
+                for (int i = 0; i < token.length(); i++) {
+                    final int digit = Character.digit(token.charAt(i), 10);
+
+                    if (digit != 0 || sbDigits.length() > 0
+                            || i == token.length() - 1) {
+                        sbDigits.append((char) ('0' + digit));
+                    }
+                }
+
+                return number(sbDigits.toString());
+            }
+
+            String value = token;
+
+            if (followedByDigit && value.length() == 1) {
+                switch (value.charAt(0)) {
+                    case 'a':
+                        value = "alpha";
+                        break;
+                    case 'b':
+                        value = "beta";
+                        break;
+                    case 'm':
+                        value = "milestone";
+                        break;
+                    default:
+                }
+            }
+
+            switch (value) {
+                case "ga":
+                case "final":
+                case "release":
+                    value = "";
+                    break;
+                case "cr":
+                    value = "rc";
+                    break;
+                default:
+            }
+
+            int rank = UNKNOWN_RANK;
+
+            for (int i = 0; i < QUALIFIERS.length; i++) {
+                if (QUALIFIERS[i].equals(value)) {
+                    rank = i;
+
+                    break;
+                }
+            }
+
+            return new Item(STRING, value, rank, null);
+        }
+
+        /**
+         * Sub-items of list item.
+         */
+        final List<Item> items;
+        /**
+         * Qualifier rank.
+         */
+        final int rank;
+        /**
+         * Item type.
+         */
+        final int type;
+        /**
+         * Digits of number item or qualifier.
+         */
+        final String value;
+
+        /**
+         * Creates new instance of Item.
+         *
+         * @param type  {@link #type}
+         * @param value {@link #value}
+         * @param rank  {@link #rank}
+         * @param items {@link #items}
+         */
+        private Item(final int type, final String value, final int rank,
+                final List<Item> items) {
+            this.type = type;
+            this.value = value;
+            this.rank = rank;
+            this.items = items;
+        }
+
+        /**
+         * Removes trailing items that are equal to padding.
+         */
+        void normalize() {
+            for (int i = items.size() - 1; i >= 0; i--) {
+                final Item item = items.get(i);
+
+                if (item.isNull()) {
+                    items.remove(i);
+                } else if (item.type != LIST) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Checks whether the item itself is equal to padding (zero, release
+         * qualifier or empty list).
+         *
+         * @return true if the item is equal to padding, otherwise false
+         */
+        boolean isNull() {
+            switch (type) {
+                case NUMBER:
+                    return "0".equals(value);
+                case STRING:
+                    return rank == RELEASE_RANK;
+                default:
+                    return items.isEmpty();
+            }
+        }
+
+        /**
+         * Compares the item against padding.
+         *
+         * @return negative number if the item is lower than padding, zero if
+         *         it is equal and positive number if it is higher
+         */
+        int sign() {
+            switch (type) {
+                case NUMBER:
+                    return "0".equals(value) ? 0 : 1;
+                case STRING:
+                    return Integer.compare(rank, RELEASE_RANK);
+                default:
+                    for (final Item item : items) {
+                        final int result = item.sign();
+
+                        if (result != 0) {
+                            return result;
+                        }
+                    }
+
+                    return 0;
+            }
+        }
+    }
 }
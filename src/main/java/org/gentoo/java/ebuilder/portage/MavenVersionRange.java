@@ -0,0 +1,366 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Maven version range. The range is either a soft version ("1.0"), which is
+ * satisfied by the version itself and all greater versions, or a list of
+ * comma separated intervals ("[1.0,2.0)", "(,1.0],[1.2,)", "[1.5]") with
+ * inclusive ('[', ']') or exclusive ('(', ')') bounds. Instances are
+ * immutable.
+ *
+ * @author fordfrog
+ */
+public final class MavenVersionRange {
+
+    /**
+     * Original range specification.
+     */
+    private final String spec;
+    /**
+     * Non-overlapping intervals of the range, sorted by lower bound.
+     */
+    private final List<Restriction> restrictions;
+
+    /**
+     * Creates new instance of MavenVersionRange.
+     *
+     * @param spec         {@link #spec}
+     * @param restrictions {@link #restrictions}
+     */
+    private MavenVersionRange(final String spec,
+            final List<Restriction> restrictions) {
+        this.spec = spec;
+        this.restrictions = Collections.unmodifiableList(restrictions);
+    }
+
+    /**
+     * Parses version range specification. Specifications that do not start
+     * with '[' or '(' are treated as soft versions.
+     *
+     * @param spec range specification
+     *
+     * @return version range
+     *
+     * @throws IllegalArgumentException Thrown if the specification is not a
+     *                                  valid version range.
+     */
+    public static MavenVersionRange parse(final String spec) {
+        final String trimmedSpec = spec.trim();
+
+        if (trimmedSpec.isEmpty() || (trimmedSpec.charAt(0) != '['
+                && trimmedSpec.charAt(0) != '(')) {
+            return ofVersion(MavenVersion.of(trimmedSpec));
+        }
+
+        final List<Restriction> restrictions = new ArrayList<>(2);
+        int pos = 0;
+
+        while (pos < trimmedSpec.length()) {
+            final char open = trimmedSpec.charAt(pos);
+
+            if (open != '[' && open != '(') {
+                throw new IllegalArgumentException("Version range " + spec
+                        + " is not valid: '[' or '(' expected at position "
+                        + pos);
+            }
+
+            int close = pos + 1;
+
+            while (close < trimmedSpec.length()
+                    && trimmedSpec.charAt(close) != ']'
+                    && trimmedSpec.charAt(close) != ')') {
+                close++;
+            }
+
+            if (close == trimmedSpec.length()) {
+                throw new IllegalArgumentException("Version range " + spec
+                        + " is not valid: unbounded interval");
+            }
+
+            final Restriction restriction = parseRestriction(spec,
+                    trimmedSpec.substring(pos, close + 1));
+
+            if (!restrictions.isEmpty()) {
+                final Restriction previous
+                        = restrictions.get(restrictions.size() - 1);
+
+                if (restriction.lower == null || previous.upper == null
+                        || previous.upper.compareTo(restriction.lower) > 0) {
+                    throw new IllegalArgumentException("Version range "
+                            + spec + " is not valid: intervals overlap or are "
+                            + "not in ascending order");
+                }
+            }
+
+            restrictions.add(restriction);
+            pos = close + 1;
+
+            while (pos < trimmedSpec.length()
+                    && Character.isWhitespace(trimmedSpec.charAt(pos))) {
+                pos++;
+            }
+
+            if (pos < trimmedSpec.length()) {
+                if (trimmedSpec.charAt(pos) != ',') {
+                    throw new IllegalArgumentException("Version range " + spec
+                            + " is not valid: ',' expected at position "
+                            + pos);
+                }
+
+                pos++;
+
+                while (pos < trimmedSpec.length()
+                        && Character.isWhitespace(trimmedSpec.charAt(pos))) {
+                    pos++;
+                }
+            }
+        }
+
+        return new MavenVersionRange(spec, restrictions);
+    }
+
+    /**
+     * Creates soft version range that is satisfied by the version and all
+     * greater versions.
+     *
+     * @param version maven version
+     *
+     * @return version range
+     */
+    public static MavenVersionRange ofVersion(final MavenVersion version) {
+        final List<Restriction> restrictions = new ArrayList<>(1);
+        restrictions.add(new Restriction(version, true, null, false));
+
+        return new MavenVersionRange(version.getVersion(), restrictions);
+    }
+
+    /**
+     * Checks whether the version satisfies the range.
+     *
+     * @param version maven version
+     *
+     * @return true if the version is within the range, otherwise false
+     */
+    public boolean contains(final MavenVersion version) {
+        for (final Restriction restriction : restrictions) {
+            if (restriction.isAboveLower(version)
+                    && restriction.isBelowUpper(version)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the lowest version that can satisfy the range. For ranges
+     * without lower bound empty version (lower than any other version) is
+     * returned.
+     *
+     * @return lowest version
+     */
+    public MavenVersion getLowerBound() {
+        final MavenVersion lower = restrictions.get(0).lower;
+
+        return lower == null ? MavenVersion.of("") : lower;
+    }
+
+    /**
+     * Getter for {@link #spec}.
+     *
+     * @return {@link #spec}
+     */
+    public String getSpec() {
+        return spec;
+    }
+
+    /**
+     * Selects the lowest version satisfying the range.
+     *
+     * @param sortedVersions versions sorted in ascending order
+     *
+     * @return index of the selected version or -1 if no version satisfies the
+     *         range
+     */
+    public int selectBest(final List<MavenVersion> sortedVersions) {
+        return selectBest(sortedVersions, Function.identity());
+    }
+
+    /**
+     * Selects the lowest version satisfying the range. The candidates are
+     * found using binary search, so only couple of versions are compared.
+     *
+     * @param <T>           type of items
+     * @param sortedItems   items sorted in ascending order of their versions
+     * @param versionGetter function returning version of the item
+     *
+     * @return index of the selected item or -1 if no item satisfies the range
+     */
+    public <T> int selectBest(final List<T> sortedItems,
+            final Function<? super T, MavenVersion> versionGetter) {
+        for (final Restriction restriction : restrictions) {
+            int low = 0;
+            int high = sortedItems.size();
+
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+
+                if (restriction.isAboveLower(
+                        versionGetter.apply(sortedItems.get(middle)))) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+
+            if (low == sortedItems.size()) {
+                return -1;
+            } else if (restriction.isBelowUpper(
+                    versionGetter.apply(sortedItems.get(low)))) {
+                return low;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * Parses single interval.
+     *
+     * @param spec     range specification, used in error messages
+     * @param interval interval including brackets
+     *
+     * @return restriction
+     */
+    private static Restriction parseRestriction(final String spec,
+            final String interval) {
+        final boolean lowerInclusive = interval.charAt(0) == '[';
+        final boolean upperInclusive
+                = interval.charAt(interval.length() - 1) == ']';
+        final String content
+                = interval.substring(1, interval.length() - 1).trim();
+        final int comma = content.indexOf(',');
+
+        if (comma == -1) {
+            if (!lowerInclusive || !upperInclusive || content.isEmpty()) {
+                throw new IllegalArgumentException("Version range " + spec
+                        + " is not valid: single version must be enclosed in "
+                        + "[]");
+            }
+
+            final MavenVersion version = MavenVersion.of(content);
+
+            return new Restriction(version, true, version, true);
+        }
+
+        final String lowerString = content.substring(0, comma).trim();
+        final String upperString = content.substring(comma + 1).trim();
+
+        if (upperString.indexOf(',') != -1) {
+            throw new IllegalArgumentException("Version range " + spec
+                    + " is not valid: interval " + interval
+                    + " has more than two bounds");
+        }
+
+        final MavenVersion lower
+                = lowerString.isEmpty() ? null : MavenVersion.of(lowerString);
+        final MavenVersion upper
+                = upperString.isEmpty() ? null : MavenVersion.of(upperString);
+
+        if (lower != null && upper != null) {
+            final int result = upper.compareTo(lower);
+
+            if (result < 0 || result == 0
+                    && (!lowerInclusive || !upperInclusive)) {
+                throw new IllegalArgumentException("Version range " + spec
+                        + " is not valid: interval " + interval
+                        + " is empty");
+            }
+        }
+
+        return new Restriction(lower, lower != null && lowerInclusive, upper,
+                upper != null && upperInclusive);
+    }
+
+    /**
+     * Single interval of the range.
+     */
+    private static final class Restriction {
+
+        /**
+         * Lower bound or null if there is none.
+         */
+        private final MavenVersion lower;
+        /**
+         * Whether lower bound is inclusive.
+         */
+        private final boolean lowerInclusive;
+        /**
+         * Upper bound or null if there is none.
+         */
+        private final MavenVersion upper;
+        /**
+         * Whether upper bound is inclusive.
+         */
+        private final boolean upperInclusive;
+
+        /**
+         * Creates new instance of Restriction.
+         *
+         * @param lower          {@link #lower}
+         * @param lowerInclusive {@link #lowerInclusive}
+         * @param upper          {@link #upper}
+         * @param upperInclusive {@link #upperInclusive}
+         */
+        Restriction(final MavenVersion lower, final boolean lowerInclusive,
+                final MavenVersion upper, final boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        /**
+         * Checks whether the version is not below lower bound.
+         *
+         * @param version maven version
+         *
+         * @return true if the version is not below lower bound
+         */
+        boolean isAboveLower(final MavenVersion version) {
+            if (lower == null) {
+                return true;
+            }
+
+            final int result = version.compareTo(lower);
+
+            return result > 0 || result == 0 && lowerInclusive;
+        }
+
+        /**
+         * Checks whether the version is not above upper bound.
+         *
+         * @param version maven version
+         *
+         * @return true if the version is not above upper bound
+         */
+        boolean isBelowUpper(final MavenVersion version) {
+            if (upper == null) {
+                return true;
+            }
+
+            final int result = version.compareTo(upper);
+
+            return result < 0 || result == 0 && upperInclusive;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.gentoo.java.ebuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/**
+ * Tests of {@link Json}.
+ *
+ * @author fordfrog
+ */
+public class JsonTest {
+
+    /**
+     * Tests parsing of object with values of all types.
+     */
+    @Test
+    public void testParse() {
+        final Map<?, ?> result = (Map<?, ?>) Json.parse(" {\"a\" : [1, -2.5,"
+                + " true, false, null, {}, []], \"b\":\"x\"}\n");
+
+        assertEquals(Arrays.asList("a", "b"),
+                Arrays.asList(result.keySet().toArray()));
+        assertEquals(Arrays.asList(1L, -2.5, true, false, null,
+                Collections.emptyMap(), Collections.emptyList()),
+                result.get("a"));
+        assertEquals("x", result.get("b"));
+    }
+
+    /**
+     * Tests escape sequences in strings.
+     */
+    @Test
+    public void testEscapes() {
+        assertEquals("\"\\/\b\f\n\r\t", Json.parse(
+                "\"\\\"\\\\\\/\\b\\f\\n\\r\\t\""));
+        assertEquals("\u00e9\u20ac", Json.parse("\"\\u00e9\\u20AC\""));
+        assertEquals("\u00e9", Json.parse("\"\u00e9\""));
+    }
+
+    /**
+     * Tests that surrogate pair escapes form single code point.
+     */
+    @Test
+    public void testSurrogatePair() {
+        final String result = (String) Json.parse("\"\\ud83d\\ude00\"");
+
+        assertEquals(1, result.codePointCount(0, result.length()));
+        assertEquals(0x1f600, result.codePointAt(0));
+    }
+
+    /**
+     * Tests numbers within and outside of long range.
+     */
+    @Test
+    public void testNumbers() {
+        assertEquals(0L, Json.parse("0"));
+        assertEquals(0L, Json.parse("-0"));
+        assertEquals(Long.MAX_VALUE, Json.parse("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, Json.parse("-9223372036854775808"));
+        assertEquals(9223372036854775808.0,
+                Json.parse("9223372036854775808"));
+        assertEquals(-1e20, Json.parse("-100000000000000000000"));
+        assertEquals(0.5, Json.parse("0.5"));
+        assertEquals(1e10, Json.parse("1E10"));
+        assertEquals(1.5e-3, Json.parse("15e-4"));
+        assertEquals(120.0, Json.parse("1.2e+2"));
+    }
+
+    /**
+     * Tests that invalid JSON is rejected.
+     */
+    @Test
+    public void testInvalid() {
+        for (final String text : new String[]{"", " ", "01", "-01", "1.",
+            ".5", "-", "+1", "1e", "1e+", "1.e5", "0x10", "NaN", "tru",
+            "nul", "\"abc", "\"\\x\"", "\"\\u12\"", "\"\\u+123\"",
+            "\"\\u12g4\"", "\"a\tb\"", "[1,]", "[1 2]", "{\"a\"}",
+            "{\"a\":1,}", "{a:1}", "{} {}", "[", "]"}) {
+            try {
+                Json.parse(text);
+                fail("JSON '" + text + "' should be rejected");
+            } catch (final IllegalArgumentException ex) {
+                assertTrue(ex.getMessage(),
+                        ex.getMessage().startsWith("Invalid JSON"));
+            }
+        }
+    }
+
+    /**
+     * Tests that nesting is limited.
+     */
+    @Test
+    public void testNesting() {
+        Object result = Json.parse(repeat('[', Json.MAX_DEPTH)
+                + repeat(']', Json.MAX_DEPTH));
+
+        for (int i = 1; i < Json.MAX_DEPTH; i++) {
+            result = ((List<?>) result).get(0);
+        }
+
+        assertEquals(Collections.emptyList(), result);
+
+        for (final String text : new String[]{
+            repeat('[', Json.MAX_DEPTH + 1) + repeat(']', Json.MAX_DEPTH + 1),
+            repeat('[', 100_000), repeat("{\"a\":", 100_000)}) {
+            try {
+                Json.parse(text);
+                fail("Nesting should be rejected");
+            } catch (final IllegalArgumentException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(
+                        "nesting deeper than " + Json.MAX_DEPTH));
+            }
+        }
+    }
+
+    /**
+     * Tests that written JSON is parsed back to the same value.
+     */
+    @Test
+    public void testWrite() {
+        final Map<String, Object> value = new LinkedHashMap<>(8);
+        value.put("string", "a\"b\\c\n\u00e9\ud83d\ude00\u0001");
+        value.put("long", 42L);
+        value.put("double", 1.25);
+        value.put("list", Arrays.asList(true, null, "x"));
+        value.put("nan", Double.NaN);
+
+        final StringBuilder sb = new StringBuilder(128);
+        Json.write(sb, value);
+
+        for (int i = 0; i < sb.length(); i++) {
+            assertTrue(sb.toString(), sb.charAt(i) >= 0x20
+                    && sb.charAt(i) <= 0x7e);
+        }
+
+        final Map<?, ?> result = (Map<?, ?>) Json.parse(sb.toString());
+
+        assertEquals(value.get("string"), result.get("string"));
+        assertEquals(42L, result.get("long"));
+        assertEquals(1.25, result.get("double"));
+        assertEquals(value.get("list"), result.get("list"));
+        assertNull(result.get("nan"));
+    }
+
+    /**
+     * Repeats string.
+     *
+     * @param string string
+     * @param count  number of repetitions
+     *
+     * @return repeated string
+     */
+    private static String repeat(final Object string, final int count) {
+        final StringBuilder sb = new StringBuilder(count * 5);
+
+        for (int i = 0; i < count; i++) {
+            sb.append(string);
+        }
+
+        return sb.toString();
+    }
+}
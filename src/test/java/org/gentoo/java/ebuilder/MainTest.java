@@ -0,0 +1,86 @@
+package org.gentoo.java.ebuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+import org.junit.Test;
+
+/**
+ * Tests of {@link Main}.
+ *
+ * @author fordfrog
+ */
+public class MainTest {
+
+    /**
+     * Tests that versions are selected from the newest to the oldest.
+     *
+     * @throws IOException Thrown if the versions cannot be read.
+     */
+    @Test
+    public void testSelectVersions() throws IOException {
+        final StringWriter errors = new StringWriter();
+
+        assertEquals(Arrays.asList("1.5", "1.0"), selectVersions("[1.0,2.0)",
+                "1.0\n\n2.0\n 1.5 \n0.9\n", errors));
+        assertEquals("", errors.toString());
+        assertEquals(Arrays.asList(), selectVersions("[3.0,)", "1.0\n2.0\n",
+                errors));
+    }
+
+    /**
+     * Tests that versions that are not valid are skipped with warning.
+     *
+     * @throws IOException Thrown if the versions cannot be read.
+     */
+    @Test
+    public void testSelectVersionsInvalid() throws IOException {
+        final StringWriter errors = new StringWriter();
+
+        assertEquals(Arrays.asList("1.5", "1.0"), selectVersions("[1.0,2.0)",
+                "1.0\n2.0 beta\n1.5\n[1.2]\n", errors));
+        assertTrue(errors.toString(), errors.toString().startsWith(
+                "WARNING: Maven version 2.0 beta is not valid."));
+        assertTrue(errors.toString(), errors.toString().contains(
+                "WARNING: Maven version [1.2] is not valid."));
+    }
+
+    /**
+     * Selects versions from the input.
+     *
+     * @param range  version range
+     * @param input  versions, one per line
+     * @param errors writer of errors
+     *
+     * @return selected versions
+     *
+     * @throws IOException Thrown if the versions cannot be read.
+     */
+    private static List<String> selectVersions(final String range,
+            final String input, final StringWriter errors)
+            throws IOException {
+        final Config config = new Config(new PrintWriter(new StringWriter()),
+                new PrintWriter(errors, true));
+        config.setSelectVersions(MavenVersionRange.parse(range));
+
+        final List<String> result = new ArrayList<>(4);
+
+        for (final MavenVersion version : Main.selectVersions(config,
+                new BufferedReader(new StringReader(input)))) {
+            result.add(version.getVersion());
+        }
+
+        config.getErrorWriter().flush();
+
+        return result;
+    }
+}
@@ -0,0 +1,257 @@
+package org.gentoo.java.ebuilder.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.Test;
+
+/**
+ * Tests of {@link BytePomReader}. Every pom is read using both
+ * {@link BytePomReader} and {@link StaxPomReader} and the sequences of
+ * events and element texts must be the same.
+ *
+ * @author fordfrog
+ */
+public class BytePomReaderTest {
+
+    /**
+     * Names of elements whose text is read using
+     * {@link PomReader#getElementText()}.
+     */
+    private static final List<String> TEXT_ELEMENTS = Arrays.asList(
+            "artifactId", "description", "groupId", "name", "version");
+    /**
+     * Name of element that is skipped using {@link PomReader#skipElement()}.
+     */
+    private static final String SKIPPED_ELEMENT = "build";
+
+    /**
+     * Tests CDATA sections in element text, also mixed with character data.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testCdata() throws XMLStreamException {
+        assertSameEvents("<project><name><![CDATA[a <b> & c]]></name>"
+                + "<description>x<![CDATA[]]>y<![CDATA[<z>]]>"
+                + "</description><version><![CDATA[1.0]]>-1</version>"
+                + "</project>", "a <b> & c", "xy<z>", "1.0-1");
+    }
+
+    /**
+     * Tests character references and predefined entities, also with line
+     * ends that must be normalized.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testEntities() throws XMLStreamException {
+        assertSameEvents("<project><name>&lt;&gt;&amp;&apos;&quot;</name>"
+                + "<description>&#x41;&#66;&#xe9;&#x1F600;\r\nx\ry"
+                + "</description></project>", "<>&'\"",
+                "AB\u00e9\ud83d\ude00\nx\ny");
+    }
+
+    /**
+     * Tests prefixed element names, which are reported by local name.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testPrefixedNames() throws XMLStreamException {
+        assertSameEvents("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<pom:project xmlns:pom=\"http://maven.apache.org/POM/4.0.0\""
+                + "><pom:groupId>g</pom:groupId><pom:dependencies>"
+                + "<pom:dependency/></pom:dependencies></pom:project>", "g");
+    }
+
+    /**
+     * Tests empty element tags, both as text elements and as elements with
+     * children.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testEmptyElements() throws XMLStreamException {
+        assertSameEvents("<project><name/><version /><description>"
+                + "</description><modules/><build/><dependencies>"
+                + "<dependency /><dependency/></dependencies></project>", "",
+                "", "");
+    }
+
+    /**
+     * Tests attribute values containing markup characters and both quote
+     * types.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testAttributes() throws XMLStreamException {
+        assertSameEvents("<project a=\"1>2\" b='/>'><name c=\"'>\" d='\"/>'>"
+                + "n</name><x e=\"&gt;\"/><build f=\"&lt;\"><plugins/></build>"
+                + "</project>", "n");
+    }
+
+    /**
+     * Tests comments and processing instructions inside element text and
+     * between elements, and skipping of elements containing them.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testComments() throws XMLStreamException {
+        assertSameEvents("<?xml version=\"1.0\"?>\n<!-- <project> -->\n"
+                + "<project><!-- <name>x</name> --><name>a<!-- b -->c"
+                + "<?pi <d>?>e</name><build><!-- </build> --><plugins>"
+                + "<![CDATA[</build>]]></plugins></build><version>"
+                + "<!-- -->1</version></project>\n<!-- end -->\n", "ace",
+                "1");
+    }
+
+    /**
+     * Tests that pom with DOCTYPE is not supported by {@link BytePomReader},
+     * as it might define entities, so that it is read using StAX, and that
+     * DOCTYPE without entities is read the same by both readers.
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    @Test
+    public void testDoctype() throws XMLStreamException {
+        final String pom = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<!-- comment -->\n<!DOCTYPE project [\n"
+                + "<!ENTITY ver \"1.0\">\n<!ENTITY name \"x>]\">\n]>\n"
+                + "<project><version>&ver;</version><name>&name;</name>"
+                + "</project>";
+
+        assertFalse(BytePomReader.isSupported(toBytes(pom)));
+        assertEquals(Arrays.asList("start project", "start version",
+                "text 1.0", "start name", "text x>]", "end project"),
+                readEvents(new StaxPomReader(createXmlStreamReader(pom))));
+
+        final String plain = "<!DOCTYPE project>\n<project><version>1"
+                + "</version></project>";
+
+        assertFalse(BytePomReader.isSupported(toBytes(plain)));
+        assertSameEvents(plain, "1");
+    }
+
+    /**
+     * Tests detection of supported encodings.
+     */
+    @Test
+    public void testIsSupported() {
+        assertTrue(BytePomReader.isSupported(toBytes("<project/>")));
+        assertTrue(BytePomReader.isSupported(toBytes(
+                "\ufeff<?xml version='1.0' encoding='utf-8'?><project/>")));
+        assertTrue(BytePomReader.isSupported(toBytes(
+                "<?xml version=\"1.0\"?>\n<!-- <!DOCTYPE x> -->\n<project>"
+                + "<name><![CDATA[<!DOCTYPE x>]]></name></project>")));
+        assertFalse(BytePomReader.isSupported(toBytes(
+                "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><project/>")));
+        assertFalse(BytePomReader.isSupported(
+                "<project/>".getBytes(StandardCharsets.UTF_16LE)));
+    }
+
+    /**
+     * Asserts that both readers produce the same events for the pom and
+     * that texts of text elements are the expected ones.
+     *
+     * @param pom   pom content
+     * @param texts expected texts of text elements, in document order
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    private static void assertSameEvents(final String pom,
+            final String... texts) throws XMLStreamException {
+        final byte[] content = toBytes(pom);
+
+        assertTrue(BytePomReader.isSupported(content)
+                || pom.contains("<!DOCTYPE"));
+
+        final List<String> expected = readEvents(new StaxPomReader(
+                createXmlStreamReader(pom)));
+        final List<String> actual = readEvents(new BytePomReader(content));
+
+        assertEquals(expected, actual);
+
+        final List<String> actualTexts = new ArrayList<>(texts.length);
+
+        for (final String event : actual) {
+            if (event.startsWith("text ")) {
+                actualTexts.add(event.substring(5));
+            }
+        }
+
+        assertEquals(Arrays.asList(texts), actualTexts);
+    }
+
+    /**
+     * Creates XML stream reader for the pom.
+     *
+     * @param pom pom content
+     *
+     * @return XML stream reader
+     *
+     * @throws XMLStreamException Thrown if the reader could not be created.
+     */
+    private static XMLStreamReader createXmlStreamReader(final String pom)
+            throws XMLStreamException {
+        return XMLInputFactory.newInstance().createXMLStreamReader(
+                new ByteArrayInputStream(toBytes(pom)));
+    }
+
+    /**
+     * Reads the pom the same way {@link MavenParser} does: text elements are
+     * read using {@link PomReader#getElementText()}, {@link #SKIPPED_ELEMENT}
+     * is skipped and other elements are walked through. End events of text
+     * and skipped elements are consumed by the reader and are not listed.
+     *
+     * @param reader pom reader
+     *
+     * @return list of events
+     *
+     * @throws XMLStreamException Thrown if the pom cannot be read.
+     */
+    private static List<String> readEvents(final PomReader reader)
+            throws XMLStreamException {
+        final List<String> events = new ArrayList<>(32);
+
+        while (reader.hasNext()) {
+            reader.next();
+
+            if (reader.isStartElement()) {
+                final String name = reader.getLocalName();
+                events.add("start " + name);
+
+                if (TEXT_ELEMENTS.contains(name)) {
+                    events.add("text " + reader.getElementText());
+                } else if (SKIPPED_ELEMENT.equals(name)) {
+                    reader.skipElement();
+                }
+            } else if (reader.isEndElement()) {
+                events.add("end " + reader.getLocalName());
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Encodes the string in UTF-8.
+     *
+     * @param string string
+     *
+     * @return encoded string
+     */
+    private static byte[] toBytes(final String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
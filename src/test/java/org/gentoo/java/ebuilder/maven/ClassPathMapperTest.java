@@ -0,0 +1,87 @@
+package org.gentoo.java.ebuilder.maven;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests of {@link ClassPathMapper}. Expected entries are the ones produced
+ * by the regular expression based mapping that {@link MavenEbuilder} used
+ * before {@link ClassPathMapper} was introduced.
+ *
+ * @author fordfrog
+ */
+public class ClassPathMapperTest {
+
+    /**
+     * Atoms and their expected classpath entries.
+     */
+    private static final String[][] ENTRIES = {
+        {"dev-java/foo", "foo"},
+        {"dev-java/foo:0", "foo"},
+        {"dev-java/foo:2", "foo-2"},
+        {"foo:3", "foo-3"},
+        {"", ""},
+        // empty slot and more than one slot part
+        {"dev-java/foo:", "foo"},
+        {"dev-java/foo::", "foo"},
+        {"dev-java/foo:1:", "foo-1"},
+        {"dev-java/foo:1::", "foo-1"},
+        {"dev-java/foo::b", "foo"},
+        {"dev-java/foo:1:b", "foo"},
+        {"dev-java/foo:2=", "foo-2="},
+        {"dev-java/foo:2/2.1", "2.1"},
+        // revisions
+        {"dev-java/foo-r1", "foo"},
+        {"dev-java/foo-bar-r12:1", "foo-bar-1"},
+        {"dev-java/foo-r:1", "foo-r-1"},
+        {"dev-java/foo-rx1:1", "foo-rx1-1"},
+        // versioned atoms
+        {">=dev-java/foo-1.2-r1:2", "foo-2"},
+        {">=dev-java/foo-1.2-r1:0", "foo"},
+        {"~dev-java/foo-1.2:1", "foo-1"},
+        {"<dev-java/foo-1.2:3[bar]", "foo-3"},
+        {"=dev-java/foo-1.2", "foo-1.2"},
+        // USE dependencies
+        {"dev-java/foo[bar]", "foo"},
+        {"dev-java/foo[bar:2]", "foo"},
+        {"dev-java/foo:2[bar,-baz]", "foo-2"},
+        {"dev-java/foo:2[a][b]", "foo-2"},
+        {"dev-java/foo[a:b]:2", "foo-2"}
+    };
+
+    /**
+     * Tests that atoms are mapped to the same entries as before.
+     */
+    @Test
+    public void testGetEntry() {
+        for (final String[] entry : ENTRIES) {
+            assertEquals(entry[0], entry[1],
+                    ClassPathMapper.getEntry(entry[0]));
+        }
+    }
+
+    /**
+     * Tests that memoized entries are returned on repeated calls.
+     */
+    @Test
+    public void testGetEntryRepeated() {
+        for (int i = 0; i < 3; i++) {
+            for (final String[] entry : ENTRIES) {
+                assertEquals(entry[0], entry[1],
+                        ClassPathMapper.getEntry(entry[0]));
+            }
+        }
+    }
+
+    /**
+     * Tests versioned atoms whose package name contains no version. The
+     * regular expression based mapping failed on these with
+     * {@link StringIndexOutOfBoundsException}, now the package name is used
+     * as it is.
+     */
+    @Test
+    public void testVersionedWithoutVersion() {
+        assertEquals("foo-1", ClassPathMapper.getEntry(">=dev-java/foo:1"));
+        assertEquals(">=foo-1", ClassPathMapper.getEntry(">=foo:1"));
+    }
+}
@@ -0,0 +1,540 @@
+package org.gentoo.java.ebuilder.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.gentoo.java.ebuilder.Config;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Tests of {@link EffectivePomBuilder}. Expected effective poms were
+ * generated by {@code mvn help:effective-pom} (maven 3.9.11) with the
+ * fixture repository installed to the local repository, base directory of
+ * the project being replaced with {@code @BASEDIR@}. Only the parts of
+ * effective pom that {@link MavenParser} reads are compared.
+ *
+ * @author fordfrog
+ */
+public class EffectivePomBuilderTest {
+
+    /**
+     * Plugin configuration elements read by {@link MavenParser}.
+     */
+    private static final String[][] PLUGIN_CONFIGURATION = {{"source"},
+    {"target"}, {"archive", "manifest", "mainClass"}};
+    /**
+     * Temporary folder for poms of unsupported constructs.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests parent chain with relative path and repository parent, BOM
+     * import, property defined versions and profile activation against
+     * effective pom produced by maven.
+     *
+     * @throws Exception Thrown if the fixture cannot be read or built.
+     */
+    @Test
+    public void testParity() throws Exception {
+        final Path fixture = getResource("/effective-pom/parity");
+        final Path pomFile = fixture.resolve("project/pom.xml");
+        final String expected = new String(Files.readAllBytes(
+                fixture.resolve("expected.xml")), StandardCharsets.UTF_8).
+                replace("@BASEDIR@", pomFile.getParent().toString());
+
+        final byte[] actual = createBuilder(fixture.resolve("repo")).
+                build(pomFile);
+
+        assertEquals(getFacts(expected.getBytes(StandardCharsets.UTF_8),
+                pomFile.getParent()), getFacts(actual, pomFile.getParent()));
+    }
+
+    /**
+     * Tests that project with modules is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testModules() throws IOException {
+        assertUnsupported(writePom("project", "<modules><module>core</module>"
+                + "</modules>"), "project has modules");
+    }
+
+    /**
+     * Tests that parent which is neither at relative path nor in local
+     * repository is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testParentNotFound() throws IOException {
+        assertUnsupported(writePom("project", parent("missing", "1")),
+                "parent org.example:missing:1 not found locally");
+    }
+
+    /**
+     * Tests that parent cycle is detected.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testParentCycle() throws IOException {
+        writePom("first", "<parent><groupId>org.example</groupId>"
+                + "<artifactId>second</artifactId><version>1</version>"
+                + "<relativePath>../second</relativePath></parent>");
+
+        assertUnsupported(writePom("second", "<parent>"
+                + "<groupId>org.example</groupId>"
+                + "<artifactId>first</artifactId><version>1</version>"
+                + "<relativePath>../first</relativePath></parent>"),
+                "parent cycle at ");
+    }
+
+    /**
+     * Tests that parent with version defined by property is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testIncompleteParent() throws IOException {
+        assertUnsupported(writePom("project", parent("parent",
+                "${parent.version}")), "incomplete parent ");
+    }
+
+    /**
+     * Tests that pom which is not well formed is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testMalformedPom() throws IOException {
+        assertUnsupported(writePom("project", "<dependencies>"),
+                "failed to parse ");
+    }
+
+    /**
+     * Tests that profile activation by unknown element is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testUnknownActivation() throws IOException {
+        assertUnsupported(writePom("project", profile(
+                "<packaging>jar</packaging>")),
+                "profile test is activated by packaging");
+    }
+
+    /**
+     * Tests that profile activation by file with unresolved expression is not
+     * supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testFileActivationExpression() throws IOException {
+        assertUnsupported(writePom("project", profile("<file><exists>"
+                + "${user.home}/marker</exists></file>")),
+                "profile activation by file ");
+    }
+
+    /**
+     * Tests that profile activation by invalid JDK range is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testJdkActivationRange() throws IOException {
+        assertUnsupported(writePom("project", profile("<jdk>[1.8,</jdk>")),
+                "profile activation by jdk ");
+    }
+
+    /**
+     * Tests that profile activation by unknown os element is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testOsActivationElement() throws IOException {
+        assertUnsupported(writePom("project", profile("<os><distribution>"
+                + "gentoo</distribution></os>")),
+                "profile activation by os distribution");
+    }
+
+    /**
+     * Tests that BOM which is not in local repository is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testBomNotFound() throws IOException {
+        assertUnsupported(writePom("project", bom("1")),
+                "BOM org.example:bom:1 not found locally");
+    }
+
+    /**
+     * Tests that BOM import with unresolved version is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testIncompleteBom() throws IOException {
+        assertUnsupported(writePom("project", bom("${bom.version}")),
+                "incomplete BOM import ");
+    }
+
+    /**
+     * Tests that BOM importing itself is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testBomCycle() throws IOException {
+        final Path repository = folder.getRoot().toPath().resolve("repo");
+        final Path bomFile = repository.resolve("org/example/bom/1/bom-1.pom");
+        Files.createDirectories(bomFile.getParent());
+        Files.write(bomFile, pom("bom", bom("1")).getBytes(
+                StandardCharsets.UTF_8));
+
+        assertUnsupported(writePom("project", bom("1")),
+                "BOM import cycle at org.example:bom:1");
+    }
+
+    /**
+     * Tests that dependency with undefined version is not supported.
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    @Test
+    public void testUnresolvedDependency() throws IOException {
+        assertUnsupported(writePom("project", "<dependencies><dependency>"
+                + "<groupId>org.lib</groupId><artifactId>lib</artifactId>"
+                + "<version>${lib.version}</version></dependency>"
+                + "</dependencies>"),
+                "unresolved coordinates org.lib:lib:${lib.version}");
+        assertUnsupported(writePom("unmanaged", "<dependencies><dependency>"
+                + "<groupId>org.lib</groupId><artifactId>lib</artifactId>"
+                + "</dependency></dependencies>"),
+                "unresolved coordinates org.lib:lib:null");
+    }
+
+    /**
+     * Asserts that building of the pom throws
+     * {@link UnsupportedPomException}.
+     *
+     * @param pomFile path to pom file
+     * @param message start of the expected exception message
+     */
+    private void assertUnsupported(final Path pomFile, final String message) {
+        try {
+            createBuilder(folder.getRoot().toPath().resolve("repo")).
+                    build(pomFile);
+            fail("Building of " + pomFile + " should fail with " + message);
+        } catch (final UnsupportedPomException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith(message));
+        }
+    }
+
+    /**
+     * Creates builder reading poms from the repository only.
+     *
+     * @param repository local maven repository
+     *
+     * @return effective pom builder
+     */
+    private static EffectivePomBuilder createBuilder(final Path repository) {
+        final Config config = new Config(new PrintWriter(new StringWriter()),
+                new PrintWriter(new StringWriter()));
+        config.addMavenRepository(repository);
+
+        return new EffectivePomBuilder(config);
+    }
+
+    /**
+     * Returns parts of effective pom that are read by {@link MavenParser},
+     * one fact per line, with defaults applied and paths relative to base
+     * directory, so that output of maven and of the builder is comparable.
+     *
+     * @param effectivePom effective pom
+     * @param basedir      project base directory
+     *
+     * @return list of facts
+     *
+     * @throws Exception Thrown if the effective pom cannot be parsed.
+     */
+    private static List<String> getFacts(final byte[] effectivePom,
+            final Path basedir) throws Exception {
+        final Element project = DocumentBuilderFactory.newInstance().
+                newDocumentBuilder().parse(new ByteArrayInputStream(
+                        effectivePom)).getDocumentElement();
+        final List<String> facts = new ArrayList<>(50);
+
+        for (final String name : new String[]{"groupId", "artifactId",
+            "version", "name", "description", "url"}) {
+            facts.add(name + '=' + getText(project, name));
+        }
+
+        final String packaging = getText(project, "packaging");
+        facts.add("packaging=" + (packaging == null ? "jar" : packaging));
+
+        for (final Element license : getChildren(getChild(project,
+                "licenses"), "license")) {
+            facts.add("license=" + getText(license, "name"));
+        }
+
+        final List<String> properties = new ArrayList<>(20);
+
+        for (final Element property : getChildren(getChild(project,
+                "properties"), null)) {
+            properties.add("property " + property.getNodeName() + '='
+                    + property.getTextContent().trim());
+        }
+
+        Collections.sort(properties);
+        facts.addAll(properties);
+
+        final List<String> managed = new ArrayList<>(20);
+
+        for (final Element dependency : getChildren(getChild(getChild(
+                project, "dependencyManagement"), "dependencies"),
+                "dependency")) {
+            managed.add("managed " + getDependency(dependency));
+        }
+
+        Collections.sort(managed);
+        facts.addAll(managed);
+
+        for (final Element dependency : getChildren(getChild(project,
+                "dependencies"), "dependency")) {
+            facts.add("dependency " + getDependency(dependency));
+        }
+
+        final Element build = getChild(project, "build");
+
+        for (final String name : new String[]{"sourceDirectory",
+            "testSourceDirectory"}) {
+            facts.add(name + '=' + basedir.relativize(
+                    Paths.get(getText(build, name))));
+        }
+
+        for (final String[] names : new String[][]{{"resources", "resource"},
+        {"testResources", "testResource"}}) {
+            for (final Element resource : getChildren(getChild(build,
+                    names[0]), names[1])) {
+                facts.add(names[1] + '=' + basedir.relativize(
+                        Paths.get(getText(resource, "directory"))));
+            }
+        }
+
+        final List<String> plugins = new ArrayList<>(10);
+
+        for (final Element plugin : getChildren(getChild(build, "plugins"),
+                "plugin")) {
+            final Element configuration = getChild(plugin, "configuration");
+
+            for (final String[] path : PLUGIN_CONFIGURATION) {
+                Element element = configuration;
+
+                for (final String name : path) {
+                    element = getChild(element, name);
+                }
+
+                if (element != null) {
+                    plugins.add("plugin " + getText(plugin, "artifactId") + ' '
+                            + String.join("/", path) + '='
+                            + element.getTextContent().trim());
+                }
+            }
+        }
+
+        Collections.sort(plugins);
+        facts.addAll(plugins);
+
+        return facts;
+    }
+
+    /**
+     * Returns dependency coordinates with defaults applied.
+     *
+     * @param dependency dependency element
+     *
+     * @return dependency coordinates
+     */
+    private static String getDependency(final Element dependency) {
+        final String type = getText(dependency, "type");
+        final String scope = getText(dependency, "scope");
+
+        return getText(dependency, "groupId") + ':'
+                + getText(dependency, "artifactId") + ':'
+                + getText(dependency, "version") + ':'
+                + (type == null ? "jar" : type) + ':'
+                + getText(dependency, "classifier") + ':'
+                + (scope == null ? "compile" : scope) + ':'
+                + "true".equals(getText(dependency, "optional"));
+    }
+
+    /**
+     * Returns first child element of specified name.
+     *
+     * @param parent parent element, can be null
+     * @param name   element name
+     *
+     * @return child element or null
+     */
+    private static Element getChild(final Element parent, final String name) {
+        final List<Element> children = getChildren(parent, name);
+
+        return children.isEmpty() ? null : children.get(0);
+    }
+
+    /**
+     * Returns child elements of specified name.
+     *
+     * @param parent parent element, can be null
+     * @param name   element name, null for all elements
+     *
+     * @return list of child elements
+     */
+    private static List<Element> getChildren(final Element parent,
+            final String name) {
+        final List<Element> result = new ArrayList<>(10);
+
+        if (parent == null) {
+            return result;
+        }
+
+        for (Node node = parent.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && (name == null || name.equals(node.getNodeName()))) {
+                result.add((Element) node);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns trimmed text of child element.
+     *
+     * @param parent parent element, can be null
+     * @param name   element name
+     *
+     * @return text or null if there is no such element
+     */
+    private static String getText(final Element parent, final String name) {
+        final Element child = getChild(parent, name);
+
+        return child == null ? null : child.getTextContent().trim();
+    }
+
+    /**
+     * Returns path of test resource.
+     *
+     * @param name resource name
+     *
+     * @return path of the resource
+     *
+     * @throws URISyntaxException Thrown if the resource URL is not valid.
+     */
+    private static Path getResource(final String name)
+            throws URISyntaxException {
+        return Paths.get(EffectivePomBuilderTest.class.getResource(name).
+                toURI());
+    }
+
+    /**
+     * Returns BOM import of org.example:bom.
+     *
+     * @param version BOM version
+     *
+     * @return dependency management element
+     */
+    private static String bom(final String version) {
+        return "<dependencyManagement><dependencies><dependency>"
+                + "<groupId>org.example</groupId><artifactId>bom</artifactId>"
+                + "<version>" + version + "</version><type>pom</type>"
+                + "<scope>import</scope></dependency></dependencies>"
+                + "</dependencyManagement>";
+    }
+
+    /**
+     * Returns parent element.
+     *
+     * @param artifactId parent artifact id
+     * @param version    parent version
+     *
+     * @return parent element
+     */
+    private static String parent(final String artifactId,
+            final String version) {
+        return "<parent><groupId>org.example</groupId><artifactId>"
+                + artifactId + "</artifactId><version>" + version
+                + "</version></parent>";
+    }
+
+    /**
+     * Returns pom of org.example project.
+     *
+     * @param artifactId artifact id
+     * @param content    content of the project element
+     *
+     * @return pom
+     */
+    private static String pom(final String artifactId, final String content) {
+        return "<project><modelVersion>4.0.0</modelVersion>"
+                + "<groupId>org.example</groupId><artifactId>" + artifactId
+                + "</artifactId><version>1</version>" + content
+                + "</project>";
+    }
+
+    /**
+     * Returns profiles element with profile of specified activation.
+     *
+     * @param activation content of the activation element
+     *
+     * @return profiles element
+     */
+    private static String profile(final String activation) {
+        return "<profiles><profile><id>test</id><activation>" + activation
+                + "</activation></profile></profiles>";
+    }
+
+    /**
+     * Writes pom.xml to its own directory of the temporary folder.
+     *
+     * @param artifactId artifact id of the project, also the directory name
+     * @param content    content of the project element
+     *
+     * @return path to the pom.xml
+     *
+     * @throws IOException Thrown if the pom cannot be written.
+     */
+    private Path writePom(final String artifactId, final String content)
+            throws IOException {
+        final File directory = folder.newFolder(artifactId);
+        final Path pomFile = directory.toPath().resolve("pom.xml");
+        Files.write(pomFile, pom(artifactId, content).getBytes(
+                StandardCharsets.UTF_8));
+
+        return pomFile;
+    }
+}
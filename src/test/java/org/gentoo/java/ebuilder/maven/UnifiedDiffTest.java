@@ -0,0 +1,132 @@
+package org.gentoo.java.ebuilder.maven;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Tests of {@link UnifiedDiff}. Expected diffs are the ones produced by
+ * {@code diff -u} (GNU diffutils) for the same texts.
+ *
+ * @author fordfrog
+ */
+public class UnifiedDiffTest {
+
+    /**
+     * Tests that nothing is appended for equal texts.
+     */
+    @Test
+    public void testEqual() {
+        assertEquals("", diff("a\nb\n", "a\nb\n"));
+        assertEquals("", diff("", ""));
+        assertEquals("", diff("a", "a"));
+    }
+
+    /**
+     * Tests that changes separated by at most twice the context are merged
+     * into single hunk.
+     */
+    @Test
+    public void testAdjacentHunks() {
+        assertEquals("--- a\n+++ b\n@@ -2,14 +2,14 @@\n 2\n 3\n 4\n-5\n"
+                + "+x5\n 6\n 7\n 8\n 9\n 10\n 11\n-12\n+x12\n 13\n 14\n 15\n",
+                diff(lines(), lines(5, 12)));
+    }
+
+    /**
+     * Tests that changes separated by more than twice the context are
+     * written in separate hunks.
+     */
+    @Test
+    public void testSeparateHunks() {
+        assertEquals("--- a\n+++ b\n@@ -2,7 +2,7 @@\n 2\n 3\n 4\n-5\n+x5\n"
+                + " 6\n 7\n 8\n@@ -10,7 +10,7 @@\n 10\n 11\n 12\n-13\n+x13\n"
+                + " 14\n 15\n 16\n", diff(lines(), lines(5, 13)));
+    }
+
+    /**
+     * Tests hunks at the start and at the end of the text, and hunk with
+     * single line ranges.
+     */
+    @Test
+    public void testEdges() {
+        assertEquals("--- a\n+++ b\n@@ -1,3 +1,4 @@\n+X\n 1\n 2\n 3\n",
+                diff("1\n2\n3\n4\n5\n", "X\n1\n2\n3\n4\n5\n"));
+        assertEquals("--- a\n+++ b\n@@ -3,3 +3,4 @@\n 3\n 4\n 5\n+X\n",
+                diff("1\n2\n3\n4\n5\n", "1\n2\n3\n4\n5\nX\n"));
+        assertEquals("--- a\n+++ b\n@@ -1 +1 @@\n-a\n+b\n",
+                diff("a\n", "b\n"));
+    }
+
+    /**
+     * Tests texts that do not end with line break.
+     */
+    @Test
+    public void testNoNewline() {
+        assertEquals("--- a\n+++ b\n@@ -1,2 +1,2 @@\n a\n-b\n+b\n"
+                + "\\ No newline at end of file\n", diff("a\nb\n", "a\nb"));
+        assertEquals("--- a\n+++ b\n@@ -1,2 +1,2 @@\n a\n-b\n"
+                + "\\ No newline at end of file\n+b\n", diff("a\nb", "a\nb\n"));
+        assertEquals("--- a\n+++ b\n@@ -1,2 +1,2 @@\n a\n-b\n"
+                + "\\ No newline at end of file\n+c\n"
+                + "\\ No newline at end of file\n", diff("a\nb", "a\nc"));
+    }
+
+    /**
+     * Tests diff against empty old file and empty new text, which have
+     * empty ranges in hunk header.
+     */
+    @Test
+    public void testEmptyRanges() {
+        final StringBuilder sb = new StringBuilder(64);
+        UnifiedDiff.append(sb, "/dev/null", "", "b", "a\nb\n");
+
+        assertEquals("--- /dev/null\n+++ b\n@@ -0,0 +1,2 @@\n+a\n+b\n",
+                sb.toString());
+        assertEquals("--- a\n+++ b\n@@ -0,0 +1 @@\n+a\n"
+                + "\\ No newline at end of file\n", diff("", "a"));
+        assertEquals("--- a\n+++ b\n@@ -1,2 +0,0 @@\n-a\n-b\n",
+                diff("a\nb\n", ""));
+    }
+
+    /**
+     * Returns unified diff of the texts named {@code a} and {@code b}.
+     *
+     * @param oldText old text
+     * @param newText new text
+     *
+     * @return unified diff
+     */
+    private static String diff(final String oldText, final String newText) {
+        final StringBuilder sb = new StringBuilder(256);
+        UnifiedDiff.append(sb, "a", oldText, "b", newText);
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns text of lines with numbers 1 to 20, with specified lines
+     * changed to {@code xN}.
+     *
+     * @param changed numbers of changed lines
+     *
+     * @return text
+     */
+    private static String lines(final int... changed) {
+        final StringBuilder sb = new StringBuilder(128);
+
+        outer:
+        for (int i = 1; i <= 20; i++) {
+            for (final int line : changed) {
+                if (line == i) {
+                    sb.append('x').append(i).append('\n');
+
+                    continue outer;
+                }
+            }
+
+            sb.append(i).append('\n');
+        }
+
+        return sb.toString();
+    }
+}
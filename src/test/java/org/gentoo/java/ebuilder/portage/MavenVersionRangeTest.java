@@ -0,0 +1,195 @@
+package org.gentoo.java.ebuilder.portage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests of {@link MavenVersionRange}.
+ *
+ * @author fordfrog
+ */
+public class MavenVersionRangeTest {
+
+    /**
+     * Sorted versions the ranges select from.
+     */
+    private static final List<MavenVersion> VERSIONS = versions("1.0-alpha",
+            "1.0", "1.1", "1.5", "2.0-SNAPSHOT", "2.0", "2.1", "3.0");
+
+    /**
+     * Tests range with inclusive lower and exclusive upper bound.
+     */
+    @Test
+    public void testLowerInclusiveUpperExclusive() {
+        final MavenVersionRange range = MavenVersionRange.parse("[1.1,2.0)");
+
+        assertTrue(range.contains(MavenVersion.of("1.1")));
+        assertTrue(range.contains(MavenVersion.of("1.9.9")));
+        assertTrue(range.contains(MavenVersion.of("2.0-SNAPSHOT")));
+        assertFalse(range.contains(MavenVersion.of("2.0")));
+        assertFalse(range.contains(MavenVersion.of("1.0")));
+        assertSelected(range, "1.1");
+        assertEquals(MavenVersion.of("1.1"), range.getLowerBound());
+    }
+
+    /**
+     * Tests range without lower bound.
+     */
+    @Test
+    public void testUnboundedLower() {
+        final MavenVersionRange range = MavenVersionRange.parse("(,1.5]");
+
+        assertTrue(range.contains(MavenVersion.of("0.1")));
+        assertTrue(range.contains(MavenVersion.of("1.5")));
+        assertFalse(range.contains(MavenVersion.of("1.5.1")));
+        assertSelected(range, "1.0-alpha");
+        assertSame(MavenVersion.of(""), range.getLowerBound());
+    }
+
+    /**
+     * Tests range without upper bound.
+     */
+    @Test
+    public void testUnboundedUpper() {
+        final MavenVersionRange range = MavenVersionRange.parse("(2.0,)");
+
+        assertFalse(range.contains(MavenVersion.of("2.0")));
+        assertTrue(range.contains(MavenVersion.of("2.0.1")));
+        assertTrue(range.contains(MavenVersion.of("100")));
+        assertSelected(range, "2.1");
+    }
+
+    /**
+     * Tests range of exactly one version.
+     */
+    @Test
+    public void testExactVersion() {
+        final MavenVersionRange range = MavenVersionRange.parse("[1.5]");
+
+        assertTrue(range.contains(MavenVersion.of("1.5")));
+        assertTrue(range.contains(MavenVersion.of("1.5.0")));
+        assertFalse(range.contains(MavenVersion.of("1.5.1")));
+        assertSelected(range, "1.5");
+        assertEquals(-1, MavenVersionRange.parse("[1.2]").selectBest(
+                VERSIONS));
+    }
+
+    /**
+     * Tests union of intervals, the lowest version of the first interval that
+     * has any is selected.
+     */
+    @Test
+    public void testUnion() {
+        final MavenVersionRange range
+                = MavenVersionRange.parse("[1.2,1.4], [2.0,2.5)");
+
+        assertFalse(range.contains(MavenVersion.of("1.1")));
+        assertTrue(range.contains(MavenVersion.of("1.3")));
+        assertFalse(range.contains(MavenVersion.of("1.5")));
+        assertTrue(range.contains(MavenVersion.of("2.1")));
+        assertFalse(range.contains(MavenVersion.of("2.5")));
+        assertSelected(range, "2.0");
+        assertSelected(MavenVersionRange.parse("(,1.0),(1.0,1.5)"),
+                "1.0-alpha");
+        assertEquals(MavenVersion.of("1.2"), range.getLowerBound());
+    }
+
+    /**
+     * Tests soft version, which is satisfied by the version and all greater
+     * versions.
+     */
+    @Test
+    public void testSoftVersion() {
+        final MavenVersionRange range = MavenVersionRange.parse(" 1.2 ");
+
+        assertFalse(range.contains(MavenVersion.of("1.1")));
+        assertTrue(range.contains(MavenVersion.of("1.2")));
+        assertTrue(range.contains(MavenVersion.of("5.0")));
+        assertSelected(range, "1.5");
+        assertSelected(MavenVersionRange.parse("1.1"), "1.1");
+        assertEquals(MavenVersion.of("1.2"), range.getLowerBound());
+    }
+
+    /**
+     * Tests ranges no version satisfies.
+     */
+    @Test
+    public void testNoMatch() {
+        assertEquals(-1, MavenVersionRange.parse("[3.1,)").selectBest(
+                VERSIONS));
+        assertEquals(-1, MavenVersionRange.parse("(1.5,2.0-SNAPSHOT)").
+                selectBest(VERSIONS));
+        assertEquals(-1, MavenVersionRange.parse("(,0.9]").selectBest(
+                VERSIONS));
+        assertEquals(-1, MavenVersionRange.parse("4").selectBest(VERSIONS));
+        assertEquals(-1, MavenVersionRange.parse("[1.0,2.0)").selectBest(
+                new ArrayList<>()));
+    }
+
+    /**
+     * Tests that selection works on items with versions.
+     */
+    @Test
+    public void testSelectBestWithGetter() {
+        final List<String> items = Arrays.asList("a:1.0", "b:1.5", "c:2.0");
+
+        assertEquals(1, MavenVersionRange.parse("(1.0,2.0]").selectBest(items,
+                (item) -> MavenVersion.of(item.substring(2))));
+    }
+
+    /**
+     * Tests that invalid specifications are rejected.
+     */
+    @Test
+    public void testInvalid() {
+        for (final String spec : new String[]{"[1.0", "[1.0,2.0", "(1.0)",
+            "[]", "[2.0,1.0]", "(1.0,1.0)", "[1.0,2.0,3.0]",
+            "[1.0,2.0] x", "[1.0,3.0],[2.0,4.0]", "[2.0,3.0],[1.0,1.5]"}) {
+            try {
+                MavenVersionRange.parse(spec);
+                fail("Range '" + spec + "' should be rejected");
+            } catch (final IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Asserts that the range selects the version from {@link #VERSIONS}.
+     *
+     * @param range    version range
+     * @param expected expected version
+     */
+    private static void assertSelected(final MavenVersionRange range,
+            final String expected) {
+        final int index = range.selectBest(VERSIONS);
+
+        assertTrue(range + " selects nothing", index != -1);
+        assertEquals(range.toString(), expected,
+                VERSIONS.get(index).getVersion());
+    }
+
+    /**
+     * Creates list of versions.
+     *
+     * @param versions version strings in ascending order
+     *
+     * @return list of versions
+     */
+    private static List<MavenVersion> versions(final String... versions) {
+        final List<MavenVersion> result = new ArrayList<>(versions.length);
+
+        for (final String version : versions) {
+            result.add(MavenVersion.of(version));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,217 @@
+package org.gentoo.java.ebuilder.portage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Tests of {@link MavenVersion}. Expected results were taken from Maven's
+ * ComparableVersion (maven-artifact 3.9.11), so that a change of the sort key
+ * encoding cannot silently change which ebuild a dependency resolves to.
+ *
+ * @author fordfrog
+ */
+public class MavenVersionTest {
+
+    /**
+     * Tests that qualifier aliases are equal to the qualifiers they stand
+     * for.
+     */
+    @Test
+    public void testQualifierAliases() {
+        assertEqualOrder("1-a1", "1-alpha-1");
+        assertEqualOrder("1-b2", "1-beta-2");
+        assertEqualOrder("1-m3", "1-milestone-3");
+        assertEqualOrder("1-cr1", "1-rc1");
+        assertEqualOrder("1-ga", "1");
+        assertEqualOrder("1-final", "1");
+        assertEqualOrder("1-release", "1");
+        assertEqualOrder("1.0.RELEASE", "1");
+        assertEqualOrder("1.0.0.Final", "1.0");
+        assertEqualOrder("1-ALPHA", "1-alpha");
+        assertEqualOrder("1.0a1", "1.0-alpha-1");
+        // single letter is an alias only when followed by a number
+        assertOrder("1-alpha", "1-a");
+    }
+
+    /**
+     * Tests order of well known qualifiers and of unknown qualifiers.
+     */
+    @Test
+    public void testQualifierOrder() {
+        assertOrder("1-alpha", "1-beta");
+        assertOrder("1-beta", "1-milestone");
+        assertOrder("1-milestone", "1-rc");
+        assertOrder("1-rc", "1-snapshot");
+        assertOrder("1-snapshot", "1");
+        assertOrder("1", "1-sp");
+        assertOrder("1-sp", "1-abc");
+        assertOrder("1-abc", "1-abd");
+        assertOrder("1-alpha2", "1-alpha10");
+        assertOrder("1.1-SNAPSHOT", "1.1");
+        assertOrder("1.0-alpha", "1.0");
+    }
+
+    /**
+     * Tests order of versions that differ in '-' and '.' separators.
+     */
+    @Test
+    public void testSeparatorTransitions() {
+        assertOrder("1-1", "1.1");
+        assertOrder("1.0-1", "1.0.1");
+        assertOrder("1", "1-1");
+        assertOrder("1.1", "1.1-1");
+        assertOrder("1-0.1", "1.0.1");
+        assertOrder("1.2.3-4", "1.2.3.4");
+        assertEqualOrder("1.0.0-alpha", "1.0.0.alpha");
+    }
+
+    /**
+     * Tests that trailing zeros and leading zeros of numbers are ignored.
+     */
+    @Test
+    public void testTrailingZeros() {
+        assertEqualOrder("1", "1.0");
+        assertEqualOrder("1", "1.0.0");
+        assertEqualOrder("1", "1-0");
+        assertEqualOrder("1.0.0.0.0", "1");
+        assertEqualOrder("1.0-0", "1");
+        assertEqualOrder("1.0.0-ga", "1");
+        assertEqualOrder("1.1", "1.1.0.0");
+        assertEqualOrder("", "0");
+        assertEqualOrder("0", "0.0.0");
+        assertEqualOrder("1.01", "1.1");
+        assertEqualOrder("1.0.1", "1.0.01");
+    }
+
+    /**
+     * Tests order of service packs against releases.
+     */
+    @Test
+    public void testServicePack() {
+        assertOrder("1-ga", "1-sp");
+        assertOrder("1.0.0", "1.0.0-sp1");
+        assertOrder("1-sp1", "1-sp2");
+        assertOrder("1.0-sp", "1.0.1");
+        assertOrder("1-sp-1", "1-ga-1");
+    }
+
+    /**
+     * Tests numbers that do not fit into int or long.
+     */
+    @Test
+    public void testNumericOverflow() {
+        assertOrder("1.2147483647", "1.2147483648");
+        assertOrder("1.9223372036854775807", "1.9223372036854775808");
+        assertOrder("1.99999999999999999999", "1.100000000000000000000");
+        assertOrder("2147483648", "2147483649");
+        assertOrder("1.0", "9223372036854775808");
+        assertOrder("1.0-99999999999999999999", "1.0-100000000000000000000");
+        assertEquals(Integer.MAX_VALUE,
+                MavenVersion.of("2147483648").getMajorVersion());
+    }
+
+    /**
+     * Tests major, minor and incremental version numbers and qualifier.
+     */
+    @Test
+    public void testComponents() {
+        final MavenVersion version = MavenVersion.of("1.2.3-SNAPSHOT");
+        assertEquals(1, version.getMajorVersion());
+        assertEquals(2, version.getMinorVersion());
+        assertEquals(3, version.getIncrementalVersion());
+        assertEquals("snapshot", version.getQualifier());
+        assertEquals("", MavenVersion.of("1.2").getQualifier());
+        assertEquals("final", MavenVersion.of("1.2.3.Final").getQualifier());
+        assertEquals("4", MavenVersion.of("1.2.3.4").getQualifier());
+        assertEquals("x", MavenVersion.of("1.2beta3-x").getQualifier());
+        assertEquals("", MavenVersion.of("v1.2").getQualifier());
+        assertEquals("alpha-1", MavenVersion.of("1-alpha-1").getQualifier());
+    }
+
+    /**
+     * Tests that instances are interned.
+     */
+    @Test
+    public void testInterned() {
+        assertSame(MavenVersion.of("3.2.1"), MavenVersion.of("3.2.1"));
+    }
+
+    /**
+     * Tests that strings which cannot be versions are rejected.
+     */
+    @Test
+    public void testInvalid() {
+        for (final String version : new String[]{"1.0 ", " 1.0", "1 0",
+            "[1.0,2.0)", "(,1.0]", "1.0,2.0", "1.0\t"}) {
+            try {
+                MavenVersion.of(version);
+                fail("Version '" + version + "' should be rejected");
+            } catch (final IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Asserts that the first version is lower than the second one, both by
+     * compareTo and by the sort keys.
+     *
+     * @param lower  lower version
+     * @param higher higher version
+     */
+    private static void assertOrder(final String lower, final String higher) {
+        final MavenVersion lowerVersion = MavenVersion.of(lower);
+        final MavenVersion higherVersion = MavenVersion.of(higher);
+
+        assertTrue(lower + " < " + higher,
+                lowerVersion.compareTo(higherVersion) < 0);
+        assertTrue(higher + " > " + lower,
+                higherVersion.compareTo(lowerVersion) > 0);
+        assertTrue("sort key " + lower + " < " + higher,
+                compareKeys(lowerVersion, higherVersion) < 0);
+    }
+
+    /**
+     * Asserts that the versions are equal.
+     *
+     * @param version1 first version
+     * @param version2 second version
+     */
+    private static void assertEqualOrder(final String version1,
+            final String version2) {
+        final MavenVersion mavenVersion1 = MavenVersion.of(version1);
+        final MavenVersion mavenVersion2 = MavenVersion.of(version2);
+
+        assertEquals(version1 + " = " + version2, 0,
+                mavenVersion1.compareTo(mavenVersion2));
+        assertEquals(version1 + " = " + version2, mavenVersion1,
+                mavenVersion2);
+        assertEquals(mavenVersion1.hashCode(), mavenVersion2.hashCode());
+        assertEquals(0, compareKeys(mavenVersion1, mavenVersion2));
+    }
+
+    /**
+     * Compares sort keys of the versions as unsigned byte arrays.
+     *
+     * @param version1 first version
+     * @param version2 second version
+     *
+     * @return result of the comparison
+     */
+    private static int compareKeys(final MavenVersion version1,
+            final MavenVersion version2) {
+        final byte[] key1 = version1.getSortKey();
+        final byte[] key2 = version2.getSortKey();
+
+        for (int i = 0; i < Math.min(key1.length, key2.length); i++) {
+            if (key1[i] != key2[i]) {
+                return (key1[i] & 0xff) - (key2[i] & 0xff);
+            }
+        }
+
+        return key1.length - key2.length;
+    }
+}